@@ -0,0 +1,57 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MainWithArgsInFile#readArgFile(File)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArgFileBenchmark {
+
+  @Param({"10", "1000"})
+  public int argumentCount;
+
+  private File argFile;
+
+  @Setup
+  public void setup() throws Exception {
+    argFile = File.createTempFile("gatling-benchmark-", ".args");
+    try (PrintWriter out = new PrintWriter(argFile)) {
+      for (int i = 0; i < argumentCount; i++) {
+        out.println(i % 2 == 0 ? "-rf" : "/tmp/results/some/longer/path/segment-" + i);
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    argFile.delete();
+  }
+
+  @Benchmark
+  public List<String> readArgFile() throws Exception {
+    return MainWithArgsInFile.readArgFile(argFile);
+  }
+}
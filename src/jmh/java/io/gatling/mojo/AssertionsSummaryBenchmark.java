@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link AssertionsSummary#fromAssertionsFile(File)} on assertion files with many test cases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AssertionsSummaryBenchmark {
+
+  @Param({"10", "1000"})
+  public int testcaseCount;
+
+  private File assertionsFile;
+
+  @Setup
+  public void setup() throws Exception {
+    assertionsFile = File.createTempFile("gatling-benchmark-assertions-", ".xml");
+    try (PrintWriter out = new PrintWriter(assertionsFile)) {
+      out.println("<testsuite name=\"computerdatabase.BasicSimulation\" tests=\"" + testcaseCount + "\" errors=\"0\" failures=\"1\" time=\"0\">");
+      for (int i = 0; i < testcaseCount; i++) {
+        out.println("<testcase name=\"request_" + i + ": percentile 95 of response time is less than 500\" status=\"" + (i != 0) + "\" time=\"0\">");
+        if (i == 0) {
+          out.println("  <failure type=\"request_0\">Actual value: 612.0</failure>");
+        }
+        out.println("</testcase>");
+      }
+      out.println("</testsuite>");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    assertionsFile.delete();
+  }
+
+  @Benchmark
+  public AssertionsSummary fromAssertionsFile() throws Exception {
+    return AssertionsSummary.fromAssertionsFile(assertionsFile);
+  }
+}
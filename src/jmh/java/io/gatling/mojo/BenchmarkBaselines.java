@@ -0,0 +1,159 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a JMH result file in CSV format with the stored baseline.
+ * <p>
+ * Usage: {@code BenchmarkBaselines <baseline.csv> <result.csv> <maxRegression> <updateBaseline> [failOnRegression]}, where
+ * {@code maxRegression} is the allowed relative increase of the average time, e.g. 0.25 for 25%.
+ * <p>
+ * The scores are compared by their 99.9% error intervals: a benchmark only regressed when the lower bound of its current
+ * interval is more than {@code maxRegression} above the upper bound of the baseline interval, so noise within the measured
+ * error is not reported. The baseline is measured on one machine, so the comparison is a report by default, and only
+ * exits with 1 on a regression when {@code failOnRegression} is true, for runs on the machine of the baseline.
+ */
+public class BenchmarkBaselines {
+
+  public static void main(String[] args) throws IOException {
+    Path baselineFile = Paths.get(args[0]);
+    Path resultFile = Paths.get(args[1]);
+    double maxRegression = Double.parseDouble(args[2]);
+    boolean updateBaseline = Boolean.parseBoolean(args[3]);
+    boolean failOnRegression = args.length > 4 && Boolean.parseBoolean(args[4]);
+
+    if (updateBaseline || !Files.exists(baselineFile)) {
+      Files.createDirectories(baselineFile.getParent());
+      Files.copy(resultFile, baselineFile, StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("Stored " + resultFile + " as new baseline " + baselineFile);
+      return;
+    }
+
+    Map<String, Score> baseline = read(baselineFile);
+    Map<String, Score> results = read(resultFile);
+
+    List<String> regressions = new ArrayList<>();
+    System.out.println(String.format("%-90s %24s %24s %9s", "Benchmark", "Baseline", "Current", "Change"));
+    for (Map.Entry<String, Score> result : results.entrySet()) {
+      Score current = result.getValue();
+      Score previous = baseline.get(result.getKey());
+      if (previous == null || !previous.unit.equals(current.unit)) {
+        System.out.println(String.format("%-90s %24s %24s %9s", result.getKey(), "-", current, "new"));
+        continue;
+      }
+      double change = (current.score - previous.score) / previous.score;
+      boolean regressed = isRegression(previous, current, maxRegression);
+      System.out.println(String.format("%-90s %24s %24s %+8.1f%%%s", result.getKey(), previous, current, change * 100, regressed ? " REGRESSION" : ""));
+      if (regressed) {
+        regressions.add(result.getKey());
+      }
+    }
+
+    if (!regressions.isEmpty()) {
+      System.out.println("Regressions of more than " + (maxRegression * 100) + "% beyond the error intervals: " + regressions);
+      if (failOnRegression) {
+        System.exit(1);
+      }
+    }
+  }
+
+  /**
+   * @return true when even the best case of the current score is more than maxRegression slower than the worst case of the baseline
+   */
+  static boolean isRegression(Score baseline, Score current, double maxRegression) {
+    return current.lower() > baseline.upper() * (1 + maxRegression);
+  }
+
+  private static Map<String, Score> read(Path csvFile) throws IOException {
+    List<String> lines = Files.readAllLines(csvFile, StandardCharsets.UTF_8);
+    List<String> header = split(lines.get(0));
+    int scoreIndex = header.indexOf("Score");
+    int unitIndex = header.indexOf("Unit");
+    int errorIndex = header.indexOf("Score Error (99.9%)");
+
+    Map<String, Score> scores = new LinkedHashMap<>();
+    for (String line : lines.subList(1, lines.size())) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      List<String> columns = split(line);
+      StringBuilder key = new StringBuilder(columns.get(0));
+      for (int i = 0; i < header.size(); i++) {
+        if (header.get(i).startsWith("Param: ") && !columns.get(i).isEmpty()) {
+          key.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(columns.get(i));
+        }
+      }
+      scores.put(key.toString(), new Score(Double.parseDouble(columns.get(scoreIndex)), errorIndex >= 0 ? parseError(columns.get(errorIndex)) : 0, columns.get(unitIndex)));
+    }
+    return scores;
+  }
+
+  private static double parseError(String error) {
+    // JMH reports NaN without enough samples for an interval
+    try {
+      double value = Double.parseDouble(error);
+      return Double.isNaN(value) ? 0 : value;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static List<String> split(String csvLine) {
+    List<String> columns = new ArrayList<>();
+    for (String column : csvLine.split(",", -1)) {
+      columns.add(column.startsWith("\"") && column.endsWith("\"") && column.length() > 1
+        ? column.substring(1, column.length() - 1)
+        : column);
+    }
+    return columns;
+  }
+
+  static final class Score {
+    private final double score;
+    private final double error;
+    private final String unit;
+
+    Score(double score, double error, String unit) {
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    double lower() {
+      return score - error;
+    }
+
+    double upper() {
+      return score + error;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.3f +- %.3f", score, error);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MojoUtils#createBooterJar(List, String)} with large classpaths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BooterJarBenchmark {
+
+  @Param({"100", "1000", "5000"})
+  public int classpathSize;
+
+  private List<String> classpath;
+
+  @Setup
+  public void setup() {
+    classpath = new ArrayList<>(classpathSize);
+    for (int i = 0; i < classpathSize; i++) {
+      classpath.add(new File(System.getProperty("java.io.tmpdir"), "repository/org/example/artifact-" + i + "/1.0." + i + "/artifact-" + i + "-1.0." + i + ".jar").getPath());
+    }
+  }
+
+  @Benchmark
+  public File createBooterJar() throws Exception {
+    File jar = MojoUtils.createBooterJar(classpath, MainWithArgsInFile.class.getName());
+    if (!jar.delete()) {
+      throw new IllegalStateException("Could not delete " + jar);
+    }
+    return jar;
+  }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.gatling.mojo.MojoConstants.GATLING_MAIN_CLASS;
+
+/**
+ * End-to-end launch latency harness for {@link GatlingMojo}.
+ * <p>
+ * Runs the mojo against the {@link StubProject} of the goal tests, whose stub Gatling main classes record the time of
+ * their invocations, without any network or repository access. Reports per case:
+ * <ul>
+ * <li>startup: {@code execute()} until the compiler main class runs</li>
+ * <li>fork: {@link Fork#run()} until the Gatling main class runs the simulation, measured on a bare fork</li>
+ * <li>discovery: end of compilation until the first Gatling main class runs, minus the fork latency</li>
+ * <li>first simulation line: {@code execute()} until the first simulation is instantiated</li>
+ * <li>teardown: the last run of the Gatling main class until {@code execute()} returns</li>
+ * </ul>
+ * Usage: {@code LaunchLatencyHarness <workDirectory>}, configured with the system properties
+ * {@code launch.iterations} (default 5), {@code launch.warmups} (default 1) and optionally
+ * {@code launch.maxFirstSimulationMillis}: the harness exits with 1 when the median time to the first
+ * simulation line of a case is higher.
+ */
+public class LaunchLatencyHarness {
+
+  private final Path workDirectory;
+  private final StubProject project;
+
+  private LaunchLatencyHarness(Path workDirectory) throws IOException {
+    this.workDirectory = workDirectory;
+    this.project = new StubProject(workDirectory.resolve("project"));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int iterations = Integer.getInteger("launch.iterations", 5);
+    int warmups = Integer.getInteger("launch.warmups", 1);
+    String maxFirstSimulation = System.getProperty("launch.maxFirstSimulationMillis");
+
+    LaunchLatencyHarness harness = new LaunchLatencyHarness(Paths.get(args[0]).toAbsolutePath());
+    harness.addSimulations();
+
+    List<LaunchCase> cases = Arrays.asList(
+      new LaunchCase("single", "bench.single.*", false, false),
+      new LaunchCase("multiple", "bench.multiple.*", true, false),
+      new LaunchCase("failing", "bench.failing.*", false, true));
+
+    Map<String, Map<String, List<Double>>> results = new LinkedHashMap<>();
+    for (LaunchCase launchCase : cases) {
+      Map<String, List<Double>> phases = new LinkedHashMap<>();
+      for (int i = 0; i < warmups + iterations; i++) {
+        double forkMillis = harness.measureFork();
+        Map<String, Double> measurement = harness.measure(launchCase, forkMillis);
+        if (i >= warmups) {
+          measurement.forEach((phase, millis) -> phases.computeIfAbsent(phase, p -> new ArrayList<>()).add(millis));
+        }
+      }
+      results.put(launchCase.name, phases);
+    }
+
+    boolean guardFailed = harness.report(results, maxFirstSimulation == null ? Double.MAX_VALUE : Double.parseDouble(maxFirstSimulation));
+    if (guardFailed) {
+      System.exit(1);
+    }
+  }
+
+  private void addSimulations() throws IOException {
+    project.addSimulation("bench.single", "SingleSimulation");
+    project.addClass("bench.single", "Helper", "public class Helper {}");
+    project.addSimulation("bench.multiple", "FirstSimulation");
+    project.addSimulation("bench.multiple", "SecondSimulation");
+    project.addClass("bench.multiple", "AbstractBaseSimulation", "public abstract class AbstractBaseSimulation extends io.gatling.core.scenario.Simulation {}");
+    // the stub Gatling fails the assertions of Failing* simulations
+    project.addSimulation("bench.failing", "FailingSimulation");
+  }
+
+  private double measureFork() throws Exception {
+    project.takeInvocations();
+    Fork fork = new Fork(GATLING_MAIN_CLASS, Arrays.asList(project.getClassesDirectory().toString(), MojoUtils.locateJar(GatlingMojo.class)),
+      MojoConstants.GATLING_JVM_ARGS, Arrays.asList("-s", "bench.single.SingleSimulation", "-rf", project.getResultsFolder().toString()),
+      null, false, new QuietLog());
+    long start = nowMicros();
+    fork.run();
+    return (first(project.takeTimedInvocations(), "gatling ") - start) / 1000.0;
+  }
+
+  private Map<String, Double> measure(LaunchCase launchCase, double forkMillis) throws Exception {
+    GatlingMojo mojo = project.createMojo(GatlingMojo.class, "test");
+    mojo.setLog(new QuietLog());
+    // the POM of the test project: <includes> and <runMultipleSimulations>
+    MojoDefaults.set(mojo, "includes", new String[]{launchCase.includes});
+    MojoDefaults.set(mojo, "runMultipleSimulations", launchCase.multiple);
+
+    long start = nowMicros();
+    try {
+      mojo.execute();
+      if (launchCase.failing) {
+        throw new IllegalStateException("Case " + launchCase.name + " should have failed");
+      }
+    } catch (Exception e) {
+      if (!launchCase.failing) {
+        throw e;
+      }
+    }
+    long end = nowMicros();
+
+    // the stub compiler returns right away, its invocation is both the start and the end of the compilation
+    List<StubProject.Invocation> invocations = project.takeTimedInvocations();
+    long compiler = first(invocations, "compiler");
+    long firstSimulation = first(invocations, "gatling ");
+    Map<String, Double> phases = new LinkedHashMap<>();
+    phases.put("startup", (compiler - start) / 1000.0);
+    phases.put("fork", forkMillis);
+    phases.put("discovery", Math.max(0, (firstSimulation - compiler) / 1000.0 - forkMillis));
+    phases.put("first simulation line", (firstSimulation - start) / 1000.0);
+    phases.put("teardown", (end - last(invocations, "gatling ")) / 1000.0);
+    phases.put("total", (end - start) / 1000.0);
+    return phases;
+  }
+
+  private boolean report(Map<String, Map<String, List<Double>>> results, double maxFirstSimulationMillis) throws IOException {
+    boolean guardFailed = false;
+    Path csv = workDirectory.resolve("launch-latency.csv");
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+      out.println("case,phase,median_ms,min_ms,max_ms");
+      System.out.println(String.format("%-10s %-22s %10s %10s %10s", "Case", "Phase", "Median ms", "Min ms", "Max ms"));
+      for (Map.Entry<String, Map<String, List<Double>>> launchCase : results.entrySet()) {
+        for (Map.Entry<String, List<Double>> phase : launchCase.getValue().entrySet()) {
+          List<Double> values = phase.getValue().stream().sorted().collect(Collectors.toList());
+          double median = values.get(values.size() / 2);
+          double min = values.get(0);
+          double max = values.get(values.size() - 1);
+          System.out.println(String.format("%-10s %-22s %10.1f %10.1f %10.1f", launchCase.getKey(), phase.getKey(), median, min, max));
+          out.println(String.format(Locale.ROOT, "%s,%s,%.3f,%.3f,%.3f", launchCase.getKey(), phase.getKey(), median, min, max));
+          if (phase.getKey().equals("first simulation line") && median > maxFirstSimulationMillis) {
+            System.out.println("Median time to the first simulation line of case " + launchCase.getKey() + " exceeds " + maxFirstSimulationMillis + " ms");
+            guardFailed = true;
+          }
+        }
+      }
+    }
+    System.out.println("Launch latencies written to " + csv);
+    return guardFailed;
+  }
+
+  private static long first(List<StubProject.Invocation> invocations, String prefix) {
+    return invocations.stream().filter(invocation -> invocation.line.startsWith(prefix)).mapToLong(invocation -> invocation.micros).min()
+      .orElseThrow(() -> new IllegalStateException("No " + prefix.trim() + " invocation recorded"));
+  }
+
+  private static long last(List<StubProject.Invocation> invocations, String prefix) {
+    return invocations.stream().filter(invocation -> invocation.line.startsWith(prefix)).mapToLong(invocation -> invocation.micros).max()
+      .orElseThrow(() -> new IllegalStateException("No " + prefix.trim() + " invocation recorded"));
+  }
+
+  private static long nowMicros() {
+    Instant now = Instant.now();
+    return TimeUnit.SECONDS.toMicros(now.getEpochSecond()) + now.getNano() / 1000;
+  }
+
+  private static final class LaunchCase {
+    private final String name;
+    private final String includes;
+    private final boolean multiple;
+    private final boolean failing;
+
+    private LaunchCase(String name, String includes, boolean multiple, boolean failing) {
+      this.name = name;
+      this.includes = includes;
+      this.multiple = multiple;
+      this.failing = failing;
+    }
+  }
+
+  /**
+   * Only logs errors, so the measurements are not interleaved with the mojo output.
+   */
+  private static final class QuietLog extends SystemStreamLog {
+    @Override
+    public boolean isDebugEnabled() {
+      return false;
+    }
+
+    @Override
+    public void debug(CharSequence content) {
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+      return false;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+      return false;
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks {@link GatlingMojo#resolveSimulations(ClassLoader, File, List, List)} over a synthetic
+ * class tree, where one in ten classes is a concrete simulation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResolveSimulationsBenchmark {
+
+  private static final int CLASSES_PER_PACKAGE = 50;
+
+  @Param({"500", "5000"})
+  public int classCount;
+
+  private Path workDirectory;
+  private File classesFolder;
+
+  @Setup
+  public void setup() throws IOException {
+    workDirectory = Files.createTempDirectory("gatling-benchmark-classes-");
+    Path sources = Files.createDirectories(workDirectory.resolve("sources"));
+    classesFolder = Files.createDirectories(workDirectory.resolve("classes")).toFile();
+
+    List<String> sourceFiles = new ArrayList<>();
+    sourceFiles.add(write(sources, "io.gatling.core.scenario", "Simulation", "public abstract class Simulation {}"));
+    for (int i = 0; i < classCount; i++) {
+      String packageName = "bench.p" + (i / CLASSES_PER_PACKAGE);
+      String className = "C" + i;
+      String body;
+      if (i % 10 == 0) {
+        body = "public class " + className + " extends io.gatling.core.scenario.Simulation {}";
+      } else if (i % 10 == 1) {
+        body = "public abstract class " + className + " extends io.gatling.core.scenario.Simulation {}";
+      } else {
+        body = "public class " + className + " { public int value() { return " + i + "; } }";
+      }
+      sourceFiles.add(write(sources, packageName, className, body));
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> arguments = new ArrayList<>();
+    arguments.add("-d");
+    arguments.add(classesFolder.getPath());
+    arguments.addAll(sourceFiles);
+    if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+      throw new IllegalStateException("Could not compile synthetic class tree");
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(workDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public List<String> resolveSimulations() throws Exception {
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{classesFolder.toURI().toURL()})) {
+      return GatlingMojo.resolveSimulations(loader, classesFolder, Collections.emptyList(), Collections.emptyList());
+    }
+  }
+
+  private static String write(Path sources, String packageName, String className, String body) throws IOException {
+    Path directory = Files.createDirectories(sources.resolve(packageName.replace('.', File.separatorChar)));
+    Path source = directory.resolve(className + ".java");
+    Files.write(source, ("package " + packageName + ";\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+    return source.toString();
+  }
+}
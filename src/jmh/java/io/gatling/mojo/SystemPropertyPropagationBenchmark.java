@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.gatling.mojo.MojoConstants.GATLING_JVM_ARGS;
+import static io.gatling.mojo.MojoConstants.GATLING_MAIN_CLASS;
+
+/**
+ * Benchmarks the system property propagation done by {@link Fork#run()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SystemPropertyPropagationBenchmark {
+
+  private static final String PREFIX = "benchmark.property.";
+
+  @Param({"0", "1000"})
+  public int extraProperties;
+
+  private Fork fork;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < extraProperties; i++) {
+      System.setProperty(PREFIX + i, "value with some content " + i);
+    }
+    fork = new Fork(GATLING_MAIN_CLASS, Collections.emptyList(), GATLING_JVM_ARGS, Collections.emptyList(), null, true, new SystemStreamLog());
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (int i = 0; i < extraProperties; i++) {
+      System.clearProperty(PREFIX + i);
+    }
+  }
+
+  @Benchmark
+  public List<String> systemPropertyArgs() {
+    return fork.systemPropertyArgs();
+  }
+}
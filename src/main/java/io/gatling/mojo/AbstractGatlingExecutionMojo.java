@@ -30,6 +30,12 @@ public abstract class AbstractGatlingExecutionMojo extends AbstractGatlingMojo {
     @Parameter(property = "gatling.resultsFolder", defaultValue = "${project.build.directory}/gatling")
     protected File resultsFolder;
 
+    /**
+     * File with the per-request aggregates of past runs. Point it outside of the build directory to keep it across clean builds.
+     */
+    @Parameter(property = "gatling.trendStoreFile", defaultValue = "${project.build.directory}/gatling-trends.bin")
+    protected File trendStoreFile;
+
     /**
      * Disable the plugin.
      */
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding shared by the binary files of the plugin, the trend store and the simulation.log index.
+ * <p>
+ * Buffer positions are moved through {@link Buffer}: since Java 9 {@link ByteBuffer} overrides these methods with a
+ * covariant return type, and calling the override from classes compiled on a newer JDK for Java 8 fails with a
+ * {@link NoSuchMethodError} on a Java 8 runtime.
+ */
+final class BinaryCodec {
+
+  private BinaryCodec() {
+  }
+
+  /**
+   * Writes the UTF-8 bytes of the value after their length, null as an empty string.
+   */
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void skip(ByteBuffer buffer, int bytes) {
+    position(buffer, buffer.position() + bytes);
+  }
+
+  static void position(ByteBuffer buffer, int position) {
+    ((Buffer) buffer).position(position);
+  }
+
+  static void limit(ByteBuffer buffer, int limit) {
+    ((Buffer) buffer).limit(limit);
+  }
+
+  static void flip(ByteBuffer buffer) {
+    ((Buffer) buffer).flip();
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Mojo to search the highest injection rate the system under test sustains within the SLA.
+ * <p>
+ * The simulation runs once per step, with the rate to inject in the {@literal rateProperty} system property, and each run
+ * is checked against the {@literal slaRules}. The steps, with their evidence, are written to {@literal reportFile}.
+ */
+@Mojo(name = "capacity", requiresDependencyResolution = ResolutionScope.TEST)
+public class CapacityMojo extends GatlingMojo {
+
+  /**
+   * SLA rules a step must meet, see the verify goal.
+   */
+  @Parameter(required = true)
+  private List<SlaRule> slaRules;
+
+  /**
+   * Name of the system property with the rate to inject, for the simulation to read.
+   */
+  @Parameter(property = "gatling.capacity.rateProperty", defaultValue = "gatling.capacity.rate")
+  private String rateProperty;
+
+  /**
+   * Rate of the first step.
+   */
+  @Parameter(property = "gatling.capacity.startRate", defaultValue = "1")
+  private double startRate;
+
+  /**
+   * Highest rate to try.
+   */
+  @Parameter(property = "gatling.capacity.maxRate", defaultValue = "10000")
+  private double maxRate;
+
+  /**
+   * The search stops when the difference between the highest met and the lowest violated rate is at most this
+   * fraction of the violated rate.
+   */
+  @Parameter(property = "gatling.capacity.precision", defaultValue = "0.05")
+  private double precision;
+
+  /**
+   * Maximum number of steps.
+   */
+  @Parameter(property = "gatling.capacity.maxSteps", defaultValue = "20")
+  private int maxSteps;
+
+  /**
+   * Tab-separated report of the steps of the search.
+   */
+  @Parameter(property = "gatling.capacity.reportFile", defaultValue = "${project.build.directory}/gatling-capacity.tsv")
+  private File reportFile;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping events-gatling-maven-plugin");
+      return;
+    }
+    if (maxSteps < 1) {
+      throw new MojoExecutionException("maxSteps must be at least 1, got " + maxSteps);
+    }
+    CapacitySearch search;
+    try {
+      search = new CapacitySearch(startRate, maxRate, precision);
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException(e.getMessage());
+    }
+
+    List<Step> steps = new ArrayList<>();
+    try {
+      double rate;
+      while ((rate = search.nextRate()) != CapacitySearch.DONE && steps.size() < maxSteps) {
+        Step step = runStep(steps.size() + 1, rate);
+        steps.add(step);
+        search.record(rate, step.met);
+        getLog().info("Capacity step " + step.number + " at rate " + format(rate) + (step.met ? " met the SLA." : " violated the SLA: " + step.evidence));
+      }
+    } finally {
+      writeReport(steps);
+    }
+
+    Step best = null;
+    for (Step step : steps) {
+      if (step.met && (best == null || step.rate > best.rate)) {
+        best = step;
+      }
+    }
+    if (best == null) {
+      throw new MojoFailureException("No rate meets the SLA, the lowest rate tried was " + format(steps.get(steps.size() - 1).rate) + ", see " + reportFile);
+    }
+    getLog().info("Highest rate meeting the SLA: " + format(best.rate) + " after " + steps.size() + " steps, see " + reportFile);
+    writeLastRun(best);
+  }
+
+  private Step runStep(int number, double rate) throws MojoExecutionException, MojoFailureException {
+    Set<File> before = new HashSet<>(Arrays.asList(runDirectories()));
+    Step step = new Step(number, rate);
+    try {
+      executeWithSystemProperty(rateProperty, format(rate));
+    } catch (MojoFailureException e) {
+      // assertions of the simulation itself are part of the SLA, any other failure stops the search
+      if (!(e.getCause() instanceof GatlingSimulationAssertionsFailedException)) {
+        throw e;
+      }
+      step.met = false;
+      step.evidence.add("Gatling assertions failed");
+    }
+    for (File directory : runDirectories()) {
+      if (!before.contains(directory) && SimulationLogs.hasSimulationLog(directory)) {
+        step.runDirectories.add(directory);
+        verify(step, directory);
+      }
+    }
+    if (step.runDirectories.isEmpty()) {
+      throw new MojoExecutionException("No run directory found for capacity step " + number + " in " + resultsFolder);
+    }
+    return step;
+  }
+
+  private void verify(Step step, File runDirectory) throws MojoExecutionException {
+    List<String> violations;
+    RunAggregates aggregates;
+    try {
+      SimulationLogIndex index = SimulationLogIndex.readIfCurrent(runDirectory);
+      if (index != null) {
+        violations = SlaVerifier.verify(index, slaRules);
+        aggregates = RunAggregates.of(index);
+      } else {
+        SlaVerifier verifier = new SlaVerifier(slaRules);
+        aggregates = new RunAggregates();
+        parse(SimulationLogs.simulationLog(runDirectory), verifier, aggregates);
+        violations = verifier.violations();
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      throw new MojoExecutionException("Could not check the SLA rules on " + runDirectory, e);
+    }
+    if (!violations.isEmpty()) {
+      step.met = false;
+      step.evidence.addAll(violations);
+    }
+    for (RunAggregates.RequestStats stats : aggregates.getRequests().values()) {
+      step.requests += stats.getCount();
+      step.failures += stats.getFailures();
+    }
+    step.durationSeconds = Math.max(step.durationSeconds, aggregates.getDurationSeconds());
+  }
+
+  private static void parse(File simulationLog, SlaVerifier verifier, RunAggregates aggregates) throws IOException {
+    SimulationLogParser.parse(simulationLog, new SimulationLogParser.Listener() {
+      @Override
+      public void run(String simulationClassName, String simulationId, long start, String description) {
+        verifier.run(simulationClassName, simulationId, start, description);
+        aggregates.run(simulationClassName, simulationId, start, description);
+      }
+
+      @Override
+      public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+        verifier.request(groups, name, start, end, ok, message);
+        aggregates.request(groups, name, start, end, ok, message);
+      }
+
+      @Override
+      public void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+        verifier.group(groups, start, end, cumulatedResponseTime, ok);
+      }
+    });
+  }
+
+  private File[] runDirectories() {
+    File[] directories = resultsFolder.listFiles(File::isDirectory);
+    return directories != null ? directories : new File[0];
+  }
+
+  private void writeReport(List<Step> steps) throws MojoExecutionException {
+    File parent = reportFile.getParentFile();
+    try {
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Could not create " + parent);
+      }
+      try (BufferedWriter writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+        writer.write("step\trate\tresult\trequests\tko\tthroughput\trunDirectories\tevidence");
+        writer.newLine();
+        for (Step step : steps) {
+          List<String> names = new ArrayList<>();
+          for (File directory : step.runDirectories) {
+            names.add(directory.getName());
+          }
+          double throughput = step.durationSeconds > 0 ? step.requests / step.durationSeconds : 0;
+          writer.write(step.number + "\t" + format(step.rate) + "\t" + (step.met ? "met" : "violated") + "\t" + step.requests + "\t" + step.failures
+            + "\t" + String.format(Locale.ROOT, "%.2f", throughput) + "\t" + String.join(",", names) + "\t" + String.join("; ", step.evidence));
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not write capacity report " + reportFile, e);
+    }
+  }
+
+  /**
+   * Lists the runs of the highest met rate as the last run, so the verify goal checks those.
+   */
+  private void writeLastRun(Step best) throws MojoExecutionException {
+    List<String> names = new ArrayList<>();
+    for (File directory : best.runDirectories) {
+      names.add(directory.getName());
+    }
+    File lastRun = new File(resultsFolder, LAST_RUN_FILE);
+    try {
+      Files.write(lastRun.toPath(), names, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not record the capacity run in " + lastRun, e);
+    }
+  }
+
+  static String format(double rate) {
+    return BigDecimal.valueOf(rate).stripTrailingZeros().toPlainString();
+  }
+
+  private static final class Step {
+    private final int number;
+    private final double rate;
+    private final List<File> runDirectories = new ArrayList<>();
+    private final List<String> evidence = new ArrayList<>();
+    private boolean met = true;
+    private long requests;
+    private long failures;
+    private double durationSeconds;
+
+    private Step(int number, double rate) {
+      this.number = number;
+      this.rate = rate;
+    }
+  }
+}
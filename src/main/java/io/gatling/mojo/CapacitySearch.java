@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+/**
+ * Search for the highest injection rate that meets the SLA: the rate doubles from the start rate until a step violates
+ * the SLA or the maximum rate is met, then the interval between the highest met and the lowest violated rate is halved
+ * until it is smaller than the precision, relative to the violated rate.
+ */
+final class CapacitySearch {
+
+  static final double DONE = -1;
+  private static final double RATE_RESOLUTION = 1000;
+
+  private final double startRate;
+  private final double maxRate;
+  private final double precision;
+  private double highestMetRate = 0;
+  private double lowestViolatedRate = Double.POSITIVE_INFINITY;
+  private boolean started;
+
+  CapacitySearch(double startRate, double maxRate, double precision) {
+    if (startRate <= 0 || maxRate < startRate || precision <= 0) {
+      throw new IllegalArgumentException("Expected 0 < startRate <= maxRate and precision > 0, got " + startRate + ", " + maxRate + ", " + precision);
+    }
+    this.startRate = startRate;
+    this.maxRate = maxRate;
+    this.precision = precision;
+  }
+
+  /**
+   * @return the next rate to try, {@link #DONE} when the search is over
+   */
+  double nextRate() {
+    if (!started) {
+      return startRate;
+    }
+    if (lowestViolatedRate == Double.POSITIVE_INFINITY) {
+      return highestMetRate >= maxRate ? DONE : Math.min(highestMetRate * 2, maxRate);
+    }
+    if (lowestViolatedRate - highestMetRate <= precision * lowestViolatedRate) {
+      return DONE;
+    }
+    double rate = Math.round((highestMetRate + lowestViolatedRate) / 2 * RATE_RESOLUTION) / RATE_RESOLUTION;
+    return rate <= highestMetRate || rate >= lowestViolatedRate ? DONE : rate;
+  }
+
+  void record(double rate, boolean met) {
+    started = true;
+    if (met) {
+      highestMetRate = Math.max(highestMetRate, rate);
+    } else {
+      lowestViolatedRate = Math.min(lowestViolatedRate, rate);
+    }
+  }
+
+  /**
+   * @return the highest rate that met the SLA, 0 when none did
+   */
+  double getHighestMetRate() {
+    return highestMetRate;
+  }
+}
@@ -0,0 +1,425 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Dependency graph of the compiled classes in a folder, built from the constant pools of the class files.
+ * <p>
+ * Together with a fingerprint of everything else the simulations depend on (resources and classpath), it is
+ * stored after each run with, per simulation, a hash of its transitive dependencies when it last ran successfully.
+ * The next build selects only the simulations whose hash changed, or that did not run successfully yet.
+ * <p>
+ * Compile-time constants are inlined into the classes using them, without a reference to the class declaring them.
+ * The constant values of all classes are therefore part of the hash of every simulation: changing one runs them all.
+ */
+final class ClassDependencyGraph {
+
+  private static final String FINGERPRINT_PREFIX = "@fingerprint ";
+  private static final String SIMULATION_PREFIX = "@simulation ";
+
+  private final String fingerprint;
+  private final Map<String, String> hashes;
+  private final Map<String, Set<String>> dependencies;
+  private final Map<String, String> constants;
+  private final Map<String, String> simulations;
+
+  private ClassDependencyGraph(String fingerprint, Map<String, String> hashes, Map<String, Set<String>> dependencies,
+                               Map<String, String> constants, Map<String, String> simulations) {
+    this.fingerprint = fingerprint;
+    this.hashes = hashes;
+    this.dependencies = dependencies;
+    this.constants = constants;
+    this.simulations = simulations;
+  }
+
+  static ClassDependencyGraph scan(File classesFolder, String fingerprint) throws IOException {
+    DirectoryScanner scanner = new DirectoryScanner();
+    scanner.setBasedir(classesFolder);
+    scanner.setIncludes(new String[]{"**/*.class"});
+    scanner.scan();
+
+    Map<String, String> hashes = new TreeMap<>();
+    Map<String, Set<String>> references = new HashMap<>();
+    Map<String, String> constants = new TreeMap<>();
+    for (String path : scanner.getIncludedFiles()) {
+      byte[] bytes = Files.readAllBytes(new File(classesFolder, path).toPath());
+      String className = path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '.');
+      hashes.put(className, sha1(bytes));
+      Set<String> classReferences = new HashSet<>();
+      String classConstants = parse(bytes, classReferences);
+      references.put(className, classReferences);
+      if (!classConstants.isEmpty()) {
+        constants.put(className, sha1(classConstants.getBytes(StandardCharsets.UTF_8)));
+      }
+    }
+
+    // only keep the references to classes in the folder itself, the rest is covered by the fingerprint
+    Map<String, Set<String>> dependencies = new TreeMap<>();
+    for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+      Set<String> local = new TreeSet<>();
+      for (String reference : entry.getValue()) {
+        if (hashes.containsKey(reference) && !reference.equals(entry.getKey())) {
+          local.add(reference);
+        }
+      }
+      dependencies.put(entry.getKey(), local);
+    }
+    return new ClassDependencyGraph(fingerprint, hashes, dependencies, constants, new TreeMap<>());
+  }
+
+  static ClassDependencyGraph read(File file) throws IOException {
+    String fingerprint = null;
+    Map<String, String> hashes = new TreeMap<>();
+    Map<String, Set<String>> dependencies = new TreeMap<>();
+    Map<String, String> constants = new TreeMap<>();
+    Map<String, String> simulations = new TreeMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(FINGERPRINT_PREFIX)) {
+          fingerprint = line.substring(FINGERPRINT_PREFIX.length());
+        } else if (line.startsWith(SIMULATION_PREFIX)) {
+          String[] columns = line.substring(SIMULATION_PREFIX.length()).split("\t", -1);
+          simulations.put(columns[0], columns[1]);
+        } else if (!line.isEmpty() && !line.startsWith("#")) {
+          String[] columns = line.split("\t", -1);
+          hashes.put(columns[0], columns[1]);
+          Set<String> classDependencies = new TreeSet<>();
+          if (!columns[2].isEmpty()) {
+            classDependencies.addAll(Arrays.asList(columns[2].split(",")));
+          }
+          dependencies.put(columns[0], classDependencies);
+          if (columns.length > 3 && !columns[3].isEmpty()) {
+            constants.put(columns[0], columns[3]);
+          }
+        }
+      }
+    }
+    return new ClassDependencyGraph(fingerprint, hashes, dependencies, constants, simulations);
+  }
+
+  void write(File file) throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("# class<TAB>sha1<TAB>dependencies<TAB>constants sha1, written by the gatling-maven-plugin" + System.lineSeparator());
+      writer.write(FINGERPRINT_PREFIX + fingerprint + System.lineSeparator());
+      for (Map.Entry<String, String> entry : simulations.entrySet()) {
+        writer.write(SIMULATION_PREFIX + entry.getKey() + "\t" + entry.getValue() + System.lineSeparator());
+      }
+      for (Map.Entry<String, String> entry : hashes.entrySet()) {
+        writer.write(entry.getKey() + "\t" + entry.getValue() + "\t" + String.join(",", dependencies.get(entry.getKey()))
+          + "\t" + constants.getOrDefault(entry.getKey(), "") + System.lineSeparator());
+      }
+    }
+  }
+
+  String getFingerprint() {
+    return fingerprint;
+  }
+
+  Set<String> dependenciesOf(String className) {
+    return dependencies.getOrDefault(className, Collections.emptySet());
+  }
+
+  /**
+   * @return the classes that were added, removed or changed compared to the previous graph.
+   */
+  Set<String> changedClasses(ClassDependencyGraph previous) {
+    Set<String> changed = new TreeSet<>();
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      if (!entry.getValue().equals(previous.hashes.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    for (String className : previous.hashes.keySet()) {
+      if (!hashes.containsKey(className)) {
+        changed.add(className);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return the classes whose compile-time constants were added, removed or changed compared to the previous graph.
+   */
+  Set<String> changedConstants(ClassDependencyGraph previous) {
+    Set<String> changed = new TreeSet<>();
+    for (String className : union(constants.keySet(), previous.constants.keySet())) {
+      if (!Objects.equals(constants.get(className), previous.constants.get(className))) {
+        changed.add(className);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return the given simulations that did not run successfully with their current dependencies according to
+   * the previous graph, in the given order
+   */
+  List<String> notUpToDate(Collection<String> simulationClasses, ClassDependencyGraph previous) {
+    List<String> selected = new ArrayList<>();
+    for (String simulation : simulationClasses) {
+      if (!dependencyHash(simulation).equals(previous.simulations.get(simulation))) {
+        selected.add(simulation);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Records the simulations that ran successfully with the dependencies of this graph, and keeps the records of the
+   * previous graph for the other simulations, so a failed or skipped simulation is selected again by the next build.
+   */
+  void recordSuccessfulRuns(ClassDependencyGraph previous, Collection<String> succeeded) {
+    if (previous != null) {
+      simulations.putAll(previous.simulations);
+    }
+    for (String simulation : succeeded) {
+      simulations.put(simulation, dependencyHash(simulation));
+    }
+  }
+
+  /**
+   * Hash of the classes the simulation depends on transitively, of the fingerprint, and of the constants of all
+   * classes, as the classes inlining a constant do not refer to the class declaring it.
+   */
+  String dependencyHash(String simulation) {
+    MessageDigest digest = newDigest();
+    digest.update(String.valueOf(fingerprint).getBytes(StandardCharsets.UTF_8));
+    for (Map.Entry<String, String> entry : constants.entrySet()) {
+      digest.update((entry.getKey() + "=" + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    Set<String> visited = new TreeSet<>();
+    Deque<String> toVisit = new ArrayDeque<>();
+    toVisit.add(simulation);
+    while (!toVisit.isEmpty()) {
+      String current = toVisit.poll();
+      if (visited.add(current)) {
+        toVisit.addAll(dependenciesOf(current));
+      }
+    }
+    for (String className : visited) {
+      digest.update((className + "=" + hashes.get(className) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    return toHex(digest.digest());
+  }
+
+  private static Set<String> union(Set<String> first, Set<String> second) {
+    Set<String> union = new TreeSet<>(first);
+    union.addAll(second);
+    return union;
+  }
+
+  /**
+   * Fingerprint of the content of the given files and folders, used to detect changes outside the compiled classes.
+   * Jar files are fingerprinted by path, size and modification time, other files by their content.
+   */
+  static String fingerprint(Collection<File> files) throws IOException {
+    MessageDigest digest = newDigest();
+    for (File file : files) {
+      if (file.isDirectory()) {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(file);
+        scanner.scan();
+        String[] paths = scanner.getIncludedFiles();
+        Arrays.sort(paths);
+        for (String path : paths) {
+          digest.update(path.getBytes(StandardCharsets.UTF_8));
+          digest.update(Files.readAllBytes(new File(file, path).toPath()));
+        }
+      } else if (file.isFile() && file.getName().endsWith(".jar")) {
+        digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+        digest.update((file.length() + ":" + file.lastModified()).getBytes(StandardCharsets.UTF_8));
+      } else if (file.isFile()) {
+        digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+        digest.update(Files.readAllBytes(file.toPath()));
+      } else {
+        digest.update(("missing:" + file.getPath()).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Adds the classes the class file refers to, and returns its constant field values, which are empty when it has none.
+   */
+  private static String parse(byte[] classFile, Set<String> classes) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile))) {
+      if (in.readInt() != 0xCAFEBABE) {
+        return "";
+      }
+      in.readUnsignedShort(); // minor version
+      in.readUnsignedShort(); // major version
+      int constantPoolCount = in.readUnsignedShort();
+      String[] utf8 = new String[constantPoolCount];
+      // the values of the constants a ConstantValue attribute can refer to
+      String[] values = new String[constantPoolCount];
+      int[] stringIndexes = new int[constantPoolCount];
+      List<Integer> classIndexes = new ArrayList<>();
+      for (int i = 1; i < constantPoolCount; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1: // Utf8
+            utf8[i] = in.readUTF();
+            break;
+          case 7: // Class
+            classIndexes.add(in.readUnsignedShort());
+            break;
+          case 8: // String
+            stringIndexes[i] = in.readUnsignedShort();
+            break;
+          case 3: // Integer
+            values[i] = "I" + in.readInt();
+            break;
+          case 4: // Float
+            values[i] = "F" + in.readInt();
+            break;
+          case 5: // Long
+            values[i] = "J" + in.readLong();
+            i++; // takes two entries
+            break;
+          case 6: // Double
+            values[i] = "D" + in.readLong();
+            i++; // takes two entries
+            break;
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            skip(in, 2);
+            break;
+          case 15: // MethodHandle
+            skip(in, 3);
+            break;
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            skip(in, 4);
+            break;
+          default:
+            throw new IOException("Unknown constant pool tag " + tag);
+        }
+      }
+      for (int index : classIndexes) {
+        addDescriptorClasses(utf8[index].startsWith("[") ? utf8[index] : "L" + utf8[index] + ";", classes);
+      }
+      // descriptors and generic signatures of fields, methods and lambdas
+      for (String value : utf8) {
+        if (value != null && value.indexOf('L') >= 0 && value.indexOf(';') > 0) {
+          addDescriptorClasses(value, classes);
+        }
+      }
+      for (int i = 1; i < constantPoolCount; i++) {
+        if (stringIndexes[i] > 0) {
+          values[i] = "S" + utf8[stringIndexes[i]];
+        }
+      }
+      return constantFields(in, utf8, values);
+    }
+  }
+
+  /**
+   * Reads the fields after the constant pool, and returns the name, descriptor and value of the fields with a ConstantValue attribute.
+   */
+  private static String constantFields(DataInputStream in, String[] utf8, String[] values) throws IOException {
+    skip(in, 6); // access flags, this class, super class
+    skip(in, 2 * in.readUnsignedShort()); // interfaces
+    StringBuilder constants = new StringBuilder();
+    int fieldsCount = in.readUnsignedShort();
+    for (int i = 0; i < fieldsCount; i++) {
+      in.readUnsignedShort(); // access flags
+      String name = utf8[in.readUnsignedShort()];
+      String descriptor = utf8[in.readUnsignedShort()];
+      int attributesCount = in.readUnsignedShort();
+      for (int j = 0; j < attributesCount; j++) {
+        String attribute = utf8[in.readUnsignedShort()];
+        int length = in.readInt();
+        if ("ConstantValue".equals(attribute) && length == 2) {
+          constants.append(name).append(':').append(descriptor).append('=').append(values[in.readUnsignedShort()]).append('\n');
+        } else {
+          skip(in, length);
+        }
+      }
+    }
+    return constants.toString();
+  }
+
+  private static void addDescriptorClasses(String descriptor, Set<String> classes) {
+    int start = descriptor.indexOf('L');
+    while (start >= 0) {
+      int end = start + 1;
+      while (end < descriptor.length() && ";<".indexOf(descriptor.charAt(end)) < 0) {
+        end++;
+      }
+      if (end < descriptor.length() && end > start + 1) {
+        classes.add(descriptor.substring(start + 1, end).replace('/', '.'));
+      }
+      start = descriptor.indexOf('L', end);
+    }
+  }
+
+  private static void skip(InputStream in, int bytes) throws IOException {
+    long remaining = bytes;
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+      if (skipped <= 0) {
+        throw new IOException("Unexpected end of class file");
+      }
+      remaining -= skipped;
+    }
+  }
+
+  static String sha1(byte[] bytes) {
+    MessageDigest digest = newDigest();
+    return toHex(digest.digest(bytes));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.EventScheduler;
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import nl.stokpop.eventscheduler.exception.EventCheckFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The event scheduler session of one simulation run, see {@link EventSchedulerSessions}. The lifecycle calls of its
+ * {@link EventScheduler} are dispatched on a bounded, single threaded executor, so slow event plugins do not delay the
+ * start of the load, and the dispatcher records how long each call takes.
+ * <p>
+ * The single thread keeps the calls in submission order: a stop is never executed before its start. The session
+ * moves from {@link State#NEW} to {@link State#STARTED} and ends once, in {@link State#STOPPED} or {@link State#ABORTED}:
+ * a stop of the run racing with an abort of the shutdown hook only ends it once. A session whose start failed ends in
+ * {@link State#FAILED}: its stop or abort is skipped and its checks fail.
+ */
+class EventSchedulerDispatcher {
+
+  enum State {
+    NEW, STARTED, STOPPED, ABORTED, FAILED
+  }
+
+  /**
+   * The lifecycle calls of an {@link EventScheduler}, which is a final class.
+   */
+  interface Lifecycle {
+
+    void addKillSwitch(SchedulerExceptionHandler schedulerExceptionHandler);
+
+    void startSession();
+
+    void stopSession();
+
+    void abortSession();
+
+    void checkResults() throws EventCheckFailureException;
+
+    static Lifecycle of(EventScheduler eventScheduler) {
+      return new Lifecycle() {
+        @Override
+        public void addKillSwitch(SchedulerExceptionHandler schedulerExceptionHandler) {
+          eventScheduler.addKillSwitch(schedulerExceptionHandler);
+        }
+
+        @Override
+        public void startSession() {
+          eventScheduler.startSession();
+        }
+
+        @Override
+        public void stopSession() {
+          eventScheduler.stopSession();
+        }
+
+        @Override
+        public void abortSession() {
+          eventScheduler.abortSession();
+        }
+
+        @Override
+        public void checkResults() throws EventCheckFailureException {
+          eventScheduler.checkResults();
+        }
+      };
+    }
+  }
+
+  private static final int QUEUE_SIZE = 16;
+
+  private final String runName;
+  private final Lifecycle eventScheduler;
+  private final long timeoutMillis;
+  private final Log log;
+  private final ThreadPoolExecutor executor;
+
+  private final List<EventTiming> timings = new ArrayList<>();
+  // guarded by timings
+  private int loggedTimings;
+
+  // guarded by this
+  private State state = State.NEW;
+  // written by the dispatcher thread before the calls dispatched after the start run
+  private volatile RuntimeException startFailure;
+
+  EventSchedulerDispatcher(String runName, Lifecycle eventScheduler, long timeoutMillis, Log log) {
+    this.runName = runName;
+    this.eventScheduler = eventScheduler;
+    this.timeoutMillis = timeoutMillis;
+    this.log = log;
+    this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(QUEUE_SIZE),
+      runnable -> {
+        Thread thread = new Thread(runnable, "eventSchedulerDispatcher-" + runName);
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  /**
+   * Adds the kill switch and dispatches the start of the session without waiting for it,
+   * so the forked Gatling process can start right away.
+   */
+  void startSession(SchedulerExceptionHandler schedulerExceptionHandler) {
+    if (!transition(EnumSet.of(State.NEW), State.STARTED)) {
+      throw new IllegalStateException("Event scheduler session of " + runName + " can not start, it is " + getState());
+    }
+    eventScheduler.addKillSwitch(schedulerExceptionHandler);
+    dispatch("startSession", () -> {
+      try {
+        eventScheduler.startSession();
+      } catch (RuntimeException e) {
+        startFailure = e;
+        transition(EnumSet.of(State.STARTED), State.FAILED);
+        // nobody waits for the start, so report it here
+        log.error("Event scheduler startSession for " + runName + " failed, its stop and checks are skipped.", e);
+        throw e;
+      }
+      return null;
+    });
+  }
+
+  /**
+   * @return true when this call ended the session, false when it was not started or already ended
+   */
+  boolean stopSession() {
+    if (!transition(EnumSet.of(State.STARTED), State.STOPPED)) {
+      return false;
+    }
+    await("stopSession", dispatch("stopSession", () -> {
+      if (!skipFailedStart("stopSession")) {
+        eventScheduler.stopSession();
+      }
+      return null;
+    }));
+    return true;
+  }
+
+  /**
+   * @return true when this call ended the session, false when it was not started or already ended
+   */
+  boolean abortSession() {
+    if (!transition(EnumSet.of(State.STARTED), State.ABORTED)) {
+      return false;
+    }
+    await("abortSession", dispatch("abortSession", () -> {
+      if (!skipFailedStart("abortSession")) {
+        eventScheduler.abortSession();
+      }
+      return null;
+    }));
+    return true;
+  }
+
+  /**
+   * Checks the results of a stopped session, the results of an aborted session are not checked.
+   *
+   * @throws EventCheckFailureException also when the session did not start
+   */
+  void checkResults() throws EventCheckFailureException {
+    State current = getState();
+    if (current == State.FAILED) {
+      throw notStarted();
+    }
+    if (current != State.STOPPED) {
+      throw new IllegalStateException("Event scheduler session of " + runName + " is " + current + ", only stopped sessions are checked");
+    }
+    Future<Void> future = dispatch("checkResults", () -> {
+      if (startFailure != null) {
+        throw notStarted();
+      }
+      eventScheduler.checkResults();
+      return null;
+    });
+    try {
+      future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw new EventCheckFailureException("Event check results did not finish within " + timeoutMillis + " ms.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EventCheckFailureException("Interrupted while waiting for event check results.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof EventCheckFailureException) {
+        throw (EventCheckFailureException) cause;
+      }
+      throw new EventCheckFailureException("Event check results failed: " + cause);
+    }
+  }
+
+  /**
+   * Runs on the dispatcher thread, after the start.
+   *
+   * @return true when the start failed, then the session ends as failed
+   */
+  private boolean skipFailedStart(String eventName) {
+    if (startFailure == null) {
+      return false;
+    }
+    transition(EnumSet.of(State.STOPPED, State.ABORTED), State.FAILED);
+    log.warn("Event scheduler " + eventName + " for " + runName + " skipped, the session did not start.");
+    return true;
+  }
+
+  private EventCheckFailureException notStarted() {
+    return new EventCheckFailureException("Event scheduler session of " + runName + " did not start: " + startFailure.getMessage());
+  }
+
+  String getRunName() {
+    return runName;
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return a copy of the timings of all lifecycle calls finished so far, in order of completion.
+   */
+  List<EventTiming> timings() {
+    synchronized (timings) {
+      return new ArrayList<>(timings);
+    }
+  }
+
+  /**
+   * Logs the timings of the calls finished since the previous call.
+   */
+  void logTimings() {
+    synchronized (timings) {
+      for (EventTiming timing : timings.subList(loggedTimings, timings.size())) {
+        log.info("Event scheduler " + timing);
+      }
+      loggedTimings = timings.size();
+    }
+  }
+
+  void shutdown() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        log.warn("Event scheduler dispatcher did not finish pending calls within " + timeoutMillis + " ms.");
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+    }
+  }
+
+  private synchronized boolean transition(EnumSet<State> from, State to) {
+    if (!from.contains(state)) {
+      return false;
+    }
+    state = to;
+    return true;
+  }
+
+  private <T> Future<T> dispatch(String eventName, Callable<T> call) {
+    Callable<T> timedCall = () -> {
+      long start = System.nanoTime();
+      String outcome = "ok";
+      try {
+        return call.call();
+      } catch (Exception e) {
+        outcome = "failed: " + e.getClass().getSimpleName();
+        throw e;
+      } finally {
+        record(new EventTiming(eventName, runName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), outcome));
+      }
+    };
+    try {
+      return executor.submit(timedCall);
+    } catch (RejectedExecutionException e) {
+      // queue is full or dispatcher is shut down: fall back to a call on the current thread
+      log.warn("Event scheduler dispatcher rejected " + eventName + ", calling it directly.");
+      FutureTask<T> task = new FutureTask<>(timedCall);
+      task.run();
+      return task;
+    }
+  }
+
+  private void await(String eventName, Future<?> future) {
+    try {
+      future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      log.warn("Event scheduler " + eventName + " for " + runName + " did not finish within " + timeoutMillis + " ms.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while waiting for event scheduler " + eventName + " for " + runName + ".");
+    } catch (ExecutionException e) {
+      log.error("Event scheduler " + eventName + " for " + runName + " failed.", e.getCause());
+    }
+  }
+
+  private void record(EventTiming timing) {
+    synchronized (timings) {
+      timings.add(timing);
+    }
+  }
+
+  static final class EventTiming {
+    final String eventName;
+    final String runName;
+    final long durationMillis;
+    final String outcome;
+
+    EventTiming(String eventName, String runName, long durationMillis, String outcome) {
+      this.eventName = eventName;
+      this.runName = runName;
+      this.durationMillis = durationMillis;
+      this.outcome = outcome;
+    }
+
+    @Override
+    public String toString() {
+      return eventName + " for " + runName + " took " + durationMillis + " ms (" + outcome + ")";
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.EventScheduler;
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The event scheduler sessions of the simulation runs of one plugin execution, each with its own {@link EventScheduler}
+ * and {@link EventSchedulerDispatcher}, so concurrent runs do not share a session.
+ * <p>
+ * One shutdown hook is registered for all sessions. When Maven is stopped, it aborts the sessions that are still
+ * running in parallel, each within the timeout of the dispatcher.
+ */
+final class EventSchedulerSessions {
+
+  private final Supplier<EventSchedulerDispatcher.Lifecycle> eventSchedulers;
+  private final long timeoutMillis;
+  private final Log log;
+
+  // guarded by this
+  private final List<EventSchedulerDispatcher> sessions = new ArrayList<>();
+  private Thread shutdownHook;
+
+  EventSchedulerSessions(Supplier<EventSchedulerDispatcher.Lifecycle> eventSchedulers, long timeoutMillis, Log log) {
+    this.eventSchedulers = eventSchedulers;
+    this.timeoutMillis = timeoutMillis;
+    this.log = log;
+  }
+
+  /**
+   * Starts the session of a run, see {@link EventSchedulerDispatcher#startSession(SchedulerExceptionHandler)}.
+   */
+  EventSchedulerDispatcher start(String runName, SchedulerExceptionHandler schedulerExceptionHandler) {
+    EventSchedulerDispatcher session = new EventSchedulerDispatcher(runName, eventSchedulers.get(), timeoutMillis, log);
+    synchronized (this) {
+      sessions.add(session);
+      if (shutdownHook == null) {
+        shutdownHook = new Thread(() -> {
+          if (abortLiveSessions() > 0) {
+            log.info("Shutdown Hook: aborted the running event scheduler sessions.");
+          }
+        }, "eventSchedulerShutdownThread");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+      }
+    }
+    session.startSession(schedulerExceptionHandler);
+    return session;
+  }
+
+  /**
+   * @return the sessions, in order of start
+   */
+  synchronized List<EventSchedulerDispatcher> sessions() {
+    return new ArrayList<>(sessions);
+  }
+
+  /**
+   * Aborts the running sessions in parallel, and waits for the aborts.
+   *
+   * @return the number of sessions this call aborted
+   */
+  int abortLiveSessions() {
+    List<Thread> aborts = new ArrayList<>();
+    int[] aborted = new int[1];
+    for (EventSchedulerDispatcher session : sessions()) {
+      if (session.getState() == EventSchedulerDispatcher.State.STARTED) {
+        Thread abort = new Thread(() -> {
+          if (session.abortSession()) {
+            synchronized (aborted) {
+              aborted[0]++;
+            }
+          }
+        }, "eventSchedulerAbort-" + session.getRunName());
+        abort.start();
+        aborts.add(abort);
+      }
+    }
+    try {
+      for (Thread abort : aborts) {
+        // an abort gives up waiting for its dispatcher after the timeout
+        abort.join(timeoutMillis + 1000);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while waiting for the event scheduler sessions to abort.");
+    }
+    synchronized (aborted) {
+      return aborted[0];
+    }
+  }
+
+  /**
+   * Removes the shutdown hook and shuts the dispatchers down, once all sessions ended.
+   */
+  synchronized void close() {
+    if (shutdownHook != null) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // the JVM is shutting down, the hook is running
+      }
+      shutdownHook = null;
+    }
+    for (EventSchedulerDispatcher session : sessions) {
+      session.shutdown();
+    }
+  }
+}
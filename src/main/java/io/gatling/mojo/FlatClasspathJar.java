@@ -0,0 +1,244 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Flattens the jars of a classpath into one stored (uncompressed) jar, so a forked JVM opens and searches a single
+ * jar instead of hundreds. Directories stay separate classpath elements since they change from build to build.
+ * <p>
+ * The first jar on the classpath wins for a duplicate entry, as it would with the original classpath, except for:
+ * <ul>
+ *   <li>{@literal reference.conf}: concatenated in reverse classpath order, so the first jar still wins for duplicate keys</li>
+ *   <li>{@literal META-INF/services}: merged, without duplicate lines</li>
+ *   <li>signature files, manifests and module descriptors: dropped</li>
+ * </ul>
+ * The jar is cached by the fingerprint of the jars, so it is built once and reused by later builds.
+ */
+final class FlatClasspathJar {
+
+  static final String FILE_PREFIX = "gatling-classpath-";
+  private static final String FILE_SUFFIX = ".jar";
+  private static final String REFERENCE_CONF = "reference.conf";
+  private static final String SERVICES = "META-INF/services/";
+  private static final long UNUSED_CACHE_ENTRY_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+  private FlatClasspathJar() {
+  }
+
+  /**
+   * @param classpath the classpath elements, jars and directories
+   * @param cacheFolder folder of the cached flattened jars
+   * @return the classpath with the jars replaced by the flattened jar, at the position of the first jar
+   */
+  static List<String> flatten(List<String> classpath, File cacheFolder) throws IOException {
+    List<File> jars = new ArrayList<>();
+    for (String element : classpath) {
+      File file = new File(element);
+      if (file.isFile()) {
+        jars.add(file);
+      }
+    }
+    if (jars.size() < 2) {
+      return classpath;
+    }
+
+    File flatJar = new File(cacheFolder, FILE_PREFIX + ClassDependencyGraph.fingerprint(jars) + FILE_SUFFIX);
+    if (flatJar.isFile()) {
+      // mark as used for the clean up of unused jars
+      flatJar.setLastModified(System.currentTimeMillis());
+    } else {
+      write(jars, flatJar);
+      removeUnused(cacheFolder, flatJar);
+    }
+
+    List<String> flattened = new ArrayList<>();
+    boolean flatJarAdded = false;
+    for (String element : classpath) {
+      if (!new File(element).isFile()) {
+        flattened.add(element);
+      } else if (!flatJarAdded) {
+        flattened.add(flatJar.getPath());
+        flatJarAdded = true;
+      }
+    }
+    return flattened;
+  }
+
+  private static void write(List<File> jars, File flatJar) throws IOException {
+    File folder = flatJar.getParentFile();
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new IOException("Could not create " + folder);
+    }
+    Set<String> written = new HashSet<>();
+    List<byte[]> referenceConfs = new ArrayList<>();
+    Map<String, Set<String>> services = new LinkedHashMap<>();
+    boolean multiRelease = false;
+
+    // written next to the final file and moved, so concurrent builds never see a partial jar
+    File temporary = File.createTempFile(FILE_PREFIX, ".tmp", folder);
+    try {
+      try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(temporary.toPath()))) {
+        out.setMethod(ZipEntry.STORED);
+        // the manifest comes first, so the manifests of all jars are read before copying any entry
+        List<JarFile> openJars = new ArrayList<>();
+        try {
+          for (File jar : jars) {
+            JarFile jarFile = new JarFile(jar);
+            openJars.add(jarFile);
+            Manifest manifest = jarFile.getManifest();
+            multiRelease |= manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+          }
+          Manifest manifest = new Manifest();
+          manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+          if (multiRelease) {
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+          }
+          ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+          manifest.write(manifestBytes);
+          writeEntry(out, "META-INF/", new byte[0]);
+          writeEntry(out, JarFile.MANIFEST_NAME, manifestBytes.toByteArray());
+          written.add("META-INF/");
+          written.add(JarFile.MANIFEST_NAME);
+
+          for (JarFile jarFile : openJars) {
+            for (JarEntry entry : Collections.list(jarFile.entries())) {
+              String name = entry.getName();
+              if (isDropped(name)) {
+                continue;
+              }
+              if (name.equals(REFERENCE_CONF)) {
+                referenceConfs.add(read(jarFile, entry));
+              } else if (name.startsWith(SERVICES) && !entry.isDirectory() && name.length() > SERVICES.length()) {
+                Set<String> providers = services.computeIfAbsent(name, key -> new LinkedHashSet<>());
+                for (String line : new String(read(jarFile, entry), StandardCharsets.UTF_8).split("\\r?\\n")) {
+                  String provider = line.trim();
+                  if (!provider.isEmpty() && !provider.startsWith("#")) {
+                    providers.add(provider);
+                  }
+                }
+              } else if (written.add(name)) {
+                writeEntry(out, name, entry.isDirectory() ? new byte[0] : read(jarFile, entry));
+              }
+            }
+          }
+        } finally {
+          for (JarFile jarFile : openJars) {
+            jarFile.close();
+          }
+        }
+
+        if (!referenceConfs.isEmpty()) {
+          ByteArrayOutputStream merged = new ByteArrayOutputStream();
+          for (int i = referenceConfs.size() - 1; i >= 0; i--) {
+            merged.write(referenceConfs.get(i));
+            merged.write('\n');
+          }
+          writeEntry(out, REFERENCE_CONF, merged.toByteArray());
+        }
+        for (Map.Entry<String, Set<String>> service : services.entrySet()) {
+          writeEntry(out, service.getKey(), (String.join("\n", service.getValue()) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      try {
+        Files.move(temporary.toPath(), flatJar.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary.toPath(), flatJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary.toPath());
+    }
+  }
+
+  private static boolean isDropped(String name) {
+    String upperCase = name.toUpperCase(Locale.ROOT);
+    if (upperCase.equals(JarFile.MANIFEST_NAME) || upperCase.equals("META-INF/") || upperCase.equals("META-INF/INDEX.LIST")) {
+      return true;
+    }
+    if (name.equals("module-info.class") || name.endsWith("/module-info.class")) {
+      return true;
+    }
+    if (upperCase.startsWith("META-INF/") && upperCase.indexOf('/', "META-INF/".length()) < 0) {
+      return upperCase.endsWith(".SF") || upperCase.endsWith(".DSA") || upperCase.endsWith(".RSA") || upperCase.endsWith(".EC");
+    }
+    return false;
+  }
+
+  private static byte[] read(JarFile jarFile, JarEntry entry) throws IOException {
+    try (InputStream in = jarFile.getInputStream(entry)) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        bytes.write(buffer, 0, read);
+      }
+      return bytes.toByteArray();
+    }
+  }
+
+  private static void writeEntry(JarOutputStream out, String name, byte[] content) throws IOException {
+    JarEntry entry = new JarEntry(name);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    entry.setCompressedSize(content.length);
+    entry.setCrc(crc.getValue());
+    // fixed time, so the same classpath always gives the same jar
+    entry.setTime(0);
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+
+  private static void removeUnused(File cacheFolder, File current) {
+    File[] cached = cacheFolder.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+    if (cached != null) {
+      long threshold = System.currentTimeMillis() - UNUSED_CACHE_ENTRY_MILLIS;
+      for (File file : cached) {
+        if (!file.equals(current) && file.lastModified() < threshold) {
+          // best effort, another build may be using it
+          file.delete();
+        }
+      }
+    }
+  }
+}
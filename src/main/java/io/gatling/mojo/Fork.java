@@ -28,17 +28,26 @@ import org.apache.maven.toolchain.Toolchain;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.gatling.mojo.MojoConstants.HEARTBEAT_FILE_PROPERTY;
+import static io.gatling.mojo.MojoConstants.STOP_SIGNAL_FILE_PROPERTY;
 
 class Fork {
 
   private static final String ARG_FILE_PREFIX = "gatling-maven-plugin-";
   private static final String ARG_FILE_SUFFIX = ".args";
 
+  private final File javaExecutableFile;
   private final String javaExecutable;
   private final String mainClassName;
   private final List<String> classpath;
@@ -49,21 +58,34 @@ class Fork {
   // volatile because possibly multiple threads are involved
   private volatile SchedulerExceptionType schedulerExceptionType = SchedulerExceptionType.NONE;
 
-  private final ExecuteWatchdog gatlingProcessWatchDog =
-      new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
+  private final ForcibleWatchdog gatlingProcessWatchDog = new ForcibleWatchdog();
+
+  private final CountDownLatch processFinished = new CountDownLatch(1);
+
+  private long gracefulStopTimeoutMillis = 0;
+  private volatile File stopSignalFile;
+  private File flatClasspathCacheFolder;
+  private File heartbeatFile;
+  private GatlingDaemonClient daemonClient;
+  private InProcessGatling inProcessGatling;
+  private ForkAdmission admission;
+  private String admissionName;
+  private int admissionCpus;
+  private final AtomicLong outputBytes = new AtomicLong();
+  private volatile long runMillis;
 
   private final SchedulerExceptionHandler schedulerExceptionHandler = new SchedulerExceptionHandler() {
     @Override
     public void kill(String message) {
       log.info("Killing running process, message: " + message);
       schedulerExceptionType = SchedulerExceptionType.KILL;
-      gatlingProcessWatchDog.destroyProcess();
+      stopProcess();
     }
     @Override
     public void abort(String message) {
       log.info("Killing running process, message: " + message);
       schedulerExceptionType = SchedulerExceptionType.ABORT;
-      gatlingProcessWatchDog.destroyProcess();
+      stopProcess();
     }
   };
 
@@ -94,7 +116,8 @@ class Fork {
     this.classpath = classpath;
     this.jvmArgs.addAll(jvmArgs);
     this.args.addAll(args);
-    this.javaExecutable = safe(toWindowsShortName(findJavaExecutable(toolchain)));
+    this.javaExecutableFile = new File(findJavaExecutable(toolchain));
+    this.javaExecutable = safe(toWindowsShortName(javaExecutableFile.getPath()));
     this.propagateSystemProperties = propagateSystemProperties;
     this.log = log;
     this.workingDirectory = workingDirectory;
@@ -104,6 +127,130 @@ class Fork {
     return schedulerExceptionHandler;
   }
 
+  /**
+   * Stop the process gracefully on kill or abort: signal the forked JVM to exit, so its shutdown
+   * hooks can stop the injection and flush the writers, and only destroy it when it is still
+   * running after the given timeout. A timeout of 0 destroys the process right away.
+   */
+  void setGracefulStopTimeout(long timeout, TimeUnit unit) {
+    this.gracefulStopTimeoutMillis = unit.toMillis(timeout);
+  }
+
+  /**
+   * Start the forked JVM with its jars flattened into one cached jar, see {@link FlatClasspathJar}.
+   */
+  void setFlatClasspathCacheFolder(File cacheFolder) {
+    this.flatClasspathCacheFolder = cacheFolder;
+  }
+
+  /**
+   * Run in the given daemon instead of a new JVM, see {@link GatlingDaemonClient}.
+   */
+  void setDaemonClient(GatlingDaemonClient daemonClient) {
+    this.daemonClient = daemonClient;
+  }
+
+  /**
+   * Run in the Maven JVM instead of a new one, see {@link InProcessGatling}.
+   */
+  void setInProcessGatling(InProcessGatling inProcessGatling) {
+    this.inProcessGatling = inProcessGatling;
+  }
+
+  /**
+   * Wait for the admission of the forked JVM, with its -Xmx heap and the given CPUs, before starting it, see {@link ForkAdmission}.
+   */
+  void setAdmission(ForkAdmission admission, String name, int cpus) {
+    this.admission = admission;
+    this.admissionName = name;
+    this.admissionCpus = cpus;
+  }
+
+  /**
+   * Let the forked JVM write its process id and CPU time to the given file every second, see {@link ProgressWatchdog}.
+   */
+  void setHeartbeatFile(File heartbeatFile) {
+    this.heartbeatFile = heartbeatFile;
+  }
+
+  /**
+   * @return the number of bytes the forked process wrote to its standard output and error so far
+   */
+  long getOutputBytes() {
+    return outputBytes.get();
+  }
+
+  /**
+   * @return the tool with the given name next to the java executable the process is forked with, it might not exist
+   */
+  File javaTool(String name) {
+    String extension = javaExecutableFile.getName().endsWith(".exe") ? ".exe" : "";
+    return new File(javaExecutableFile.getParentFile(), name + extension);
+  }
+
+  private void stopProcess() {
+    if (inProcessGatling != null) {
+      inProcessGatling.stop();
+      return;
+    }
+    if (daemonClient != null) {
+      daemonClient.stop();
+      return;
+    }
+    File signal = stopSignalFile;
+    if (signal == null) {
+      gatlingProcessWatchDog.destroyProcess();
+      return;
+    }
+    Thread stopper = new Thread(() -> {
+      try {
+        if (!signal.createNewFile() && !signal.exists()) {
+          throw new IOException("Could not create " + signal);
+        }
+        log.info("Signalled forked process to stop, waiting at most " + gracefulStopTimeoutMillis + " ms for it to flush its results.");
+        if (!processFinished.await(gracefulStopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+          log.warn("Forked process did not stop within " + gracefulStopTimeoutMillis + " ms, destroying it.");
+          gatlingProcessWatchDog.destroyProcessForcibly();
+        }
+      } catch (IOException e) {
+        log.warn("Could not signal forked process to stop, destroying it: " + e.getMessage());
+        gatlingProcessWatchDog.destroyProcess();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        gatlingProcessWatchDog.destroyProcess();
+      }
+    }, "gatlingGracefulStop");
+    stopper.setDaemon(true);
+    stopper.start();
+  }
+
+  /**
+   * Watchdog that can also kill the process: a JVM that already runs its shutdown hooks, after the stop signal, ignores
+   * the termination request of {@link Process#destroy()}.
+   */
+  private static final class ForcibleWatchdog extends ExecuteWatchdog {
+
+    private volatile Process process;
+
+    ForcibleWatchdog() {
+      super(ExecuteWatchdog.INFINITE_TIMEOUT);
+    }
+
+    @Override
+    public synchronized void start(Process processToMonitor) {
+      process = processToMonitor;
+      super.start(processToMonitor);
+    }
+
+    void destroyProcessForcibly() {
+      Process monitored = process;
+      if (monitored != null) {
+        monitored.destroyForcibly();
+      }
+      destroyProcess();
+    }
+  }
+
   private String toWindowsShortName(String value) {
     if (MojoUtils.IS_WINDOWS) {
       int programFilesIndex = value.indexOf("Program Files");
@@ -132,23 +279,41 @@ class Fork {
     return value.contains(" ") ? '"' + value + '"' : value;
   }
 
+  /**
+   * @return the wall time of the last run of Gatling, without waiting for its admission
+   */
+  long getRunMillis() {
+    return runMillis;
+  }
+
   void run() throws Exception {
+    // the system properties of the Maven JVM are already visible in-process
+    if (inProcessGatling != null) {
+      runInProcess();
+      return;
+    }
+
     if (propagateSystemProperties) {
-      for (Entry<Object, Object> systemProp : System.getProperties().entrySet()) {
-        String name = systemProp.getKey().toString();
-        String value = toWindowsShortName(systemProp.getValue().toString());
-        if (isPropagatableProperty(name)) {
-          if (name.contains(" ")) {
-            log.warn("System property name '" + name + "' contains a whitespace and can't be propagated");
+      this.jvmArgs.addAll(systemPropertyArgs());
+    }
 
-          } else if (MojoUtils.IS_WINDOWS && value.contains(" ")) {
-            log.warn("System property value '" + value + "' contains a whitespace and can't be propagated on Windows");
+    if (daemonClient != null) {
+      runInDaemon();
+      return;
+    }
 
-          } else {
-            this.jvmArgs.add("-D" + name + "=" + safe(StringUtils.escape(value)));
-          }
-        }
+    if (gracefulStopTimeoutMillis > 0) {
+      File signal = File.createTempFile("gatling-stop-", ".signal");
+      if (!signal.delete()) {
+        throw new IOException("Could not prepare stop signal file " + signal);
       }
+      signal.deleteOnExit();
+      this.jvmArgs.add("-D" + STOP_SIGNAL_FILE_PROPERTY + "=" + safe(signal.getCanonicalPath()));
+      stopSignalFile = signal;
+    }
+
+    if (heartbeatFile != null) {
+      this.jvmArgs.add("-D" + HEARTBEAT_FILE_PROPERTY + "=" + safe(heartbeatFile.getCanonicalPath()));
     }
 
     this.jvmArgs.add("-jar");
@@ -157,12 +322,13 @@ class Fork {
       log.debug(StringUtils.join(classpath.iterator(), ",\n"));
     }
 
-    this.jvmArgs.add(MojoUtils.createBooterJar(classpath, MainWithArgsInFile.class.getName()).getCanonicalPath());
+    List<String> forkClasspath = flatClasspathCacheFolder != null ? FlatClasspathJar.flatten(classpath, flatClasspathCacheFolder) : classpath;
+    this.jvmArgs.add(MojoUtils.createBooterJar(forkClasspath, MainWithArgsInFile.class.getName()).getCanonicalPath());
 
     List<String> command = buildCommand();
 
     Executor exec = new DefaultExecutor();
-    exec.setStreamHandler(new PumpStreamHandler(System.out, System.err, System.in));
+    exec.setStreamHandler(new PumpStreamHandler(new CountingOutputStream(System.out), new CountingOutputStream(System.err), System.in));
     exec.setProcessDestroyer(new ShutdownHookProcessDestroyer());
     if (workingDirectory != null) {
       exec.setWorkingDirectory(workingDirectory);
@@ -179,28 +345,115 @@ class Fork {
 
     exec.setWatchdog(gatlingProcessWatchDog);
 
+    ForkAdmission.Lease lease = null;
     try {
-      int exitValue = exec.execute(cl);
+      if (admission != null) {
+        lease = admission.acquire(admissionName, ForkAdmission.heapBytes(jvmArgs), admissionCpus);
+        if (schedulerExceptionType != SchedulerExceptionType.NONE) {
+          throw new ExecuteException("Stopped while waiting for host resources", 1);
+        }
+      }
+      long start = System.nanoTime();
+      int exitValue;
+      try {
+        exitValue = exec.execute(cl);
+      } finally {
+        runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      }
       if (exitValue != 0) {
         throw new MojoFailureException("command line returned non-zero value:" + exitValue);
       }
     } catch (Exception e) {
-      // these are set by the SchedulerExceptionHandler
-      if (schedulerExceptionType == SchedulerExceptionType.KILL) {
-        throw new KillSwitchException("KillSwitch killed the process! " + e.getMessage());
-      }
-      else if (schedulerExceptionType == SchedulerExceptionType.ABORT) {
-        throw new AbortSchedulerException("AbortScheduler stopped the process! " + e.getMessage());
-      }
       if (log.isDebugEnabled()) {
         log.debug("Exception from executor for: " + cl.toString(), e);
       }
-      // can expect exceptions from killed gatling process here, e.g. via kill -TERM <pid> (code 130 or 143)
-      throw e;
+      throw stopException(e);
+    } finally {
+      if (lease != null) {
+        try {
+          lease.close();
+        } catch (IOException e) {
+          log.warn("Could not release the host resources lease " + lease.getFile() + ": " + e.getMessage());
+        }
+      }
+      processFinished.countDown();
+      File signal = stopSignalFile;
+      if (signal != null && signal.exists() && !signal.delete()) {
+        log.debug("Could not delete stop signal file " + signal);
+      }
     }
 
   }
 
+  private void runInProcess() throws Exception {
+    if (log.isDebugEnabled()) {
+      log.debug("Running " + mainClassName + " in-process, only the system properties of " + jvmArgs + " apply");
+    }
+    long start = System.nanoTime();
+    try {
+      int exitValue = inProcessGatling.run(classpath, mainClassName, args, MojoUtils.systemProperties(jvmArgs));
+      if (exitValue != 0) {
+        throw new ExecuteException("Process exited with an error: " + exitValue, exitValue);
+      }
+    } catch (Exception e) {
+      throw stopException(e);
+    } finally {
+      runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      processFinished.countDown();
+    }
+  }
+
+  private void runInDaemon() throws Exception {
+    long start = System.nanoTime();
+    try {
+      int exitValue = daemonClient.run(javaExecutableFile, jvmArgs, classpath, mainClassName, args,
+        new CountingOutputStream(System.out), new CountingOutputStream(System.err));
+      if (exitValue != 0) {
+        throw new ExecuteException("Process exited with an error: " + exitValue, exitValue);
+      }
+    } catch (Exception e) {
+      throw stopException(e);
+    } finally {
+      runMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      processFinished.countDown();
+    }
+  }
+
+  /**
+   * @return the exception to throw for a failed run, which tells when it was killed or aborted by the SchedulerExceptionHandler
+   */
+  private Exception stopException(Exception e) {
+    // these are set by the SchedulerExceptionHandler
+    if (schedulerExceptionType == SchedulerExceptionType.KILL) {
+      return new KillSwitchException("KillSwitch killed the process! " + e.getMessage());
+    }
+    else if (schedulerExceptionType == SchedulerExceptionType.ABORT) {
+      return new AbortSchedulerException("AbortScheduler stopped the process! " + e.getMessage());
+    }
+    // can expect exceptions from killed gatling process here, e.g. via kill -TERM <pid> (code 130 or 143)
+    return e;
+  }
+
+  List<String> systemPropertyArgs() {
+    List<String> systemPropertyArgs = new ArrayList<>();
+    for (Entry<Object, Object> systemProp : System.getProperties().entrySet()) {
+      String name = systemProp.getKey().toString();
+      if (isPropagatableProperty(name)) {
+        String value = toWindowsShortName(systemProp.getValue().toString());
+        if (name.contains(" ")) {
+          log.warn("System property name '" + name + "' contains a whitespace and can't be propagated");
+
+        } else if (MojoUtils.IS_WINDOWS && value.contains(" ")) {
+          log.warn("System property value '" + value + "' contains a whitespace and can't be propagated on Windows");
+
+        } else {
+          systemPropertyArgs.add("-D" + name + "=" + safe(StringUtils.escape(value)));
+        }
+      }
+    }
+    return systemPropertyArgs;
+  }
+
   private List<String> buildCommand() throws IOException {
     ArrayList<String> command = new ArrayList<>(jvmArgs.size() + 2);
     command.addAll(jvmArgs);
@@ -253,4 +506,23 @@ class Fork {
       return argFile;
     }
   }
+
+  private final class CountingOutputStream extends FilterOutputStream {
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      outputBytes.incrementAndGet();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      outputBytes.addAndGet(len);
+    }
+  }
 }
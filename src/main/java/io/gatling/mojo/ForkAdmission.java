@@ -0,0 +1,318 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission of forked Gatling JVMs within a memory and CPU budget of the host, shared by the builds of the user through a
+ * ledger folder, so parallel builds or modules do not start more load generators than the host can run.
+ * <p>
+ * Every admitted fork holds a lease file, locked for as long as the fork runs. The memory and CPUs of a lease are in its
+ * name, the ledger is the set of lease files. A lease file that is not locked anymore was left by a build that died, and
+ * is removed. The ledger is changed while holding the lock of its ledger.lock file.
+ */
+final class ForkAdmission {
+
+  static final String LEASE_SUFFIX = ".lease";
+  private static final String LEDGER_LOCK = "ledger.lock";
+  private static final long POLL_MILLIS = 1000;
+
+  // file locks are held by the JVM, so the parallel executions of a multi-threaded build also synchronize in-process
+  private static final Object JVM_LOCK = new Object();
+  // closing any channel of a file releases all locks of the JVM on it, so the leases of this JVM are never probed
+  private static final Set<Path> HELD_LEASES = new HashSet<>();
+
+  private final File ledgerFolder;
+  private final long memoryBudgetBytes;
+  private final int cpuBudget;
+  private final long timeoutMillis;
+  private final Log log;
+
+  /**
+   * @param memoryBudgetBytes memory the leases may take together, 0 or less is unlimited
+   * @param cpuBudget CPUs the leases may take together, 0 or less is unlimited
+   * @param timeoutMillis maximum time to wait for an admission, 0 or less waits without limit
+   */
+  ForkAdmission(File ledgerFolder, long memoryBudgetBytes, int cpuBudget, long timeoutMillis, Log log) {
+    this.ledgerFolder = ledgerFolder;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.cpuBudget = cpuBudget;
+    this.timeoutMillis = timeoutMillis;
+    this.log = log;
+  }
+
+  /**
+   * Waits until the fork fits in the budget next to the leases of the other forks, and takes a lease for it.
+   * A fork that does not fit in the budget on its own is admitted when there are no other leases.
+   */
+  Lease acquire(String name, long memoryBytes, int cpus) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    boolean waiting = false;
+    while (true) {
+      Lease lease = tryAcquire(name, memoryBytes, cpus);
+      long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (lease != null) {
+        if (waiting) {
+          log.info("Fork of " + name + " admitted after waiting " + formatSeconds(waitedMillis) + " for host resources.");
+        }
+        return lease;
+      }
+      if (!waiting) {
+        Usage usage;
+        synchronized (JVM_LOCK) {
+          usage = usage();
+        }
+        log.info("Waiting for host resources to fork " + name + ": it needs " + formatBytes(memoryBytes) + " and " + cpus + " CPU(s), "
+          + usage.leases + " running fork(s) use " + formatBytes(usage.memoryBytes) + " of " + formatBytes(memoryBudgetBytes)
+          + " and " + usage.cpus + " of " + cpuBudget + " CPU(s).");
+        waiting = true;
+      }
+      if (timeoutMillis > 0 && waitedMillis >= timeoutMillis) {
+        throw new IOException("No host resources available to fork " + name + " after waiting " + formatSeconds(waitedMillis)
+          + ", see the lease files in " + ledgerFolder);
+      }
+      Thread.sleep(POLL_MILLIS);
+    }
+  }
+
+  /**
+   * @return the lease of the fork, or null when it does not fit in the budget yet
+   */
+  Lease tryAcquire(String name, long memoryBytes, int cpus) throws IOException {
+    synchronized (JVM_LOCK) {
+      if (!ledgerFolder.exists() && !ledgerFolder.mkdirs()) {
+        throw new IOException("Could not create " + ledgerFolder);
+      }
+      try (FileChannel channel = FileChannel.open(new File(ledgerFolder, LEDGER_LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+           FileLock ignored = channel.lock()) {
+        Usage usage = usage();
+        boolean fits = (memoryBudgetBytes <= 0 || usage.memoryBytes + memoryBytes <= memoryBudgetBytes)
+          && (cpuBudget <= 0 || usage.cpus + cpus <= cpuBudget);
+        if (!fits && usage.leases > 0) {
+          return null;
+        }
+        if (!fits) {
+          log.warn("Fork of " + name + " needs " + formatBytes(memoryBytes) + " and " + cpus + " CPU(s), more than the host budget of "
+            + formatBytes(memoryBudgetBytes) + " and " + cpuBudget + " CPU(s), admitting it as the only fork.");
+        }
+        return Lease.take(new File(ledgerFolder, memoryBytes + "-" + cpus + "-" + UUID.randomUUID() + LEASE_SUFFIX), name);
+      }
+    }
+  }
+
+  /**
+   * @return the resources of the live leases, removing the leases of builds that died
+   */
+  private Usage usage() throws IOException {
+    Usage usage = new Usage();
+    File[] files = ledgerFolder.listFiles((dir, fileName) -> fileName.endsWith(LEASE_SUFFIX));
+    if (files == null) {
+      return usage;
+    }
+    for (File file : files) {
+      String[] parts = file.getName().split("-", 3);
+      if (parts.length < 3 || !isLive(file)) {
+        continue;
+      }
+      try {
+        usage.memoryBytes += Long.parseLong(parts[0]);
+        usage.cpus += Integer.parseInt(parts[1]);
+        usage.leases++;
+      } catch (NumberFormatException e) {
+        log.debug("Ignoring lease file " + file);
+      }
+    }
+    return usage;
+  }
+
+  private boolean isLive(File leaseFile) throws IOException {
+    if (HELD_LEASES.contains(key(leaseFile))) {
+      return true;
+    }
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(leaseFile.toPath(), StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      // released and removed meanwhile
+      return false;
+    }
+    try {
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        return true;
+      }
+      lock.release();
+    } catch (OverlappingFileLockException e) {
+      // held by this JVM through another path of the ledger folder
+      return true;
+    } finally {
+      channel.close();
+    }
+    if (leaseFile.delete()) {
+      log.info("Removed lease " + leaseFile.getName() + " of a build that stopped without releasing it.");
+    }
+    return false;
+  }
+
+  /**
+   * @return the heap the JVM arguments declare with -Xmx, or the default maximum heap of a JVM on this host, which is a quarter of its memory
+   */
+  static long heapBytes(List<String> jvmArgs) {
+    long heap = -1;
+    for (String arg : jvmArgs) {
+      if (arg.startsWith("-Xmx")) {
+        heap = parseSize(arg.substring("-Xmx".length()));
+      }
+    }
+    if (heap > 0) {
+      return heap;
+    }
+    long memory = physicalMemoryBytes();
+    return memory > 0 ? memory / 4 : 0;
+  }
+
+  /**
+   * @return the bytes of a JVM memory size, such as 512m or 4G, or -1 when it can not be parsed
+   */
+  static long parseSize(String size) {
+    String value = size.trim().toLowerCase(Locale.ROOT);
+    if (value.isEmpty()) {
+      return -1;
+    }
+    long unit = 1;
+    switch (value.charAt(value.length() - 1)) {
+      case 'k': unit = 1L << 10; break;
+      case 'm': unit = 1L << 20; break;
+      case 'g': unit = 1L << 30; break;
+      case 't': unit = 1L << 40; break;
+      default: break;
+    }
+    try {
+      return Long.parseLong(unit == 1 ? value : value.substring(0, value.length() - 1)) * unit;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * The getter is looked up by name: Java 14 deprecated getTotalPhysicalMemorySize for getTotalMemorySize, which
+   * Java 8 does not have.
+   *
+   * @return the physical memory of the host, or -1 when the JVM does not tell
+   */
+  static long physicalMemoryBytes() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (!(os instanceof com.sun.management.OperatingSystemMXBean)) {
+      return -1;
+    }
+    for (String getter : new String[]{"getTotalMemorySize", "getTotalPhysicalMemorySize"}) {
+      try {
+        return (Long) com.sun.management.OperatingSystemMXBean.class.getMethod(getter).invoke(os);
+      } catch (ReflectiveOperationException e) {
+        // not in this Java version, try the next one
+      }
+    }
+    return -1;
+  }
+
+  private static Path key(File leaseFile) {
+    return leaseFile.toPath().toAbsolutePath().normalize();
+  }
+
+  private static String formatBytes(long bytes) {
+    return bytes <= 0 ? "unlimited memory" : (bytes >> 20) + " MB";
+  }
+
+  private static String formatSeconds(long millis) {
+    return String.format(Locale.ROOT, "%.1f s", millis / 1000.0);
+  }
+
+  private static final class Usage {
+    private long memoryBytes;
+    private int cpus;
+    private int leases;
+  }
+
+  /**
+   * The admission of one fork, which must be closed when the fork ended.
+   */
+  static final class Lease implements AutoCloseable {
+
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private Lease(File file, FileChannel channel, FileLock lock) {
+      this.file = file;
+      this.channel = channel;
+      this.lock = lock;
+    }
+
+    private static Lease take(File file, String name) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      try {
+        FileLock lock = channel.lock();
+        String owner = name + " in " + ManagementFactory.getRuntimeMXBean().getName() + System.lineSeparator();
+        channel.write(ByteBuffer.wrap(owner.getBytes(StandardCharsets.UTF_8)));
+        HELD_LEASES.add(key(file));
+        return new Lease(file, channel, lock);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        file.delete();
+        throw e;
+      }
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+      synchronized (JVM_LOCK) {
+        try {
+          lock.release();
+        } finally {
+          channel.close();
+          HELD_LEASES.remove(key(file));
+          if (!file.delete()) {
+            // it is removed as stale by the next admission
+            file.deleteOnExit();
+          }
+        }
+      }
+    }
+  }
+}
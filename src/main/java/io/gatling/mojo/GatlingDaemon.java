@@ -0,0 +1,307 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.gatling.mojo.MojoConstants.STOPPED_EXIT_CODE;
+
+/**
+ * Long-lived runner JVM that keeps the Gatling and Akka classes loaded and JIT-compiled across runs, see
+ * {@link GatlingDaemonClient}.
+ * <p>
+ * It serves one run at a time on a loopback socket, announced with a random token in its state file, which only its
+ * owner can read as the token allows to run any class. The compiled
+ * simulations of each run are loaded in a new {@link SimulationClassLoader}, with the system properties of the run set
+ * for its duration, and the output of the run is sent back to the plugin. When the plugin disconnects during a run,
+ * to stop it, the daemon exits like a stopped fork. It also exits when it was idle for the given time.
+ */
+public final class GatlingDaemon {
+
+  static final int OUTPUT = 1;
+  static final int ERROR = 2;
+  static final int EXIT = 3;
+
+  static final String PORT = "port";
+  static final String TOKEN = "token";
+  static final String PID = "pid";
+
+  private static final Set<PosixFilePermission> OWNER_FOLDER = PosixFilePermissions.fromString("rwx------");
+  private static final Set<PosixFilePermission> OWNER_FILE = PosixFilePermissions.fromString("rw-------");
+  private static final Set<PosixFilePermission> OTHERS = EnumSet.complementOf(EnumSet.of(
+    PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE));
+
+  private GatlingDaemon() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    File stateFile = new File(args[0]);
+    long idleTimeoutMillis = Long.parseLong(args[1]);
+    String token = new BigInteger(130, new SecureRandom()).toString(32);
+    PrintStream out = System.out;
+    PrintStream err = System.err;
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout((int) Math.min(idleTimeoutMillis, Integer.MAX_VALUE));
+      writeState(stateFile, server.getLocalPort(), token);
+      out.println("Gatling daemon listening on port " + server.getLocalPort());
+      while (true) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException e) {
+          out.println("Gatling daemon idle for " + idleTimeoutMillis + " ms, stopping.");
+          break;
+        }
+        try (Socket connection = socket) {
+          serve(connection, token);
+        } catch (IOException e) {
+          err.println("Gatling daemon run failed: " + e.getMessage());
+        } finally {
+          System.setOut(out);
+          System.setErr(err);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(stateFile.toPath());
+    }
+  }
+
+  /**
+   * The token allows to run any class, so only the owner may read the state file.
+   */
+  private static void writeState(File stateFile, int port, String token) throws IOException {
+    String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    String state = PORT + "=" + port + "\n" + TOKEN + "=" + token + "\n" + PID + "=" + pid + "\n";
+    Path temp = new File(stateFile.getPath() + ".tmp").toPath();
+    Files.deleteIfExists(temp);
+    if (isPosix()) {
+      Files.createFile(temp, PosixFilePermissions.asFileAttribute(OWNER_FILE));
+    } else {
+      Files.createFile(temp);
+      restrictToOwner(temp, OWNER_FILE);
+    }
+    Files.write(temp, state.getBytes(StandardCharsets.ISO_8859_1));
+    Files.move(temp, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Creates the folder, or restricts the existing one, to its owner.
+   */
+  static void createPrivateFolder(File folder) throws IOException {
+    Path path = folder.toPath();
+    if (!Files.isDirectory(path)) {
+      if (isPosix()) {
+        Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_FOLDER));
+      } else {
+        Files.createDirectories(path);
+      }
+    }
+    restrictToOwner(path, OWNER_FOLDER);
+  }
+
+  /**
+   * @return true when no one but the owner of the file has access to it
+   */
+  static boolean isPrivate(File file) throws IOException {
+    Path path = file.toPath();
+    if (isPosix()) {
+      return Collections.disjoint(Files.getPosixFilePermissions(path), OTHERS);
+    }
+    AclFileAttributeView view = Files.getFileAttributeView(path, AclFileAttributeView.class);
+    if (view == null) {
+      return true;
+    }
+    UserPrincipal owner = view.getOwner();
+    for (AclEntry entry : view.getAcl()) {
+      if (entry.type() == AclEntryType.ALLOW && !entry.principal().equals(owner)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void restrictToOwner(Path path, Set<PosixFilePermission> permissions) throws IOException {
+    if (isPosix()) {
+      Files.setPosixFilePermissions(path, permissions);
+      return;
+    }
+    AclFileAttributeView view = Files.getFileAttributeView(path, AclFileAttributeView.class);
+    if (view != null) {
+      view.setAcl(Collections.singletonList(AclEntry.newBuilder()
+        .setType(AclEntryType.ALLOW)
+        .setPrincipal(view.getOwner())
+        .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+        .build()));
+    }
+  }
+
+  private static boolean isPosix() {
+    return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+  }
+
+  private static void serve(Socket socket, String token) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    if (!token.equals(in.readUTF())) {
+      return;
+    }
+    List<String> folders = readList(in);
+    String mainClassName = in.readUTF();
+    List<String> args = readList(in);
+    Map<String, String> properties = new LinkedHashMap<>();
+    int propertyCount = in.readInt();
+    for (int i = 0; i < propertyCount; i++) {
+      properties.put(in.readUTF(), in.readUTF());
+    }
+
+    AtomicBoolean finished = new AtomicBoolean();
+    watchDisconnect(in, finished);
+
+    PrintStream runOut = new PrintStream(new FrameOutputStream(data, OUTPUT), true);
+    PrintStream runErr = new PrintStream(new FrameOutputStream(data, ERROR), true);
+    System.setOut(runOut);
+    System.setErr(runErr);
+    int exitCode;
+    try {
+      exitCode = run(folders, mainClassName, args, properties);
+    } catch (Exception e) {
+      e.printStackTrace();
+      exitCode = -1;
+    } finally {
+      runOut.flush();
+      runErr.flush();
+    }
+    finished.set(true);
+    synchronized (data) {
+      data.writeByte(EXIT);
+      data.writeInt(exitCode);
+      data.flush();
+    }
+  }
+
+  /**
+   * The plugin sends nothing after its request, so the end of the input during a run means it wants the run stopped.
+   */
+  private static void watchDisconnect(DataInputStream in, AtomicBoolean finished) {
+    Thread watcher = new Thread(() -> {
+      try {
+        while (in.read() >= 0) {
+          // nothing expected
+        }
+      } catch (IOException e) {
+        // disconnected
+      }
+      if (!finished.get()) {
+        System.exit(STOPPED_EXIT_CODE);
+      }
+    }, "gatlingDaemonDisconnectWatcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  static int run(List<String> folders, String mainClassName, List<String> args, Map<String, String> properties) throws Exception {
+    URL[] urls = new URL[folders.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = MojoUtils.getURL(new File(folders.get(i)));
+    }
+    return InProcessGatling.run(urls, GatlingDaemon.class.getClassLoader(), mainClassName, args, properties);
+  }
+
+  static List<String> readList(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    List<String> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(in.readUTF());
+    }
+    return list;
+  }
+
+  static void writeList(DataOutputStream out, List<String> list) throws IOException {
+    out.writeInt(list.size());
+    for (String element : list) {
+      out.writeUTF(element);
+    }
+  }
+
+  /**
+   * Sends what is written as frames of the given type, so output and error can share the socket with the exit code.
+   */
+  private static final class FrameOutputStream extends OutputStream {
+    private final DataOutputStream data;
+    private final int type;
+
+    private FrameOutputStream(DataOutputStream data, int type) {
+      this.data = data;
+      this.type = type;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      synchronized (data) {
+        data.writeByte(type);
+        data.writeInt(len);
+        data.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (data) {
+        data.flush();
+      }
+    }
+  }
+}
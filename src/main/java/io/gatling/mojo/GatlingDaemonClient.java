@@ -0,0 +1,259 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Hands Gatling runs to a {@link GatlingDaemon}, which is started on first use and found again by the next builds
+ * through its state file in the daemon folder.
+ * <p>
+ * The state file is keyed by what a running daemon can not change: the java executable, the JVM options and the jars
+ * of the classpath. A change of any of them starts another daemon, the previous one stops once idle. The folders of the
+ * classpath, with the compiled simulations, are loaded fresh for each run, and the system properties among the JVM
+ * arguments are only set for the run.
+ */
+final class GatlingDaemonClient {
+
+  private static final long START_TIMEOUT_MILLIS = 60000;
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+  private final File daemonFolder;
+  private final long idleTimeoutMillis;
+  private final Log log;
+
+  private volatile Socket socket;
+  private volatile boolean stopped;
+
+  GatlingDaemonClient(File daemonFolder, long idleTimeoutMillis, Log log) {
+    this.daemonFolder = daemonFolder;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.log = log;
+  }
+
+  /**
+   * Runs the main class in the daemon, copying the output of the run to the given streams.
+   *
+   * @return the exit code of the run
+   */
+  int run(File javaExecutable, List<String> jvmArgs, List<String> classpath, String mainClassName, List<String> args,
+          OutputStream out, OutputStream err) throws IOException {
+    List<String> options = new ArrayList<>();
+    for (String jvmArg : jvmArgs) {
+      if (!jvmArg.startsWith("-D")) {
+        options.add(jvmArg);
+      }
+    }
+    Map<String, String> properties = MojoUtils.systemProperties(jvmArgs);
+    List<String> folders = new ArrayList<>();
+    List<File> jars = new ArrayList<>();
+    for (String element : classpath) {
+      File file = new File(element);
+      if (file.isDirectory()) {
+        folders.add(file.getCanonicalPath());
+      } else {
+        jars.add(file);
+      }
+    }
+
+    String key = ClassDependencyGraph.sha1((javaExecutable + "\n" + options + "\n" + classpath + "\n" + ClassDependencyGraph.fingerprint(jars))
+      .getBytes(StandardCharsets.UTF_8));
+    Connection connection = connect(key, javaExecutable, options, classpath);
+    socket = connection.socket;
+    try (Socket ignored = connection.socket) {
+      if (stopped) {
+        throw new IOException("The run was stopped before it started.");
+      }
+      DataOutputStream request = new DataOutputStream(new BufferedOutputStream(connection.socket.getOutputStream()));
+      request.writeUTF(connection.token);
+      GatlingDaemon.writeList(request, folders);
+      request.writeUTF(mainClassName);
+      GatlingDaemon.writeList(request, args);
+      request.writeInt(properties.size());
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        request.writeUTF(property.getKey());
+        request.writeUTF(property.getValue());
+      }
+      request.flush();
+      return readResponse(new DataInputStream(new BufferedInputStream(connection.socket.getInputStream())), out, err);
+    } finally {
+      socket = null;
+    }
+  }
+
+  /**
+   * Stops the current run by disconnecting, the daemon exits like a stopped fork.
+   */
+  void stop() {
+    stopped = true;
+    Socket current = socket;
+    if (current != null) {
+      try {
+        current.close();
+      } catch (IOException e) {
+        log.debug("Could not disconnect from the Gatling daemon: " + e.getMessage());
+      }
+    }
+  }
+
+  private static int readResponse(DataInputStream response, OutputStream out, OutputStream err) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (true) {
+      int type;
+      try {
+        type = response.readUnsignedByte();
+      } catch (EOFException e) {
+        throw new IOException("The Gatling daemon disconnected before the end of the run.", e);
+      }
+      if (type == GatlingDaemon.EXIT) {
+        return response.readInt();
+      }
+      int length = response.readInt();
+      OutputStream target = type == GatlingDaemon.ERROR ? err : out;
+      while (length > 0) {
+        int read = response.read(buffer, 0, Math.min(buffer.length, length));
+        if (read < 0) {
+          throw new EOFException("Truncated output of the Gatling daemon");
+        }
+        target.write(buffer, 0, read);
+        length -= read;
+      }
+      target.flush();
+    }
+  }
+
+  private Connection connect(String key, File javaExecutable, List<String> options, List<String> classpath) throws IOException {
+    GatlingDaemon.createPrivateFolder(daemonFolder);
+    File stateFile = new File(daemonFolder, key + ".properties");
+    Connection connection = tryConnect(stateFile);
+    if (connection != null) {
+      return connection;
+    }
+    // another build might start the same daemon at the same time
+    try (FileChannel lockChannel = FileChannel.open(new File(daemonFolder, key + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock ignored = lockChannel.lock()) {
+      connection = tryConnect(stateFile);
+      if (connection == null) {
+        start(key, stateFile, javaExecutable, options, classpath);
+        connection = tryConnect(stateFile);
+      }
+    }
+    if (connection == null) {
+      throw new IOException("Could not connect to the Gatling daemon of " + stateFile);
+    }
+    return connection;
+  }
+
+  private void start(String key, File stateFile, File javaExecutable, List<String> options, List<String> classpath) throws IOException {
+    Files.deleteIfExists(stateFile.toPath());
+    // the booter jar of a fork is deleted when the build ends, the daemon outlives it
+    File booterJar = new File(daemonFolder, key + ".jar");
+    Files.copy(MojoUtils.createBooterJar(classpath, GatlingDaemon.class.getName()).toPath(), booterJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    File logFile = new File(daemonFolder, key + ".log");
+
+    List<String> command = new ArrayList<>();
+    command.add(javaExecutable.getPath());
+    command.addAll(options);
+    command.add("-jar");
+    command.add(booterJar.getPath());
+    command.add(stateFile.getPath());
+    command.add(Long.toString(idleTimeoutMillis));
+    log.info("Starting a Gatling daemon, its output goes to " + logFile);
+    Process process = new ProcessBuilder(command)
+      .redirectErrorStream(true)
+      .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+      .start();
+
+    long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+    while (!stateFile.isFile()) {
+      if (!process.isAlive()) {
+        throw new IOException("The Gatling daemon exited with " + process.exitValue() + ", see " + logFile);
+      }
+      if (System.currentTimeMillis() > deadline) {
+        process.destroy();
+        throw new IOException("The Gatling daemon did not start within " + START_TIMEOUT_MILLIS + " ms, see " + logFile);
+      }
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while starting the Gatling daemon", e);
+      }
+    }
+  }
+
+  /**
+   * @return a connection to the daemon of the state file, null when there is no such daemon (anymore)
+   */
+  private Connection tryConnect(File stateFile) {
+    if (!stateFile.isFile()) {
+      return null;
+    }
+    Properties state = new Properties();
+    try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+      if (!GatlingDaemon.isPrivate(stateFile)) {
+        log.warn("Ignoring the Gatling daemon of " + stateFile + ", other users can read its token.");
+        return null;
+      }
+      state.load(in);
+      Socket socket = new Socket();
+      try {
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty(GatlingDaemon.PORT))), CONNECT_TIMEOUT_MILLIS);
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+      log.info("Running in the Gatling daemon with pid " + state.getProperty(GatlingDaemon.PID) + ".");
+      return new Connection(socket, state.getProperty(GatlingDaemon.TOKEN));
+    } catch (IOException | RuntimeException e) {
+      log.debug("No Gatling daemon for " + stateFile + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static final class Connection {
+    private final Socket socket;
+    private final String token;
+
+    private Connection(Socket socket, String token) {
+      this.socket = socket;
+      this.token = token;
+    }
+  }
+}
@@ -20,10 +20,10 @@ package io.gatling.mojo;
 import nl.stokpop.eventscheduler.EventScheduler;
 import nl.stokpop.eventscheduler.EventSchedulerBuilder;
 import nl.stokpop.eventscheduler.api.EventLogger;
-import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
 import nl.stokpop.eventscheduler.api.config.EventSchedulerConfig;
 import nl.stokpop.eventscheduler.exception.EventCheckFailureException;
 import nl.stokpop.eventscheduler.exception.handler.KillSwitchException;
+import nl.stokpop.eventscheduler.exception.handler.SchedulerHandlerException;
 import org.apache.commons.exec.ExecuteException;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
@@ -53,6 +53,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static io.gatling.mojo.MojoConstants.*;
@@ -69,8 +76,12 @@ import static org.codehaus.plexus.util.StringUtils.isBlank;
   requiresDependencyResolution = ResolutionScope.TEST)
 public class GatlingMojo extends AbstractGatlingExecutionMojo {
 
-  private final Object eventSchedulerLock = new Object();
-  private EventScheduler eventScheduler;
+  private EventSchedulerSessions eventSchedulerSessions;
+
+  private LiveMetrics liveMetricsServer;
+
+  // simulations of this execution that ran without errors or assertion failures, possibly concurrently
+  private final Set<String> succeededSimulations = Collections.synchronizedSet(new LinkedHashSet<>());
 
   /**
    * A name of a Simulation class to run.
@@ -147,6 +158,13 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
   @Parameter(property = "gatling.overrideJvmArgs", defaultValue = "false")
   private boolean overrideJvmArgs;
 
+  /**
+   * Heap, garbage collector, JVM arguments, system properties and working directory of the simulations matching a profile,
+   * on top of the JVM arguments above. A profile changing the JVM forks a JVM, also with {@literal daemon} or {@literal inProcess}.
+   */
+  @Parameter
+  private List<SimulationProfile> simulationProfiles;
+
   /**
    * Propagate System properties to forked processes.
    */
@@ -204,13 +222,228 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
   @Parameter
   EventSchedulerConfig eventSchedulerConfig;
 
+  /**
+   * Maximum time to wait for an event scheduler stop, abort or check call to finish.
+   * The start of a session is not waited for, so it never delays the start of the load.
+   */
+  @Parameter(property = "gatling.eventSchedulerTimeoutInSeconds", defaultValue = "120")
+  private int eventSchedulerTimeoutInSeconds;
+
+  /**
+   * Time the forked Gatling process gets to stop and flush its results when the event scheduler
+   * kills or aborts the run, before it is destroyed. Use 0 to destroy the process right away.
+   */
+  @Parameter(property = "gatling.gracefulStopTimeoutInSeconds", defaultValue = "30")
+  private int gracefulStopTimeoutInSeconds;
+
+  /**
+   * Generate reports from the partial results of a run that was killed or aborted by the event scheduler.
+   */
+  @Parameter(property = "gatling.reportsOnStop", defaultValue = "true")
+  private boolean reportsOnStop;
+
+  /**
+   * Only run the simulations whose classes, or the classes they depend on, changed since the last successful run.
+   * All simulations run when there is no previous run, or when resources or the classpath changed.
+   */
+  @Parameter(property = "gatling.changeImpactSelection", defaultValue = "false")
+  private boolean changeImpactSelection;
+
+  /**
+   * File to store the class dependency graph, with the simulations that ran successfully on it, used by {@literal changeImpactSelection}.
+   * Point it outside of the build directory to keep it across clean builds.
+   */
+  @Parameter(property = "gatling.classGraphFile", defaultValue = "${project.build.directory}/gatling-class-graph.txt")
+  private File classGraphFile;
+
+  /**
+   * When simulations run concurrently, start the ones with the longest recorded wall time first, see
+   * {@literal simulationHistoryFile}. Simulations without history start before all others. Simulations that run one at
+   * a time keep their alphabetical order.
+   */
+  @Parameter(property = "gatling.scheduleByDuration", defaultValue = "true")
+  private boolean scheduleByDuration;
+
+  /**
+   * File to store the wall time of each simulation run. Point it outside of the build directory to keep it across clean builds.
+   */
+  @Parameter(property = "gatling.simulationHistoryFile", defaultValue = "${project.build.directory}/gatling-simulation-history.properties")
+  private File simulationHistoryFile;
+
+  /**
+   * Number of simulations to run at the same time, each in its own forked JVM.
+   * With the event scheduler enabled, each simulation gets its own event scheduler session.
+   */
+  @Parameter(property = "gatling.concurrentSimulations", defaultValue = "1")
+  private int concurrentSimulations;
+
+  /**
+   * Append the per-request aggregates of each run to {@literal trendStoreFile}, to follow them with the trend goal.
+   */
+  @Parameter(property = "gatling.recordTrends", defaultValue = "true")
+  private boolean recordTrends;
+
+  /**
+   * Write a binary index of the response time histograms per request and per time bucket into each run directory,
+   * so the verify goal and the trends do not parse the simulation.log again.
+   */
+  @Parameter(property = "gatling.writeIndex", defaultValue = "true")
+  private boolean writeIndex;
+
+  /**
+   * Serve the progress of the running simulations in the Prometheus text format on {@literal liveMetricsHost}:{@literal liveMetricsPort}/metrics.
+   */
+  @Parameter(property = "gatling.liveMetrics", defaultValue = "false")
+  private boolean liveMetrics;
+
+  /**
+   * Host name or address to bind the live metrics endpoint to.
+   */
+  @Parameter(property = "gatling.liveMetricsHost", defaultValue = "localhost")
+  private String liveMetricsHost;
+
+  /**
+   * Port of the live metrics endpoint, 0 for a free port, which is logged. When the port is in use, for instance by
+   * another module of a parallel build, the build goes on without live metrics.
+   */
+  @Parameter(property = "gatling.liveMetricsPort", defaultValue = "9464")
+  private int liveMetricsPort;
+
+  /**
+   * Start Gatling with the jars of the classpath flattened into one cached, uncompressed jar, to speed up class loading.
+   */
+  @Parameter(property = "gatling.flatClasspath", defaultValue = "false")
+  private boolean flatClasspath;
+
+  /**
+   * Folder of the cached flattened classpath jars, shared by all builds. Jars unused for 30 days are removed.
+   */
+  @Parameter(property = "gatling.flatClasspathCacheFolder", defaultValue = "${user.home}/.gatling/classpath-cache")
+  private File flatClasspathCacheFolder;
+
+  /**
+   * Maximum number of OK records per request and per group to generate the reports from, 0 for all records. KO records
+   * are all kept. The reports of larger logs are generated from a sampled copy, the simulation.log of the run stays
+   * complete and assertions and SLA rules are evaluated on it.
+   */
+  @Parameter(property = "gatling.reportSampleSize", defaultValue = "0")
+  private int reportSampleSize;
+
+  /**
+   * Abort a simulation when its simulation.log did not grow for this number of seconds, after writing a thread dump of
+   * the forked JVM into its run directory. Use a value well above the 5 s write period of Gatling, 0 disables the watchdog.
+   */
+  @Parameter(property = "gatling.progressTimeoutInSeconds", defaultValue = "0")
+  private int progressTimeoutInSeconds;
+
+  /**
+   * Duration of the warm-up at the start of each simulation, cut out of its simulation.log before the reports and
+   * assertions, so they reflect the steady state. The forked JVM gets it as the {@literal gatling.warmUpDurationInSeconds}
+   * system property, for the simulation to inject its warm-up load first. With {@literal noReports}, the assertions
+   * are evaluated on the complete run.
+   */
+  @Parameter(property = "gatling.warmUpDurationInSeconds", defaultValue = "0")
+  private int warmUpDurationInSeconds;
+
+  /**
+   * Hand the runs to a long-lived Gatling JVM that keeps the framework classes loaded and JIT-compiled between builds,
+   * for fast local iteration. The compiled simulations are loaded fresh for each run, but JVM options other than system
+   * properties only apply when a daemon starts, and its state carries over from run to run: do not use it for measurements.
+   */
+  @Parameter(property = "gatling.daemon", defaultValue = "false")
+  private boolean daemon;
+
+  /**
+   * Folder of the state files, booter jars and output logs of the Gatling daemons.
+   */
+  @Parameter(property = "gatling.daemonFolder", defaultValue = "${user.home}/.gatling/daemons")
+  private File daemonFolder;
+
+  /**
+   * Time after which a Gatling daemon without runs stops.
+   */
+  @Parameter(property = "gatling.daemonIdleTimeoutInMinutes", defaultValue = "60")
+  private int daemonIdleTimeoutInMinutes;
+
+  /**
+   * Run Gatling inside the Maven JVM, in an isolated class loader of the test classpath, instead of forking a JVM. Meant
+   * for short smoke simulations: the JVM arguments other than system properties do not apply, simulations run one at a
+   * time without {@literal progressTimeoutInSeconds}, and a run that does not stop within {@literal gracefulStopTimeoutInSeconds}
+   * when asked is abandoned. The exit code of Gatling is trapped with a security manager, which Java 17 warns about and
+   * Java 18 and later only allow when Maven runs with {@literal MAVEN_OPTS=-Djava.security.manager=allow}, the run fails
+   * otherwise.
+   */
+  @Parameter(property = "gatling.inProcess", defaultValue = "false")
+  private boolean inProcess;
+
+  /**
+   * Wait before forking a Gatling JVM for a simulation until its -Xmx heap and {@literal forkCpus} fit in the budget of the host,
+   * next to the forks of the other builds of the user on the host, such as the modules of a multi-threaded build.
+   */
+  @Parameter(property = "gatling.forkAdmission", defaultValue = "false")
+  private boolean forkAdmission;
+
+  /**
+   * Memory the admitted forks may take together, such as 24g. Defaults to 80% of the memory of the host.
+   */
+  @Parameter(property = "gatling.forkAdmissionMemory")
+  private String forkAdmissionMemory;
+
+  /**
+   * CPUs the admitted forks may take together. Defaults to the number of processors of the host.
+   */
+  @Parameter(property = "gatling.forkAdmissionCpus", defaultValue = "0")
+  private int forkAdmissionCpus;
+
+  /**
+   * CPUs a forked Gatling JVM takes from the admission budget.
+   */
+  @Parameter(property = "gatling.forkCpus", defaultValue = "1")
+  private int forkCpus;
+
+  /**
+   * Maximum time to wait for the admission of a fork, 0 waits without limit.
+   */
+  @Parameter(property = "gatling.forkAdmissionTimeoutInMinutes", defaultValue = "60")
+  private int forkAdmissionTimeoutInMinutes;
+
+  /**
+   * Folder of the lease files of the admitted forks, shared by the builds taking part in the admission.
+   */
+  @Parameter(property = "gatling.forkAdmissionFolder", defaultValue = "${java.io.tmpdir}/gatling-maven-plugin-admission-${user.name}")
+  private File forkAdmissionFolder;
+
+  /**
+   * Rewrite an interim report of each running simulation into its run directory every this number of minutes, for
+   * soak tests. It is built from aggregates maintained while the simulation.log is written, 0 disables it. The last
+   * one, written when the simulation ends, stays next to the final report as the trend of the whole run.
+   */
+  @Parameter(property = "gatling.soakReportIntervalInMinutes", defaultValue = "0")
+  private int soakReportIntervalInMinutes;
+
   private boolean isEventSchedulerEnabled = false;
 
+  private final Set<File> postProcessedDirectories = new HashSet<>();
+
+  private final Map<String, String> runSystemProperties = new LinkedHashMap<>();
+
+  private JvmProfile runJvmProfile;
+
+  private Toolchain runToolchain;
+
   /**
    * Executes Gatling simulations.
    */
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
+    runGatling();
+  }
+
+  /**
+   * Runs the simulations, or generates the reports of {@literal reportsOnly}. Not overridable, so the goals extending
+   * this one can run Gatling from their own {@link #execute()}.
+   */
+  private void runGatling() throws MojoExecutionException, MojoFailureException {
     if (skip) {
       getLog().info("Skipping events-gatling-maven-plugin");
       return;
@@ -218,10 +451,8 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
 
     boolean abortEventScheduler = false;
 
-    isEventSchedulerEnabled = eventSchedulerConfig != null && eventSchedulerConfig.isSchedulerEnabled();
-    eventScheduler = isEventSchedulerEnabled
-            ? createEventScheduler(eventSchedulerConfig, getLog())
-            : null;
+    eventSchedulerSessions = createEventSchedulerSessions();
+    isEventSchedulerEnabled = eventSchedulerSessions != null;
 
     // Create results directories
     if (!resultsFolder.exists() && !resultsFolder.mkdirs()) {
@@ -238,14 +469,36 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
         executeCompiler(compilerJvmArgs(), testClasspath, toolchain);
       }
 
-      List<String> jvmArgs = gatlingJvmArgs();
+      if (runToolchain != null) {
+        toolchain = runToolchain;
+      }
+      List<String> jvmArgs = runJvmProfile != null ? profileJvmArgs(runJvmProfile) : gatlingJvmArgs();
 
       if (reportsOnly != null) {
-        executeGatling(jvmArgs, gatlingArgs(null), testClasspath, toolchain);
+        executeGatling(jvmArgs, null, testClasspath, toolchain);
 
       } else {
         List<String> simulations = simulations();
-        iterateBySimulations(toolchain, jvmArgs, testClasspath, simulations);
+        ClassDependencyGraph classGraph = null;
+        ClassDependencyGraph previousClassGraph = null;
+        if (changeImpactSelection) {
+          classGraph = ClassDependencyGraph.scan(compiledClassesFolder, classGraphFingerprint(testClasspath));
+          previousClassGraph = classGraphFile.isFile() ? ClassDependencyGraph.read(classGraphFile) : null;
+          simulations = impactedSimulations(classGraph, previousClassGraph, simulations);
+        }
+        if (liveMetrics) {
+          liveMetricsServer = new LiveMetrics(resultsFolder, existingDirectories, getLog());
+          liveMetricsServer.start(liveMetricsHost, liveMetricsPort, 1000);
+        }
+        try {
+          iterateBySimulations(toolchain, jvmArgs, testClasspath, simulations);
+        } finally {
+          if (classGraph != null) {
+            // only the simulations that succeeded are up to date, the others are selected again by the next build
+            classGraph.recordSuccessfulRuns(previousClassGraph, succeededSimulations);
+            classGraph.write(classGraphFile);
+          }
+        }
       }
 
     } catch (Exception e) {
@@ -274,67 +527,146 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
         getLog().debug(">>> KillSwitchException found.");
       }
     } finally {
+      if (liveMetricsServer != null) {
+        liveMetricsServer.close();
+      }
       recordSimulationResults(ex);
-      if (eventScheduler != null) {
-        synchronized (eventSchedulerLock) {
-          if (abortEventScheduler && !eventScheduler.isSessionStopped()) {
-            getLog().debug(">>> Abort is called in finally: abortEventScheduler is true");
-            // implicit stop session
-            eventScheduler.abortSession();
-          } else {
-            getLog().debug(">>> No abort called: " +
-                "abort event scheduler is " + abortEventScheduler + ", stop is already called is " + eventScheduler.isSessionStopped());
-          }
-        }
+      if (eventSchedulerSessions != null && abortEventScheduler) {
+        getLog().debug(">>> Abort is called in finally: abortEventScheduler is true");
+        eventSchedulerSessions.abortLiveSessions();
+        eventSchedulerSessions.close();
+      }
+    }
+
+    if (eventSchedulerSessions != null) {
+      try {
+        checkEventSchedulerResults();
+      } finally {
+        eventSchedulerSessions.close();
       }
     }
+  }
+
+  /**
+   * @return the sessions of the event scheduler for the runs of this execution, null when the event scheduler is disabled
+   */
+  EventSchedulerSessions createEventSchedulerSessions() {
+    if (eventSchedulerConfig == null || !eventSchedulerConfig.isSchedulerEnabled()) {
+      return null;
+    }
+    return new EventSchedulerSessions(() -> EventSchedulerDispatcher.Lifecycle.of(createEventScheduler(eventSchedulerConfig, getLog())),
+      eventSchedulerTimeoutInSeconds * 1000L, getLog());
+  }
 
-    if ( eventScheduler != null && !eventScheduler.isSessionStopped() ) {
-      getLog().debug(">>> Stop session (because not isSessionStopped())");
-      eventScheduler.stopSession();
+  /**
+   * Checks the results of the sessions that were stopped, an aborted session is not checked and a session that did not
+   * start fails its checks.
+   */
+  private void checkEventSchedulerResults() {
+    EventCheckFailureException failure = null;
+    for (EventSchedulerDispatcher session : eventSchedulerSessions.sessions()) {
+      EventSchedulerDispatcher.State state = session.getState();
+      if (state != EventSchedulerDispatcher.State.STOPPED && state != EventSchedulerDispatcher.State.FAILED) {
+        continue;
+      }
       try {
-        getLog().debug(">>> Call check results");
-        eventScheduler.checkResults();
+        getLog().debug(">>> Call check results of " + session.getRunName());
+        session.checkResults();
       } catch (EventCheckFailureException e) {
         getLog().debug(">>> EventCheckFailureException: " + e.getMessage());
-        if (!continueOnAssertionFailure) {
-          throw  e;
-        }
-        else {
-          getLog().warn("EventCheck failures found, but continue on assert failure is enabled:" + e.getMessage());
+        if (continueOnAssertionFailure) {
+          getLog().warn("EventCheck failures found for " + session.getRunName() + ", but continue on assert failure is enabled:" + e.getMessage());
+        } else if (failure == null) {
+          failure = e;
+        } else {
+          getLog().error("EventCheck failures found for " + session.getRunName() + ": " + e.getMessage());
         }
+      } finally {
+        session.logTimings();
       }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
 
+  /**
+   * Runs the simulations with an extra system property in their forked JVM. The simulations are only compiled by the first call.
+   */
+  void executeWithSystemProperty(String name, String value) throws MojoExecutionException, MojoFailureException {
+    runSystemProperties.put(name, value);
+    try {
+      runGatling();
+    } finally {
+      disableCompiler = true;
     }
   }
 
-  private void startScheduler(EventScheduler eventScheduler, SchedulerExceptionHandler schedulerExceptionHandler) {
-      eventScheduler.addKillSwitch(schedulerExceptionHandler);
-      eventScheduler.startSession();
-      addShutdownHookForEventScheduler(eventScheduler);
+  /**
+   * Runs the simulations with the JVM arguments of the profile, on the given toolchain when not null, and extra system properties.
+   * The simulations are only compiled by the first call, with the toolchain of the build.
+   */
+  void executeWithJvmProfile(JvmProfile profile, Toolchain toolchain, Map<String, String> systemProperties) throws MojoExecutionException, MojoFailureException {
+    runJvmProfile = profile;
+    runToolchain = toolchain;
+    runSystemProperties.putAll(systemProperties);
+    try {
+      runGatling();
+    } finally {
+      disableCompiler = true;
+    }
   }
 
-  private void addShutdownHookForEventScheduler(EventScheduler eventScheduler) {
-    final Thread main = Thread.currentThread();
-    Runnable shutdowner = () -> {
-      synchronized (eventScheduler) {
-        if (!eventScheduler.isSessionStopped()) {
-          getLog().info("Shutdown Hook: abort event scheduler session!");
-          // implicit stop session
-          eventScheduler.abortSession();
-        }
-      }
+  /**
+   * Generates the reports of an existing run directory, like {@literal reportsOnly}, without compiling the simulations.
+   */
+  void executeReportsOnly(String runDirectoryName) throws MojoExecutionException, MojoFailureException {
+    reportsOnly = runDirectoryName;
+    disableCompiler = true;
+    runGatling();
+  }
 
-      // try to hold on to main thread to let the abort event tasks finish properly
-      try {
-        main.join(4000);
-      } catch (InterruptedException e) {
-        getLog().warn("Interrupt while waiting for abort to finish.");
+  private List<String> impactedSimulations(ClassDependencyGraph classGraph, ClassDependencyGraph previous, List<String> simulations) {
+    if (previous == null) {
+      getLog().info("No class dependency graph of a previous run found in " + classGraphFile + ", running all simulations.");
+      return simulations;
+    }
+    if (!classGraph.getFingerprint().equals(previous.getFingerprint())) {
+      getLog().info("Resources or classpath changed since the previous run, running all simulations.");
+      return simulations;
+    }
+    Set<String> changedConstants = classGraph.changedConstants(previous);
+    if (!changedConstants.isEmpty()) {
+      getLog().info("Compile-time constants changed in " + changedConstants + ", they can be inlined in any class, running all simulations.");
+      return simulations;
+    }
+    Set<String> changedClasses = classGraph.changedClasses(previous);
+    List<String> impacted = classGraph.notUpToDate(simulations, previous);
+    getLog().info("Changed classes: " + changedClasses.size() + ", impacted or not yet successful simulations: " + impacted);
+    for (String simulation : simulations) {
+      if (!impacted.contains(simulation)) {
+        getLog().info("Skipping " + simulation + ": not impacted by changes since its last successful run.");
       }
+    }
+    return impacted;
+  }
 
-    };
-    Thread eventSchedulerShutdownThread = new Thread(shutdowner, "eventSchedulerShutdownThread");
-    Runtime.getRuntime().addShutdownHook(eventSchedulerShutdownThread);
+  private String classGraphFingerprint(List<String> testClasspath) throws IOException {
+    List<File> files = new ArrayList<>();
+    files.add(resourcesFolder);
+    for (String element : testClasspath) {
+      File file = new File(element);
+      if (!file.getCanonicalFile().equals(compiledClassesFolder.getCanonicalFile())) {
+        files.add(file);
+      }
+    }
+    // resources copied next to the compiled classes, such as gatling.conf
+    File[] copiedResources = compiledClassesFolder.listFiles(file -> file.isFile() && !file.getName().endsWith(".class"));
+    if (copiedResources != null) {
+      Arrays.sort(copiedResources);
+      files.addAll(Arrays.asList(copiedResources));
+    }
+    return ClassDependencyGraph.fingerprint(files);
   }
 
   private Set<File> directoriesInResultsFolder() {
@@ -345,11 +677,41 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
   }
 
   private void iterateBySimulations(Toolchain toolchain, List<String> jvmArgs, List<String> testClasspath, List<String> simulations) throws Exception {
+    SimulationHistory history = SimulationHistory.read(simulationHistoryFile);
+    int slots = simulationSlots(simulations.size());
+    if (scheduleByDuration && slots > 1) {
+      simulations = history.longestFirst(simulations);
+      getLog().info("Simulation order by recorded duration: " + simulations);
+    }
+    long expectedMillis = history.expectedMillis(simulations, slots);
+    if (expectedMillis > 0) {
+      getLog().info("Expected duration of the simulations on " + slots + " slot(s): " + TimeUnit.MILLISECONDS.toSeconds(expectedMillis) + " s.");
+    }
+    try {
+      if (slots > 1) {
+        runConcurrently(toolchain, jvmArgs, testClasspath, simulations, history, slots);
+      } else {
+        runSequentially(toolchain, jvmArgs, testClasspath, simulations, history);
+      }
+    } finally {
+      history.write(simulationHistoryFile);
+    }
+  }
+
+  private int simulationSlots(int simulationsCount) {
+    if (concurrentSimulations > 1 && isInProcess()) {
+      getLog().warn("concurrentSimulations is not supported in-process, as the runs share the system properties, running simulations one at a time.");
+      return 1;
+    }
+    return Math.max(1, Math.min(concurrentSimulations, simulationsCount));
+  }
+
+  private void runSequentially(Toolchain toolchain, List<String> jvmArgs, List<String> testClasspath, List<String> simulations, SimulationHistory history) throws Exception {
     Exception exc = null;
     int simulationsCount = simulations.size();
     for (int i = 0; i < simulationsCount; i++) {
       try {
-        executeGatling(jvmArgs, gatlingArgs(simulations.get(i)), testClasspath, toolchain);
+        executeTimedGatling(jvmArgs, simulations.get(i), testClasspath, toolchain, history);
       } catch (GatlingSimulationAssertionsFailedException e) {
         if (exc == null && i == simulationsCount - 1) {
           throw e;
@@ -372,6 +734,71 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     }
   }
 
+  /**
+   * Runs the simulations on a fixed number of forks, each fork taking the next simulation in the given order when it
+   * becomes free. The first failure stops starting new simulations, unless it is an assertion failure and
+   * {@literal continueOnAssertionFailure} is set.
+   */
+  private void runConcurrently(Toolchain toolchain, List<String> jvmArgs, List<String> testClasspath, List<String> simulations, SimulationHistory history, int slots) throws Exception {
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(slots, runnable -> {
+      Thread thread = new Thread(runnable, "gatlingSimulation-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    AtomicBoolean stopped = new AtomicBoolean();
+    List<Future<Void>> runs = new ArrayList<>();
+    try {
+      for (String simulation : simulations) {
+        runs.add(executor.submit(() -> {
+          if (stopped.get()) {
+            getLog().info("Skipping " + simulation + " after a failure of another simulation.");
+            return null;
+          }
+          try {
+            executeTimedGatling(jvmArgs, simulation, testClasspath, toolchain, history);
+          } catch (GatlingSimulationAssertionsFailedException e) {
+            if (!continueOnAssertionFailure) {
+              stopped.set(true);
+            }
+            throw e;
+          } catch (Exception e) {
+            stopped.set(true);
+            throw e;
+          }
+          return null;
+        }));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Exception exc = null;
+    for (Future<Void> run : runs) {
+      try {
+        run.get();
+      } catch (ExecutionException e) {
+        Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        // a failure other than an assertion failure takes precedence
+        if (exc == null || (exc instanceof GatlingSimulationAssertionsFailedException && !(cause instanceof GatlingSimulationAssertionsFailedException))) {
+          exc = cause;
+        }
+      }
+    }
+
+    if (exc != null) {
+      if (exc instanceof GatlingSimulationAssertionsFailedException && continueOnAssertionFailure && simulations.size() > 1) {
+        getLog().warn("There were some errors while running your simulation, but continueOnAssertionFailure was set to true, so your simulations continue to perform.");
+      }
+      throw exc;
+    }
+  }
+
+  private void executeTimedGatling(List<String> gatlingJvmArgs, String simulation, List<String> testClasspath, Toolchain toolchain, SimulationHistory history) throws Exception {
+    executeGatling(gatlingJvmArgs, simulation, testClasspath, toolchain, history);
+    succeededSimulations.add(simulation);
+  }
+
   private void executeCompiler(List<String> zincJvmArgs, List<String> testClasspath, Toolchain toolchain) throws Exception {
     List<String> compilerClasspath = buildCompilerClasspath();
     compilerClasspath.addAll(testClasspath);
@@ -385,24 +812,284 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     }
   }
 
-  private void executeGatling(List<String> gatlingJvmArgs, List<String> gatlingArgs, List<String> testClasspath, Toolchain toolchain) throws Exception {
-    Fork forkedGatling = new Fork(GATLING_MAIN_CLASS, testClasspath, gatlingJvmArgs, gatlingArgs, toolchain, propagateSystemProperties, getLog(), workingDirectory);
+  private void executeGatling(List<String> gatlingJvmArgs, String simulation, List<String> testClasspath, Toolchain toolchain) throws Exception {
+    executeGatling(gatlingJvmArgs, simulation, testClasspath, toolchain, null);
+  }
+
+  /**
+   * @param history records the wall time of the simulation when its run completed, null to not record it
+   */
+  private void executeGatling(List<String> gatlingJvmArgs, String simulation, List<String> testClasspath, Toolchain toolchain,
+                              SimulationHistory history) throws Exception {
+    // the reports of a post-processed run are generated afterwards, from the processed simulation.log
+    boolean postProcess = simulation != null && isPostProcessingRuns();
+    List<String> gatlingArgs = gatlingArgs(simulation);
+    if (postProcess && !noReports) {
+      gatlingArgs.add("-nr");
+    }
+    List<String> runJvmArgs = gatlingJvmArgs;
+    if (simulation != null) {
+      runJvmArgs = new ArrayList<>(gatlingJvmArgs);
+      if (warmUpDurationInSeconds > 0) {
+        runJvmArgs.add("-D" + WARM_UP_DURATION_PROPERTY + "=" + warmUpDurationInSeconds);
+      }
+      for (Map.Entry<String, String> property : runSystemProperties.entrySet()) {
+        runJvmArgs.add("-D" + property.getKey() + "=" + property.getValue());
+      }
+    }
+    SimulationProfile profile = SimulationProfile.find(simulationProfiles, simulation);
+    if (profile != null) {
+      getLog().info("Running " + simulation + " with simulation profile " + profile);
+      runJvmArgs = profile.applyTo(runJvmArgs);
+    }
+    Fork forkedGatling = gatlingFork(runJvmArgs, gatlingArgs, testClasspath, toolchain, profile);
+    forkedGatling.setGracefulStopTimeout(gracefulStopTimeoutInSeconds, TimeUnit.SECONDS);
+    if (forkAdmission && simulation != null) {
+      forkedGatling.setAdmission(forkAdmission(), simulation, forkCpus);
+    }
+
+    String runName = simulation != null ? simulation : "reports";
 
+    EventSchedulerDispatcher eventSchedulerSession = null;
     if (isEventSchedulerEnabled) {
-      SchedulerExceptionHandler exceptionHandler = forkedGatling.getSchedulerExceptionHandler();
-      startScheduler(eventScheduler, exceptionHandler);
+      eventSchedulerSession = eventSchedulerSessions.start(runName, forkedGatling.getSchedulerExceptionHandler());
     }
     else {
       getLog().warn("The Event Scheduler is disabled. Use 'eventSchedulerEnabled' property to enable.");
     }
 
+    Exception failure = null;
+    try {
+      ExecuteException assertionsFailure = null;
+      try {
+        runMonitored(forkedGatling, simulation);
+      } catch (ExecuteException e) {
+        if (e.getExitValue() != 2) {
+          throw e; /* issue 1482*/
+        }
+        assertionsFailure = e;
+      }
+      if (history != null) {
+        // the time of the run itself, without waiting for host resources and without post-processing
+        history.record(simulation, forkedGatling.getRunMillis());
+      }
+      if (postProcess) {
+        assertionsFailure = postProcessRun(gatlingJvmArgs, simulation, testClasspath, toolchain, assertionsFailure);
+      }
+      if (assertionsFailure != null) {
+        throw new GatlingSimulationAssertionsFailedException(assertionsFailure);
+      }
+    } catch (SchedulerHandlerException e) {
+      failure = e;
+      if (reportsOnStop && !noReports && simulation != null) {
+        generatePartialReport(gatlingJvmArgs, simulation, testClasspath, toolchain);
+      }
+      throw e;
+    } catch (Exception e) {
+      failure = e;
+      throw e;
+    } finally {
+      if (eventSchedulerSession != null) {
+        // like for the whole execution: a failure aborts the session, except for the kill switch which goes on with the checks
+        if (failure != null && failOnError && !(failure instanceof KillSwitchException)) {
+          getLog().debug(">>> Abort the event scheduler session of " + runName + ": " + failure);
+          eventSchedulerSession.abortSession();
+        } else {
+          eventSchedulerSession.stopSession();
+        }
+        eventSchedulerSession.logTimings();
+      }
+    }
+  }
+
+  private void runMonitored(Fork forkedGatling, String simulation) throws Exception {
+    SoakReporter soakReporter = null;
+    if (simulation != null && soakReportIntervalInMinutes > 0) {
+      soakReporter = new SoakReporter(simulation, () -> lastRunDirectory(simulation), TimeUnit.MINUTES.toMillis(soakReportIntervalInMinutes), getLog());
+      soakReporter.start();
+    }
+    try {
+      // the watchdog needs the heartbeat of a forked JVM
+      if (simulation == null || progressTimeoutInSeconds <= 0 || isInProcess()) {
+        forkedGatling.run();
+        return;
+      }
+      try (ProgressWatchdog ignored = ProgressWatchdog.watch(forkedGatling, simulation, () -> lastRunDirectory(simulation),
+        resultsFolder, progressTimeoutInSeconds * 1000L, getLog())) {
+        forkedGatling.run();
+      }
+    } finally {
+      if (soakReporter != null) {
+        soakReporter.close();
+      }
+    }
+  }
+
+  private ForkAdmission forkAdmission() throws MojoExecutionException {
+    long memoryBudget;
+    if (forkAdmissionMemory != null && !forkAdmissionMemory.trim().isEmpty()) {
+      memoryBudget = ForkAdmission.parseSize(forkAdmissionMemory);
+      if (memoryBudget <= 0) {
+        throw new MojoExecutionException("Invalid forkAdmissionMemory " + forkAdmissionMemory + ", expected a size such as 24g");
+      }
+    } else {
+      long memory = ForkAdmission.physicalMemoryBytes();
+      memoryBudget = memory > 0 ? memory / 10 * 8 : 0;
+    }
+    int cpuBudget = forkAdmissionCpus > 0 ? forkAdmissionCpus : Runtime.getRuntime().availableProcessors();
+    return new ForkAdmission(forkAdmissionFolder, memoryBudget, cpuBudget, TimeUnit.MINUTES.toMillis(forkAdmissionTimeoutInMinutes), getLog());
+  }
+
+  private boolean isInProcess() {
+    return inProcess && runJvmProfile == null;
+  }
+
+  private boolean isPostProcessingRuns() {
+    return (reportSampleSize > 0 || warmUpDurationInSeconds > 0) && reportsOnly == null;
+  }
+
+  /**
+   * Processes the simulation.log of the run of the simulation, then generates its reports unless disabled.
+   * The assertions evaluated by the run itself on the complete log stand, unless the warm-up was cut out: then the
+   * reports generation evaluates them again on the measured window. With a report sample size, the reports are
+   * generated from a sampled copy without assertions, the simulation.log of the run stays complete.
+   *
+   * @param runAssertionsFailure the failure of the assertions of the run, null when they passed
+   * @return the failure of the assertions that stands, null when they passed
+   */
+  private ExecuteException postProcessRun(List<String> gatlingJvmArgs, String simulation, List<String> testClasspath, Toolchain toolchain,
+                                          ExecuteException runAssertionsFailure) throws Exception {
+    File runDirectory = newRunDirectory(simulation);
+    if (runDirectory == null) {
+      getLog().warn("No run directory found for " + simulation + ", its simulation.log is not processed.");
+      return runAssertionsFailure;
+    }
+    if (liveMetricsServer != null) {
+      liveMetricsServer.finish(runDirectory);
+    }
+    boolean warmUpCut = false;
+    if (warmUpDurationInSeconds > 0) {
+      long removed = SimulationLogTrimmer.trimWarmUp(runDirectory, warmUpDurationInSeconds * 1000L);
+      if (removed < 0) {
+        getLog().warn("No RUN record in the simulation.log of " + runDirectory.getName() + ", the warm-up is not cut out.");
+      } else {
+        getLog().info("Cut the warm-up of " + warmUpDurationInSeconds + " s out of " + runDirectory.getName() + ", removed " + removed + " records.");
+        warmUpCut = true;
+      }
+    }
+    if (noReports) {
+      return runAssertionsFailure;
+    }
+    boolean sampled = false;
+    if (reportSampleSize > 0) {
+      if (warmUpCut && SimulationLogs.hasAssertions(SimulationLogs.simulationLog(runDirectory))) {
+        // Gatling evaluates the assertions while generating the reports, they need all records of the measured window
+        getLog().info("Generating the reports of " + runDirectory.getName() + " from the complete log, to evaluate its assertions on the measured window.");
+      } else {
+        double ratio = SimulationLogSampler.sample(runDirectory, SimulationLogSampler.sampledLog(runDirectory), reportSampleSize, runDirectory.getName().hashCode());
+        if (ratio < 1) {
+          getLog().info(String.format(Locale.ROOT, "Sampled %.2f%% of the records of %s for the reports, assertions and SLA rules use the complete log.",
+            ratio * 100, runDirectory.getName()));
+          sampled = true;
+        }
+      }
+    }
+    List<String> reportsArgs = sampled
+      ? reportsOnlyArgs(new File(runDirectory, SimulationLogSampler.SAMPLE_FOLDER), runDirectory.getName())
+      : reportsOnlyArgs(runDirectory.getName());
+    Fork forkedReports = gatlingFork(gatlingJvmArgs, reportsArgs, testClasspath, toolchain);
     try {
-      forkedGatling.run();
+      forkedReports.run();
     } catch (ExecuteException e) {
-      if (e.getExitValue() == 2)
-        throw new GatlingSimulationAssertionsFailedException(e);
-      else
-        throw e; /* issue 1482*/
+      if (e.getExitValue() != 2) {
+        throw e;
+      }
+      if (warmUpCut) {
+        return e;
+      }
+      getLog().debug("Assertions of the reports of " + runDirectory.getName() + " failed on the processed log, ignored.");
+    } finally {
+      if (sampled) {
+        SimulationLogSampler.moveReports(runDirectory);
+      }
+    }
+    return warmUpCut ? null : runAssertionsFailure;
+  }
+
+  /**
+   * @return the run directory of the last run of the simulation, created during this build and not processed yet
+   */
+  private File newRunDirectory(String simulation) throws IOException {
+    synchronized (postProcessedDirectories) {
+      File runDirectory = lastRunDirectory(simulation);
+      if (runDirectory != null) {
+        postProcessedDirectories.add(runDirectory);
+      }
+      return runDirectory;
+    }
+  }
+
+  private File lastRunDirectory(String simulation) {
+    File runDirectory = null;
+    synchronized (postProcessedDirectories) {
+      for (File directory : directoriesInResultsFolder()) {
+        if (isNewDirectory(directory) && !postProcessedDirectories.contains(directory) && SimulationLogs.hasSimulationLog(directory)
+          && simulation.equals(simulationClassName(directory))
+          && (runDirectory == null || directory.getName().compareTo(runDirectory.getName()) > 0)) {
+          runDirectory = directory;
+        }
+      }
+    }
+    return runDirectory;
+  }
+
+  private String simulationClassName(File runDirectory) {
+    try {
+      return SimulationLogs.simulationClassName(SimulationLogs.simulationLog(runDirectory));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private Fork gatlingFork(List<String> gatlingJvmArgs, List<String> gatlingArgs, List<String> testClasspath, Toolchain toolchain) {
+    return gatlingFork(gatlingJvmArgs, gatlingArgs, testClasspath, toolchain, null);
+  }
+
+  private Fork gatlingFork(List<String> gatlingJvmArgs, List<String> gatlingArgs, List<String> testClasspath, Toolchain toolchain, SimulationProfile profile) {
+    File forkWorkingDirectory = profile != null && profile.getWorkingDirectory() != null ? profile.getWorkingDirectory() : workingDirectory;
+    Fork fork = new Fork(GATLING_MAIN_CLASS, testClasspath, gatlingJvmArgs, gatlingArgs, toolchain, propagateSystemProperties, getLog(), forkWorkingDirectory);
+    // the Maven JVM and a daemon keep the JVM arguments they were started with
+    boolean jvmSettings = profile != null && profile.hasJvmSettings();
+    if (isInProcess() && !jvmSettings) {
+      fork.setInProcessGatling(new InProcessGatling(TimeUnit.SECONDS.toMillis(gracefulStopTimeoutInSeconds), getLog()));
+    } else if (daemon && runJvmProfile == null && !jvmSettings) {
+      fork.setDaemonClient(new GatlingDaemonClient(daemonFolder, TimeUnit.MINUTES.toMillis(daemonIdleTimeoutInMinutes), getLog()));
+    } else if (flatClasspath) {
+      fork.setFlatClasspathCacheFolder(flatClasspathCacheFolder);
+    }
+    return fork;
+  }
+
+  /**
+   * Generates the report of the run of the simulation that was stopped. The run directories of other simulations running
+   * concurrently are left alone, their simulation.log can still be written.
+   */
+  private void generatePartialReport(List<String> gatlingJvmArgs, String simulation, List<String> testClasspath, Toolchain toolchain) {
+    File directory = lastRunDirectory(simulation);
+    if (directory == null || SimulationLogs.hasReport(directory)) {
+      return;
+    }
+    try {
+      long removed = SimulationLogs.truncateIncompleteLastLine(SimulationLogs.simulationLog(directory));
+      if (removed > 0) {
+        getLog().info("Removed " + removed + " bytes of an incomplete last line from " + SimulationLogs.simulationLog(directory));
+      }
+      getLog().info("Generating reports from the partial results in " + directory);
+      Fork forkedReports = gatlingFork(gatlingJvmArgs, reportsOnlyArgs(directory.getName()), testClasspath, toolchain);
+      forkedReports.run();
+    } catch (Exception e) {
+      // assertions of a stopped run can fail, the report is generated anyway
+      getLog().warn("Reports generation for partial results in " + directory + " ended with: " + e.getMessage());
     }
   }
 
@@ -413,6 +1100,43 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     } catch (IOException e) {
       throw new MojoExecutionException("Could not record simulation results.", e);
     }
+    if (writeIndex) {
+      writeIndexes();
+    }
+    if (recordTrends) {
+      recordTrends();
+    }
+  }
+
+  private void writeIndexes() {
+    for (File directory : directoriesInResultsFolder()) {
+      if (isNewDirectory(directory) && SimulationLogs.hasSimulationLog(directory)) {
+        try {
+          SimulationLogIndex.write(directory);
+        } catch (IOException e) {
+          // the consumers of the index fall back to the simulation.log
+          getLog().warn("Could not index " + directory + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void recordTrends() {
+    String revision = null;
+    for (File directory : directoriesInResultsFolder()) {
+      if (isNewDirectory(directory) && SimulationLogs.hasSimulationLog(directory)) {
+        try {
+          if (revision == null) {
+            revision = GitRevision.of(mavenProject.getBasedir());
+          }
+          RunAggregates aggregates = RunAggregates.ofRun(directory);
+          TrendStore.append(trendStoreFile, TrendStore.Run.of(aggregates, revision, directory.getName()));
+        } catch (IOException e) {
+          // trends are informational, they should not fail the build
+          getLog().warn("Could not record the trend of " + directory + ": " + e.getMessage());
+        }
+      }
+    }
   }
 
   private void saveSimulationResultToFile(Exception exception) throws IOException {
@@ -528,6 +1252,16 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     return computeArgs(compilerJvmArgs, COMPILER_JVM_ARGS, overrideCompilerJvmArgs);
   }
 
+  /**
+   * The default arguments come first, for the arguments of the profile to win over them, such as its heap size.
+   */
+  private List<String> profileJvmArgs(JvmProfile profile) {
+    if (profile.getJvmArgs().isEmpty() || !profile.isOverrideJvmArgs()) {
+      return computeArgs(profile.getJvmArgs(), GATLING_JVM_ARGS, profile.isOverrideJvmArgs());
+    }
+    return computeArgs(profile.defaultJvmArgs(GATLING_JVM_ARGS), profile.getJvmArgs(), true);
+  }
+
   private List<String> computeArgs0(List<String> custom, List<String> defaults, boolean override) {
     if (custom.isEmpty()) {
       return defaults;
@@ -589,6 +1323,19 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     return args;
   }
 
+  private List<String> reportsOnlyArgs(String runDirectoryName) throws Exception {
+    return reportsOnlyArgs(resultsFolder, runDirectoryName);
+  }
+
+  private List<String> reportsOnlyArgs(File runResultsFolder, String runDirectoryName) throws Exception {
+    List<String> args = new ArrayList<>();
+    addArg(args, "rsf", resourcesFolder.getCanonicalPath());
+    addArg(args, "rf", runResultsFolder.getCanonicalPath());
+    addArg(args, "sf", simulationsFolder.getCanonicalPath());
+    addArg(args, "ro", runDirectoryName);
+    return args;
+  }
+
   private List<String> compilerArgs() throws Exception {
     List<String> args = new ArrayList<>();
     addArg(args, "sf", simulationsFolder.getCanonicalPath());
@@ -610,33 +1357,37 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
 
     try {
       ClassLoader testClassLoader = new URLClassLoader(testClassPathUrls());
-
-      Class<?> simulationClass = testClassLoader.loadClass("io.gatling.core.scenario.Simulation");
       List<String> includes = MojoUtils.arrayAsListEmptyIfNull(this.includes);
       List<String> excludes = MojoUtils.arrayAsListEmptyIfNull(this.excludes);
 
-      List<String> simulationsClasses = new ArrayList<>();
+      return resolveSimulations(testClassLoader, compiledClassesFolder, includes, excludes);
+
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static List<String> resolveSimulations(ClassLoader testClassLoader, File classesFolder, List<String> includes, List<String> excludes) throws Exception {
+    Class<?> simulationClass = testClassLoader.loadClass("io.gatling.core.scenario.Simulation");
 
-      for (String classFile: compiledClassFiles()) {
-        String className = pathToClassName(classFile);
+    List<String> simulationsClasses = new ArrayList<>();
 
-        boolean isIncluded = includes.isEmpty() || match(includes, className);
-        boolean isExcluded =  match(excludes, className);
+    for (String classFile: compiledClassFiles(classesFolder)) {
+      String className = pathToClassName(classFile);
 
-        if (isIncluded && !isExcluded) {
-          // check if the class is a concrete Simulation
-          Class<?> clazz = testClassLoader.loadClass(className);
-          if (simulationClass.isAssignableFrom(clazz) && isConcreteClass(clazz)) {
-            simulationsClasses.add(className);
-          }
+      boolean isIncluded = includes.isEmpty() || match(includes, className);
+      boolean isExcluded =  match(excludes, className);
+
+      if (isIncluded && !isExcluded) {
+        // check if the class is a concrete Simulation
+        Class<?> clazz = testClassLoader.loadClass(className);
+        if (simulationClass.isAssignableFrom(clazz) && isConcreteClass(clazz)) {
+          simulationsClasses.add(className);
         }
       }
-
-      return simulationsClasses;
-
-    } catch (Exception e) {
-      throw new RuntimeException(e);
     }
+
+    return simulationsClasses;
   }
 
   private static boolean match(List<String> patterns, String string) {
@@ -662,9 +1413,9 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     return urls;
   }
 
-  private String[] compiledClassFiles() throws IOException {
+  private static String[] compiledClassFiles(File classesFolder) throws IOException {
     DirectoryScanner scanner = new DirectoryScanner();
-    scanner.setBasedir(compiledClassesFolder.getCanonicalPath());
+    scanner.setBasedir(classesFolder.getCanonicalPath());
     scanner.setIncludes(new String[]{"**/*.class"});
     scanner.scan();
     String[] files = scanner.getIncludedFiles();
@@ -672,11 +1423,11 @@ public class GatlingMojo extends AbstractGatlingExecutionMojo {
     return files;
   }
 
-  private String pathToClassName(String path) {
+  private static String pathToClassName(String path) {
     return path.substring(0, path.length() - ".class".length()).replace(File.separatorChar, '.');
   }
 
-  private boolean isConcreteClass(Class<?> clazz) {
+  private static boolean isConcreteClass(Class<?> clazz) {
     return !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers());
   }
 
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Reads the checked out revision straight from the .git folder, without running git.
+ */
+final class GitRevision {
+
+  static final String UNKNOWN = "unknown";
+
+  private GitRevision() {
+  }
+
+  /**
+   * @param directory a directory inside the work tree
+   * @return the commit id of HEAD, or {@value #UNKNOWN} when the directory is not in a git work tree
+   */
+  static String of(File directory) {
+    try {
+      File gitDirectory = gitDirectory(directory);
+      return gitDirectory == null ? UNKNOWN : head(gitDirectory);
+    } catch (IOException e) {
+      return UNKNOWN;
+    }
+  }
+
+  private static File gitDirectory(File directory) throws IOException {
+    for (File current = directory.getCanonicalFile(); current != null; current = current.getParentFile()) {
+      File git = new File(current, ".git");
+      if (git.isDirectory()) {
+        return git;
+      }
+      if (git.isFile()) {
+        // worktrees and submodules: "gitdir: <path>"
+        String content = firstLine(git);
+        if (content != null && content.startsWith("gitdir:")) {
+          File gitDirectory = new File(content.substring("gitdir:".length()).trim());
+          return gitDirectory.isAbsolute() ? gitDirectory : new File(current, gitDirectory.getPath());
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String head(File gitDirectory) throws IOException {
+    String head = firstLine(new File(gitDirectory, "HEAD"));
+    if (head == null) {
+      return UNKNOWN;
+    }
+    if (!head.startsWith("ref:")) {
+      return head.trim();
+    }
+    String ref = head.substring("ref:".length()).trim();
+    File commonDirectory = commonDirectory(gitDirectory);
+    for (File base : new File[]{gitDirectory, commonDirectory}) {
+      File refFile = new File(base, ref);
+      if (refFile.isFile()) {
+        String commit = firstLine(refFile);
+        if (commit != null) {
+          return commit.trim();
+        }
+      }
+    }
+    File packedRefs = new File(commonDirectory, "packed-refs");
+    if (packedRefs.isFile()) {
+      for (String line : Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+        if (line.endsWith(" " + ref) && !line.startsWith("#")) {
+          return line.substring(0, line.indexOf(' '));
+        }
+      }
+    }
+    return UNKNOWN;
+  }
+
+  private static File commonDirectory(File gitDirectory) throws IOException {
+    File commonDir = new File(gitDirectory, "commondir");
+    if (commonDir.isFile()) {
+      String path = firstLine(commonDir);
+      if (path != null) {
+        File common = new File(path.trim());
+        return common.isAbsolute() ? common : new File(gitDirectory, path.trim());
+      }
+    }
+    return gitDirectory;
+  }
+
+  private static String firstLine(File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    return lines.isEmpty() ? null : lines.get(0);
+  }
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the entries of a HAR file into smaller HAR files the recorder can convert one by one.
+ * <p>
+ * Only one entry is held in memory at a time. Entries for static resources and ignored hosts are dropped, as are
+ * entries identical to one seen within the last {@literal deduplicationWindow} entries. That comparison only covers the
+ * request and the status and body of the response, so the same request captured again is still recognized as a
+ * duplicate despite its timings and response headers such as Date, Age or Set-Cookie.
+ */
+final class HarSplitter {
+
+  /**
+   * Same resources as the default black list of the Gatling recorder, matched against the url without query.
+   */
+  static final List<String> DEFAULT_STATIC_RESOURCES = Collections.unmodifiableList(Arrays.asList(
+    ".*\\.js", ".*\\.css", ".*\\.gif", ".*\\.jpeg", ".*\\.jpg", ".*\\.ico", ".*\\.woff", ".*\\.woff2",
+    ".*\\.(t|o)tf", ".*\\.png", ".*\\.svg", ".*detectportal\\.firefox\\.com.*"));
+
+  private static final byte[] CHUNK_HEADER =
+    "{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"gatling-maven-plugin\",\"version\":\"1.0\"},\"entries\":[\n".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] CHUNK_FOOTER = "\n]}}\n".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ENTRY_SEPARATOR = ",\n".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Fields of the response compared to find duplicates, its other fields differ each time the same request is captured.
+   */
+  private static final Set<String> COMPARED_RESPONSE_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+    "status", "content")));
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private final List<Pattern> staticResources;
+  private final Set<String> ignoredHosts;
+  private final int chunkSize;
+  private final Map<Long, Boolean> recentEntries;
+  private final MessageDigest digest;
+  private final ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream(64 * 1024);
+
+  private long entries;
+  private long staticResourceEntries;
+  private long ignoredHostEntries;
+  private long duplicateEntries;
+
+  HarSplitter(Collection<String> staticResources, Collection<String> ignoredHosts, int chunkSize, final int deduplicationWindow) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be at least 1, was " + chunkSize);
+    }
+    this.staticResources = staticResources.stream().map(Pattern::compile).collect(Collectors.toList());
+    this.ignoredHosts = ignoredHosts.stream().map(host -> host.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+    this.chunkSize = chunkSize;
+    this.recentEntries = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+        return size() > deduplicationWindow;
+      }
+    };
+    try {
+      this.digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param harFile the HAR file to split
+   * @param chunksFolder folder to write the chunks to, as {@literal <baseName>Part<N>.har}
+   * @param baseName base name of the chunk files
+   * @return the chunk files, in the order of the entries
+   * @throws IOException when the HAR file can not be read, is not valid JSON or a chunk can not be written
+   */
+  List<File> split(File harFile, File chunksFolder, String baseName) throws IOException {
+    if (!chunksFolder.exists() && !chunksFolder.mkdirs()) {
+      throw new IOException("Could not create " + chunksFolder);
+    }
+    List<File> chunks = new ArrayList<>();
+    try (JsonParser parser = jsonFactory.createParser(harFile)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException(harFile + " is not a HAR file: it does not start with a JSON object");
+      }
+      ChunkWriter writer = new ChunkWriter(chunksFolder, baseName, chunks);
+      try {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          if (parser.nextToken() == JsonToken.START_OBJECT && "log".equals(field)) {
+            splitLog(parser, writer);
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } finally {
+        writer.close();
+      }
+    }
+    return chunks;
+  }
+
+  private void splitLog(JsonParser parser, ChunkWriter writer) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      if (parser.nextToken() == JsonToken.START_ARRAY && "entries".equals(field)) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          String url = bufferEntry(parser);
+          entries++;
+          if (isAccepted(url)) {
+            writer.write(entryBuffer);
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Copies the entry the parser is positioned on into the entry buffer, and digests its request and the status and body
+   * of its response.
+   *
+   * @return the request url of the entry, or null when it has none
+   */
+  private String bufferEntry(JsonParser parser) throws IOException {
+    entryBuffer.reset();
+    digest.reset();
+    String url = null;
+    try (JsonGenerator generator = jsonFactory.createGenerator(entryBuffer)) {
+      generator.copyCurrentEvent(parser);
+      int depth = 1;
+      // the field of the entry and the field of that field the parser is in, null when none
+      String entryField = null;
+      String innerField = null;
+      while (depth > 0) {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+          throw new IOException("Unexpected end of HAR file inside an entry");
+        }
+        if (token.isStructStart()) {
+          depth++;
+        } else if (token.isStructEnd()) {
+          depth--;
+        } else if (token == JsonToken.FIELD_NAME && depth == 1) {
+          entryField = parser.getCurrentName();
+          innerField = null;
+        } else if (token == JsonToken.FIELD_NAME && depth == 2) {
+          innerField = parser.getCurrentName();
+        } else if (token == JsonToken.VALUE_STRING && depth == 2 && isRequestUrl(parser.getParsingContext())) {
+          url = parser.getText();
+        }
+        generator.copyCurrentEvent(parser);
+
+        boolean compared = "request".equals(entryField)
+          || ("response".equals(entryField) && (depth < 2 || innerField == null || COMPARED_RESPONSE_FIELDS.contains(innerField)));
+        if (compared) {
+          digest(token, parser);
+        }
+      }
+    }
+    return url;
+  }
+
+  private void digest(JsonToken token, JsonParser parser) throws IOException {
+    digest.update((byte) token.ordinal());
+    if (token == JsonToken.FIELD_NAME || token.isScalarValue()) {
+      digest.update(parser.getText().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+  }
+
+  private static boolean isRequestUrl(JsonStreamContext context) {
+    return "url".equals(context.getCurrentName()) && context.getParent() != null && "request".equals(context.getParent().getCurrentName());
+  }
+
+  private boolean isAccepted(String url) {
+    if (url != null) {
+      int queryStart = url.indexOf('?');
+      String withoutQuery = queryStart < 0 ? url : url.substring(0, queryStart);
+      for (Pattern staticResource : staticResources) {
+        if (staticResource.matcher(withoutQuery).matches()) {
+          staticResourceEntries++;
+          return false;
+        }
+      }
+      if (!ignoredHosts.isEmpty() && isIgnoredHost(url)) {
+        ignoredHostEntries++;
+        return false;
+      }
+    }
+    if (recentEntries.put(entryHash(), Boolean.TRUE) != null) {
+      duplicateEntries++;
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isIgnoredHost(String url) {
+    String host;
+    try {
+      host = new URI(url).getHost();
+    } catch (URISyntaxException e) {
+      return false;
+    }
+    if (host == null) {
+      return false;
+    }
+    host = host.toLowerCase(Locale.ROOT);
+    for (String ignoredHost : ignoredHosts) {
+      if (host.equals(ignoredHost) || host.endsWith("." + ignoredHost)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long entryHash() {
+    byte[] hash = digest.digest();
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (hash[i] & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * @return a simulation class name for a HAR file name, for instance {@literal CheckoutFlow} for {@literal checkout-flow.har}
+   */
+  static String classNameFor(String fileName) {
+    int extension = fileName.lastIndexOf('.');
+    String baseName = extension > 0 ? fileName.substring(0, extension) : fileName;
+    StringBuilder className = new StringBuilder();
+    boolean upperCase = true;
+    for (char c : baseName.toCharArray()) {
+      if (Character.isLetterOrDigit(c)) {
+        className.append(upperCase ? Character.toUpperCase(c) : c);
+        upperCase = false;
+      } else {
+        upperCase = true;
+      }
+    }
+    if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0))) {
+      className.insert(0, "Har");
+    }
+    return className.toString();
+  }
+
+  long getEntries() {
+    return entries;
+  }
+
+  long getStaticResourceEntries() {
+    return staticResourceEntries;
+  }
+
+  long getIgnoredHostEntries() {
+    return ignoredHostEntries;
+  }
+
+  long getDuplicateEntries() {
+    return duplicateEntries;
+  }
+
+  private final class ChunkWriter {
+
+    private final File chunksFolder;
+    private final String baseName;
+    private final List<File> chunks;
+    private OutputStream out;
+    private int chunkEntries;
+
+    private ChunkWriter(File chunksFolder, String baseName, List<File> chunks) {
+      this.chunksFolder = chunksFolder;
+      this.baseName = baseName;
+      this.chunks = chunks;
+    }
+
+    private void write(ByteArrayOutputStream entry) throws IOException {
+      if (out != null && chunkEntries == chunkSize) {
+        close();
+      }
+      if (out == null) {
+        File chunk = new File(chunksFolder, baseName + "Part" + (chunks.size() + 1) + ".har");
+        chunks.add(chunk);
+        out = new BufferedOutputStream(Files.newOutputStream(chunk.toPath()));
+        out.write(CHUNK_HEADER);
+      } else {
+        out.write(ENTRY_SEPARATOR);
+      }
+      entry.writeTo(out);
+      chunkEntries++;
+    }
+
+    private void close() throws IOException {
+      if (out != null) {
+        try {
+          out.write(CHUNK_FOOTER);
+        } finally {
+          out.close();
+          out = null;
+          chunkEntries = 0;
+        }
+      }
+    }
+  }
+}
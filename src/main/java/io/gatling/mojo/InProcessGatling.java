@@ -0,0 +1,222 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.Permission;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.gatling.mojo.MojoConstants.STOPPED_EXIT_CODE;
+
+/**
+ * Runs Gatling in the Maven JVM instead of a forked one, for short simulations where starting a JVM takes longer than
+ * the simulation itself.
+ * <p>
+ * The whole test classpath is loaded in a {@link SimulationClassLoader} on top of the platform class loader, so
+ * nothing is shared with Maven or the plugin, and the loader is closed after the run. The system properties of the run
+ * are only set for its duration. Gatling returns its exit code instead of exiting, and calls to {@link System#exit(int)}
+ * from the threads of the run are trapped by a security manager, so a run fails when the JVM does not allow one: since
+ * Java 18 unless it was started with {@literal -Djava.security.manager=allow}. A run does not stop when it is asked
+ * to: it is interrupted, and abandoned when it does not end within the stop timeout. The trap is removed when the run
+ * ends or is abandoned, an abandoned run that still exits stops the JVM.
+ */
+final class InProcessGatling {
+
+  private static final long POLL_MILLIS = 100;
+
+  private final long stopTimeoutMillis;
+  private final Log log;
+  private volatile Thread runThread;
+  private volatile long stopRequestedAt;
+
+  InProcessGatling(long stopTimeoutMillis, Log log) {
+    this.stopTimeoutMillis = stopTimeoutMillis;
+    this.log = log;
+  }
+
+  /**
+   * @return the exit code of the run, {@value MojoConstants#STOPPED_EXIT_CODE} when it was abandoned after a stop
+   */
+  int run(List<String> classpath, String mainClassName, List<String> args, Map<String, String> properties) throws Exception {
+    URL[] urls = new URL[classpath.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = MojoUtils.getURL(new File(classpath.get(i)));
+    }
+    ClassLoader platform = ClassLoader.getSystemClassLoader().getParent();
+    ThreadGroup threads = new ThreadGroup("gatlingInProcess");
+    ExitTrap exitTrap = ExitTrap.install(threads);
+    CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+    Thread thread = new Thread(threads, () -> {
+      try {
+        exitCode.complete(run(urls, platform, mainClassName, args, properties));
+      } catch (ExitTrap.ExitException e) {
+        exitCode.complete(e.status);
+      } catch (Throwable t) {
+        exitCode.completeExceptionally(t);
+      }
+    }, "gatlingInProcess");
+    thread.setDaemon(true);
+    runThread = thread;
+    try {
+      thread.start();
+      while (true) {
+        try {
+          return exitCode.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          long stoppedAt = stopRequestedAt;
+          if (stoppedAt > 0 && System.currentTimeMillis() - stoppedAt > stopTimeoutMillis) {
+            log.warn("Gatling did not stop within " + stopTimeoutMillis + " ms, abandoning the in-process run.");
+            return STOPPED_EXIT_CODE;
+          }
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof Exception ? (Exception) cause : e;
+        }
+      }
+    } finally {
+      runThread = null;
+      exitTrap.uninstall();
+    }
+  }
+
+  /**
+   * Interrupts the running simulation, which is abandoned when it does not end within the stop timeout.
+   */
+  void stop() {
+    Thread thread = runThread;
+    if (thread != null) {
+      stopRequestedAt = System.currentTimeMillis();
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * Runs the main class of Gatling with the given classpath in a new {@link SimulationClassLoader}, and the system
+   * properties set for the duration of the run.
+   *
+   * @return the exit code of the run
+   */
+  static int run(URL[] classpath, ClassLoader parent, String mainClassName, List<String> args, Map<String, String> properties) throws Exception {
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    try (SimulationClassLoader loader = new SimulationClassLoader(classpath, parent);
+         SystemPropertiesScope ignored = SystemPropertiesScope.set(properties)) {
+      thread.setContextClassLoader(loader);
+      invalidateConfigCaches(loader);
+      Class<?> option = loader.loadClass("scala.Option");
+      int simulationIndex = args.indexOf("-s");
+      Object simulationClass = simulationIndex >= 0 ? loader.loadClass(args.get(simulationIndex + 1)) : null;
+      Object selectedSimulation = option.getMethod("apply", Object.class).invoke(null, simulationClass);
+      Method fromArgs = loader.loadClass(mainClassName).getMethod("fromArgs", String[].class, option);
+      return (Integer) fromArgs.invoke(null, args.toArray(new String[0]), selectedSimulation);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+  /**
+   * Typesafe Config caches the system properties, which change from one run to the next.
+   */
+  private static void invalidateConfigCaches(ClassLoader loader) {
+    try {
+      loader.loadClass("com.typesafe.config.ConfigFactory").getMethod("invalidateCaches").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // not on the classpath, nothing cached
+    }
+  }
+
+  /**
+   * Security manager that only turns {@link System#exit(int)} from the threads of a run into an exception, delegating
+   * all other checks.
+   */
+  @SuppressWarnings({"deprecation", "removal"})
+  private static final class ExitTrap extends SecurityManager {
+
+    private final ThreadGroup threads;
+    private final SecurityManager previous;
+
+    private ExitTrap(ThreadGroup threads, SecurityManager previous) {
+      this.threads = threads;
+      this.previous = previous;
+    }
+
+    /**
+     * @throws IllegalStateException when the JVM does not allow to install a security manager
+     */
+    static ExitTrap install(ThreadGroup threads) {
+      ExitTrap trap = new ExitTrap(threads, System.getSecurityManager());
+      try {
+        System.setSecurityManager(trap);
+        return trap;
+      } catch (UnsupportedOperationException | SecurityException e) {
+        throw new IllegalStateException("inProcess needs a security manager to trap System.exit, which this JVM does not allow: run Maven with "
+          + "MAVEN_OPTS=-Djava.security.manager=allow or disable inProcess", e);
+      }
+    }
+
+    void uninstall() {
+      if (System.getSecurityManager() == this) {
+        System.setSecurityManager(previous);
+      }
+    }
+
+    @Override
+    public void checkExit(int status) {
+      if (threads.parentOf(Thread.currentThread().getThreadGroup())) {
+        throw new ExitException(status);
+      }
+      if (previous != null) {
+        previous.checkExit(status);
+      }
+    }
+
+    @Override
+    public void checkPermission(Permission permission) {
+      if (previous != null) {
+        previous.checkPermission(permission);
+      }
+    }
+
+    @Override
+    public void checkPermission(Permission permission, Object context) {
+      if (previous != null) {
+        previous.checkPermission(permission, context);
+      }
+    }
+
+    private static final class ExitException extends SecurityException {
+      private final int status;
+
+      private ExitException(int status) {
+        super("System.exit(" + status + ") trapped during an in-process Gatling run");
+        this.status = status;
+      }
+    }
+  }
+}
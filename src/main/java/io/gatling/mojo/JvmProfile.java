@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Named set of JVM arguments the matrix goal runs the simulations with, optionally on a JDK toolchain of its own.
+ * <p>
+ * The JDK is selected with the requirements of the toolchains.xml entries of type jdk, as in the maven-toolchains-plugin.
+ * Without {@literal jdkVersion} and {@literal jdkVendor} the toolchain of the build is used.
+ */
+public class JvmProfile {
+
+  /**
+   * Name of the profile in the comparison table.
+   */
+  private String name;
+
+  /**
+   * JVM arguments of the Gatling JVM.
+   */
+  private List<String> jvmArgs = new ArrayList<>();
+
+  /**
+   * Use the default JVM arguments of the plugin besides {@literal jvmArgs}, as for the overrideJvmArgs parameter.
+   * {@literal jvmArgs} come after the defaults, so a heap size of the profile wins over the default one. When
+   * {@literal jvmArgs} select a garbage collector, the default G1 selection and options are left out.
+   */
+  private boolean overrideJvmArgs = true;
+
+  /**
+   * Version requirement of the JDK toolchain, such as 11 or [17,18).
+   */
+  private String jdkVersion;
+
+  /**
+   * Vendor requirement of the JDK toolchain.
+   */
+  private String jdkVendor;
+
+  public JvmProfile() {
+  }
+
+  JvmProfile(String name, List<String> jvmArgs, boolean overrideJvmArgs, String jdkVersion, String jdkVendor) {
+    this.name = name;
+    this.jvmArgs = jvmArgs;
+    this.overrideJvmArgs = overrideJvmArgs;
+    this.jdkVersion = jdkVersion;
+    this.jdkVendor = jdkVendor;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<String> getJvmArgs() {
+    return jvmArgs != null ? jvmArgs : new ArrayList<>();
+  }
+
+  public boolean isOverrideJvmArgs() {
+    return overrideJvmArgs;
+  }
+
+  public String getJdkVersion() {
+    return jdkVersion;
+  }
+
+  public String getJdkVendor() {
+    return jdkVendor;
+  }
+
+  /**
+   * @return the default JVM arguments the profile runs with, without the garbage collector ones when the profile selects its own
+   */
+  List<String> defaultJvmArgs(List<String> defaults) {
+    for (String jvmArg : getJvmArgs()) {
+      if (MojoUtils.isCollectorSelection(jvmArg)) {
+        return MojoUtils.withoutCollectorArgs(defaults);
+      }
+    }
+    return defaults;
+  }
+
+  boolean hasJdkRequirements() {
+    return jdkVersion != null || jdkVendor != null;
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + getJvmArgs() + (hasJdkRequirements() ? " on jdk" + (jdkVersion != null ? " " + jdkVersion : "") + (jdkVendor != null ? " " + jdkVendor : "") : "");
+  }
+}
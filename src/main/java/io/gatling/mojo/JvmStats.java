@@ -0,0 +1,155 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CPU and garbage collection statistics of Gatling JVMs, to compare the overhead of the load generator itself.
+ * <p>
+ * Each JVM appends one line with its totals to the stats file when it exits, {@link #read(File)} sums them.
+ * Collectors reporting concurrent cycles instead of pauses, as ZGC and Shenandoah do besides their pauses, are not counted.
+ */
+final class JvmStats {
+
+  private long jvms;
+  private long cpuNanos;
+  private long uptimeMillis;
+  private long gcCount;
+  private long gcPauseMillis;
+  private long gcMaxPauseMillis;
+  private int processors;
+
+  private JvmStats() {
+  }
+
+  /**
+   * Records the garbage collection pauses of this JVM and appends its statistics to the file when it exits.
+   */
+  static void recordOnExit(String statsFile) {
+    if (statsFile == null) {
+      return;
+    }
+    AtomicLong count = new AtomicLong();
+    AtomicLong pauseMillis = new AtomicLong();
+    AtomicLong maxPauseMillis = new AtomicLong();
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter && isPauseCollector(collector.getName())) {
+        ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+          if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            long duration = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+            count.incrementAndGet();
+            pauseMillis.addAndGet(duration);
+            maxPauseMillis.accumulateAndGet(duration, Math::max);
+          }
+        }, null, null);
+      }
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      String line = processCpuNanos() + "\t" + ManagementFactory.getRuntimeMXBean().getUptime() + "\t" + count.get() + "\t" + pauseMillis.get()
+        + "\t" + maxPauseMillis.get() + "\t" + Runtime.getRuntime().availableProcessors() + System.lineSeparator();
+      try {
+        Files.write(new File(statsFile).toPath(), line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        System.err.println("Could not write the JVM statistics: " + e.getMessage());
+      }
+    }, "gatlingJvmStats"));
+  }
+
+  static boolean isPauseCollector(String name) {
+    return !name.endsWith("Cycles") && !name.equals("ConcurrentMarkSweep");
+  }
+
+  private static long processCpuNanos() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    return os instanceof com.sun.management.OperatingSystemMXBean ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : -1;
+  }
+
+  /**
+   * @return the sum of the statistics of the JVMs in the file, empty when it does not exist
+   */
+  static JvmStats read(File statsFile) throws IOException {
+    JvmStats stats = new JvmStats();
+    if (!statsFile.isFile()) {
+      return stats;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(statsFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] columns = line.split("\t");
+        if (columns.length < 6) {
+          continue;
+        }
+        try {
+          long cpu = Long.parseLong(columns[0]);
+          stats.cpuNanos = stats.cpuNanos < 0 || cpu < 0 ? -1 : stats.cpuNanos + cpu;
+          stats.uptimeMillis += Long.parseLong(columns[1]);
+          stats.gcCount += Long.parseLong(columns[2]);
+          stats.gcPauseMillis += Long.parseLong(columns[3]);
+          stats.gcMaxPauseMillis = Math.max(stats.gcMaxPauseMillis, Long.parseLong(columns[4]));
+          stats.processors = Math.max(stats.processors, Integer.parseInt(columns[5]));
+          stats.jvms++;
+        } catch (NumberFormatException e) {
+          // line of a JVM killed while writing
+        }
+      }
+    }
+    return stats;
+  }
+
+  long getJvms() {
+    return jvms;
+  }
+
+  /**
+   * @return the CPU time of the JVMs in seconds, -1 when the JVM does not provide it
+   */
+  double getCpuSeconds() {
+    return cpuNanos < 0 ? -1 : cpuNanos / 1e9;
+  }
+
+  /**
+   * @return the CPU time as a percentage of the capacity of the available processors during the lifetime of the JVMs
+   */
+  double getCpuPercent() {
+    return cpuNanos < 0 || uptimeMillis == 0 || processors == 0 ? -1 : cpuNanos / 1e4 / uptimeMillis / processors;
+  }
+
+  long getGcCount() {
+    return gcCount;
+  }
+
+  long getGcPauseMillis() {
+    return gcPauseMillis;
+  }
+
+  long getGcMaxPauseMillis() {
+    return gcMaxPauseMillis;
+  }
+}
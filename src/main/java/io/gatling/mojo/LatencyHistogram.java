@@ -0,0 +1,132 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+/**
+ * Fixed-memory histogram of response times in milliseconds.
+ * <p>
+ * Values below {@value #SUB_BUCKET_COUNT} are counted exactly, larger values in log-linear buckets,
+ * so a percentile is at most 1/{@value #HALF_SUB_BUCKET_COUNT} above the exact value. Histograms can be
+ * merged, for instance to combine the results of several runs.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 8;
+  static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+  /**
+   * Larger values, more than two years, are counted as this value.
+   */
+  static final long MAX_VALUE = (1L << 36) - 1;
+  static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount;
+  private long min = Long.MAX_VALUE;
+  private long max;
+  private long sum;
+
+  void record(long value) {
+    long clamped = clamp(value);
+    counts[index(clamped)]++;
+    totalCount++;
+    sum += clamped;
+    min = Math.min(min, clamped);
+    max = Math.max(max, clamped);
+  }
+
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Adds the values of a histogram stored by its non-empty buckets, as in a {@link SimulationLogIndex}.
+   */
+  void add(int[] indexes, long[] bucketCounts, int size, long min, long max, long sum) {
+    for (int i = 0; i < size; i++) {
+      counts[indexes[i]] += bucketCounts[i];
+      totalCount += bucketCounts[i];
+    }
+    if (size > 0) {
+      this.sum += sum;
+      this.min = Math.min(this.min, min);
+      this.max = Math.max(this.max, max);
+    }
+  }
+
+  long getTotalCount() {
+    return totalCount;
+  }
+
+  long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  long getMax() {
+    return max;
+  }
+
+  double getMean() {
+    return totalCount == 0 ? 0 : (double) sum / totalCount;
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return the highest value of the bucket the percentile falls in, capped by the highest recorded value,
+   * or 0 when nothing was recorded
+   */
+  long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, highestValue(i)));
+      }
+    }
+    return max;
+  }
+
+  static long clamp(long value) {
+    return Math.max(0, Math.min(value, MAX_VALUE));
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (int) ((value >> shift) - HALF_SUB_BUCKET_COUNT);
+  }
+
+  static long highestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+    long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP endpoint serving the progress of the running simulations in the Prometheus text format.
+ * <p>
+ * The metrics come from tailing the simulation.log of the run directories created after the endpoint started,
+ * so they need nothing from the Gatling process itself.
+ */
+final class LiveMetrics implements Closeable {
+
+  static final String PATH = "/metrics";
+
+  private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99};
+  private static final int RATE_WINDOW_SECONDS = 10;
+
+  private final File resultsFolder;
+  private final Set<File> existingDirectories;
+  private final Log log;
+  private final Map<File, Tail> tails = new TreeMap<>();
+  private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "gatlingLiveMetrics");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private HttpServer server;
+
+  LiveMetrics(File resultsFolder, Set<File> existingDirectories, Log log) {
+    this.resultsFolder = resultsFolder;
+    this.existingDirectories = existingDirectories;
+    this.log = log;
+  }
+
+  /**
+   * @return false when the port is in use, for instance by another module of a parallel build, and the metrics are not served
+   */
+  boolean start(String host, int port, long pollIntervalMillis) throws IOException {
+    try {
+      server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    } catch (BindException e) {
+      log.warn("Not serving live metrics, " + host + ":" + port + " is not available: " + e.getMessage() + ". Use liveMetricsPort 0 for a free port.");
+      return false;
+    }
+    server.createContext(PATH, exchange -> {
+      byte[] body = render().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+    poller.scheduleWithFixedDelay(this::pollSafely, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    log.info("Serving live metrics on http://" + host + ":" + server.getAddress().getPort() + PATH);
+    return true;
+  }
+
+  int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    poller.shutdownNow();
+    if (server != null) {
+      server.stop(0);
+    }
+  }
+
+  private void pollSafely() {
+    try {
+      poll();
+    } catch (IOException | RuntimeException e) {
+      log.debug("Could not read simulation.log for live metrics: " + e.getMessage());
+    }
+  }
+
+  void poll() throws IOException {
+    File[] directories = resultsFolder.listFiles(File::isDirectory);
+    if (directories != null) {
+      for (File directory : directories) {
+        if (!existingDirectories.contains(directory) && SimulationLogs.hasSimulationLog(directory)) {
+          poll(directory, false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the rest of the simulation.log of a finished run and stops following it, so rewriting the log after the run,
+   * for instance to sample it or to cut the warm-up, is not counted again.
+   */
+  void finish(File runDirectory) throws IOException {
+    poll(runDirectory, true);
+  }
+
+  private void poll(File directory, boolean finish) throws IOException {
+    Tail tail;
+    synchronized (tails) {
+      tail = tails.computeIfAbsent(directory, dir -> new Tail(SimulationLogs.simulationLog(dir)));
+    }
+    synchronized (tail) {
+      if (!tail.finished) {
+        tail.tailer.poll(tail.metrics);
+        tail.finished = finish;
+      }
+    }
+  }
+
+  String render() {
+    StringBuilder out = new StringBuilder();
+    Tail[] snapshot;
+    synchronized (tails) {
+      snapshot = tails.values().toArray(new Tail[0]);
+    }
+
+    out.append("# HELP gatling_requests_total Completed requests.\n# TYPE gatling_requests_total counter\n");
+    for (Tail tail : snapshot) {
+      synchronized (tail) {
+        for (Map.Entry<String, RequestMetrics> request : tail.metrics.requests.entrySet()) {
+          String labels = "simulation=\"" + escape(tail.metrics.simulation) + "\",request=\"" + escape(request.getKey()) + "\"";
+          out.append("gatling_requests_total{").append(labels).append(",status=\"OK\"} ").append(request.getValue().ok).append('\n');
+          out.append("gatling_requests_total{").append(labels).append(",status=\"KO\"} ").append(request.getValue().ko).append('\n');
+        }
+      }
+    }
+
+    out.append("# HELP gatling_active_users Users started and not yet ended.\n# TYPE gatling_active_users gauge\n");
+    for (Tail tail : snapshot) {
+      synchronized (tail) {
+        for (Map.Entry<String, Long> scenario : tail.metrics.activeUsers.entrySet()) {
+          out.append("gatling_active_users{simulation=\"").append(escape(tail.metrics.simulation))
+            .append("\",scenario=\"").append(escape(scenario.getKey())).append("\"} ").append(scenario.getValue()).append('\n');
+        }
+      }
+    }
+
+    out.append("# HELP gatling_request_rate Requests per second over the last " + RATE_WINDOW_SECONDS + " seconds of the log.\n# TYPE gatling_request_rate gauge\n");
+    for (Tail tail : snapshot) {
+      synchronized (tail) {
+        out.append("gatling_request_rate{simulation=\"").append(escape(tail.metrics.simulation)).append("\"} ")
+          .append(format(tail.metrics.window.rate(false))).append('\n');
+      }
+    }
+
+    out.append("# HELP gatling_error_ratio Failed share of the requests over the last " + RATE_WINDOW_SECONDS + " seconds of the log.\n# TYPE gatling_error_ratio gauge\n");
+    for (Tail tail : snapshot) {
+      synchronized (tail) {
+        double total = tail.metrics.window.rate(false);
+        out.append("gatling_error_ratio{simulation=\"").append(escape(tail.metrics.simulation)).append("\"} ")
+          .append(format(total == 0 ? 0 : tail.metrics.window.rate(true) / total)).append('\n');
+      }
+    }
+
+    out.append("# HELP gatling_response_time_milliseconds Response times since the start of the run.\n# TYPE gatling_response_time_milliseconds summary\n");
+    for (Tail tail : snapshot) {
+      synchronized (tail) {
+        for (Map.Entry<String, RequestMetrics> request : tail.metrics.requests.entrySet()) {
+          String labels = "simulation=\"" + escape(tail.metrics.simulation) + "\",request=\"" + escape(request.getKey()) + "\"";
+          LatencyHistogram histogram = request.getValue().histogram;
+          for (double quantile : QUANTILES) {
+            out.append("gatling_response_time_milliseconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+              .append(histogram.getValueAtPercentile(quantile * 100)).append('\n');
+          }
+          out.append("gatling_response_time_milliseconds_sum{").append(labels).append("} ")
+            .append(format(histogram.getMean() * histogram.getTotalCount())).append('\n');
+          out.append("gatling_response_time_milliseconds_count{").append(labels).append("} ").append(histogram.getTotalCount()).append('\n');
+        }
+      }
+    }
+    return out.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static final class Tail {
+    private final SimulationLogTailer tailer;
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    private boolean finished;
+
+    private Tail(File simulationLog) {
+      this.tailer = new SimulationLogTailer(simulationLog);
+    }
+  }
+
+  private static final class RequestMetrics {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long ok;
+    private long ko;
+  }
+
+  private static final class SimulationMetrics implements SimulationLogParser.Listener {
+    private String simulation = "unknown";
+    private final Map<String, RequestMetrics> requests = new TreeMap<>();
+    private final Map<String, Long> activeUsers = new TreeMap<>();
+    private final RateWindow window = new RateWindow();
+
+    @Override
+    public void run(String simulationClassName, String simulationId, long start, String description) {
+      simulation = simulationClassName;
+    }
+
+    @Override
+    public void user(String scenario, boolean start, long timestamp) {
+      activeUsers.merge(scenario, start ? 1L : -1L, Long::sum);
+    }
+
+    @Override
+    public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+      RequestMetrics request = requests.computeIfAbsent(SimulationLogParser.path(groups, name), path -> new RequestMetrics());
+      request.histogram.record(end - start);
+      if (ok) {
+        request.ok++;
+      } else {
+        request.ko++;
+      }
+      window.record(end, ok);
+    }
+  }
+
+  /**
+   * Request counts of the last seconds of the log, by the second the requests ended in.
+   */
+  private static final class RateWindow {
+    private final long[] seconds = new long[RATE_WINDOW_SECONDS];
+    private final long[] totals = new long[RATE_WINDOW_SECONDS];
+    private final long[] failures = new long[RATE_WINDOW_SECONDS];
+    private long latestSecond = Long.MIN_VALUE;
+
+    private void record(long timestamp, boolean ok) {
+      long second = timestamp / 1000;
+      if (second <= latestSecond - RATE_WINDOW_SECONDS) {
+        return;
+      }
+      latestSecond = Math.max(latestSecond, second);
+      int slot = (int) (second % RATE_WINDOW_SECONDS);
+      if (seconds[slot] != second) {
+        seconds[slot] = second;
+        totals[slot] = 0;
+        failures[slot] = 0;
+      }
+      totals[slot]++;
+      if (!ok) {
+        failures[slot]++;
+      }
+    }
+
+    private double rate(boolean failed) {
+      long count = 0;
+      for (int slot = 0; slot < RATE_WINDOW_SECONDS; slot++) {
+        if (seconds[slot] > latestSecond - RATE_WINDOW_SECONDS) {
+          count += failed ? failures[slot] : totals[slot];
+        }
+      }
+      return (double) count / RATE_WINDOW_SECONDS;
+    }
+  }
+}
@@ -19,15 +19,36 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.gatling.mojo.MojoConstants.HEARTBEAT_FILE_PROPERTY;
+import static io.gatling.mojo.MojoConstants.HEARTBEAT_INTERVAL_MILLIS;
+import static io.gatling.mojo.MojoConstants.JVM_STATS_FILE_PROPERTY;
+import static io.gatling.mojo.MojoConstants.STOPPED_EXIT_CODE;
+import static io.gatling.mojo.MojoConstants.STOP_SIGNAL_FILE_PROPERTY;
+
 public class MainWithArgsInFile {
 
+  private static final long STOP_SIGNAL_POLL_MILLIS = 250;
+
   public static void main(String[] args) {
     try {
+      watchStopSignal(System.getProperty(STOP_SIGNAL_FILE_PROPERTY));
+      writeHeartbeat(System.getProperty(HEARTBEAT_FILE_PROPERTY));
+      JvmStats.recordOnExit(System.getProperty(JVM_STATS_FILE_PROPERTY));
       String mainClassName = args[0];
       List<String> argsFromFile = readArgFile(new File(args[1]));
       runMain(mainClassName, argsFromFile);
@@ -37,6 +58,117 @@ public class MainWithArgsInFile {
     }
   }
 
+  /**
+   * Exit through the regular JVM shutdown when the plugin creates the stop signal file,
+   * so shutdown hooks get the chance to stop the injection and flush the results.
+   */
+  private static void watchStopSignal(String stopSignalFile) {
+    if (stopSignalFile == null) {
+      return;
+    }
+    File signal = new File(stopSignalFile);
+    Thread watcher = new Thread(() -> {
+      try {
+        while (!signal.exists()) {
+          Thread.sleep(STOP_SIGNAL_POLL_MILLIS);
+        }
+        System.err.println("Stop signal received, stopping Gatling.");
+        System.exit(STOPPED_EXIT_CODE);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "gatlingStopSignalWatcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /**
+   * Regularly write the process id and the CPU time of this JVM to the heartbeat file, and answer the thread dump
+   * requests of the plugin, see {@link ProgressWatchdog}. The thread dump is written by this JVM itself, so it
+   * does not need the tools of a full JDK.
+   */
+  private static void writeHeartbeat(String heartbeatFile) {
+    if (heartbeatFile == null) {
+      return;
+    }
+    File heartbeat = new File(heartbeatFile);
+    File dumpRequest = ProgressWatchdog.dumpRequestFile(heartbeat);
+    File temp = new File(heartbeatFile + ".tmp");
+    String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    Thread writer = new Thread(() -> {
+      try {
+        while (true) {
+          Files.write(temp.toPath(), (pid + " " + processCpuNanos()).getBytes(StandardCharsets.UTF_8));
+          Files.move(temp.toPath(), heartbeat.toPath(), StandardCopyOption.REPLACE_EXISTING);
+          if (dumpRequest.isFile()) {
+            File dump = new File(new String(Files.readAllBytes(dumpRequest.toPath()), StandardCharsets.UTF_8).trim());
+            writeThreadDump(dump);
+            Files.delete(dumpRequest.toPath());
+          }
+          Thread.sleep(HEARTBEAT_INTERVAL_MILLIS);
+        }
+      } catch (IOException e) {
+        System.err.println("Heartbeat stopped: " + e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "gatlingHeartbeat");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private static long processCpuNanos() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    return os instanceof com.sun.management.OperatingSystemMXBean ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : -1;
+  }
+
+  /**
+   * Writes the stack traces of all threads with their locks, in the layout of jstack, and the deadlocked threads if any.
+   * {@link ThreadInfo#toString()} is not used as it cuts the stack traces at 8 frames.
+   */
+  static void writeThreadDump(File dump) throws IOException {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    File temp = new File(dump.getPath() + ".tmp");
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))) {
+      out.println("Full thread dump of " + ManagementFactory.getRuntimeMXBean().getName());
+      for (ThreadInfo thread : threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported())) {
+        out.println();
+        out.println("\"" + thread.getThreadName() + "\" #" + thread.getThreadId() + " " + thread.getThreadState());
+        StackTraceElement[] stack = thread.getStackTrace();
+        for (int i = 0; i < stack.length; i++) {
+          out.println("\tat " + stack[i]);
+          if (i == 0 && thread.getLockInfo() != null) {
+            out.println("\t- " + (thread.getThreadState() == Thread.State.BLOCKED ? "waiting to lock " : "waiting on ") + thread.getLockInfo()
+              + (thread.getLockOwnerName() != null ? " owned by \"" + thread.getLockOwnerName() + "\" #" + thread.getLockOwnerId() : ""));
+          }
+          for (MonitorInfo monitor : thread.getLockedMonitors()) {
+            if (monitor.getLockedStackDepth() == i) {
+              out.println("\t- locked " + monitor);
+            }
+          }
+        }
+        LockInfo[] synchronizers = thread.getLockedSynchronizers();
+        if (synchronizers.length > 0) {
+          out.println("\tLocked ownable synchronizers:");
+          for (LockInfo synchronizer : synchronizers) {
+            out.println("\t- " + synchronizer);
+          }
+        }
+      }
+      long[] deadlocked = threads.isSynchronizerUsageSupported() ? threads.findDeadlockedThreads() : threads.findMonitorDeadlockedThreads();
+      if (deadlocked != null) {
+        out.println();
+        out.println("Found " + deadlocked.length + " deadlocked threads:");
+        for (ThreadInfo thread : threads.getThreadInfo(deadlocked)) {
+          if (thread != null) {
+            out.println("\"" + thread.getThreadName() + "\" waiting for " + thread.getLockName() + " owned by \"" + thread.getLockOwnerName() + "\"");
+          }
+        }
+      }
+    }
+    Files.move(temp.toPath(), dump.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
   private static void runMain(String mainClassName, List<String> args) throws Exception {
     ClassLoader cl = Thread.currentThread().getContextClassLoader();
     Class<?> mainClass = cl.loadClass(mainClassName);
@@ -50,7 +182,7 @@ public class MainWithArgsInFile {
     mainMethod.invoke(null, new Object[]{argsArray});
   }
 
-  private static List<String> readArgFile(File argFile) throws IOException {
+  static List<String> readArgFile(File argFile) throws IOException {
     ArrayList<String> args = new ArrayList<>();
     try (
       final FileReader fr = new FileReader(argFile);
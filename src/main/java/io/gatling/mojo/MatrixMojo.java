@@ -0,0 +1,233 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.toolchain.MisconfiguredToolchainException;
+import org.apache.maven.toolchain.Toolchain;
+import org.apache.maven.toolchain.ToolchainManagerPrivate;
+import org.apache.maven.toolchain.ToolchainPrivate;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static io.gatling.mojo.MojoConstants.JVM_STATS_FILE_PROPERTY;
+
+/**
+ * Mojo to compare JVM and garbage collector settings of the load generator.
+ * <p>
+ * The simulations run once per profile of {@literal jvmProfiles}, each with its JVM arguments and optionally its own
+ * JDK toolchain. The CPU time and garbage collection pauses of the Gatling JVMs, the achieved throughput and the
+ * response time percentiles of each profile are written to {@literal reportFile}.
+ */
+@Mojo(name = "matrix", requiresDependencyResolution = ResolutionScope.TEST)
+public class MatrixMojo extends GatlingMojo {
+
+  /**
+   * JVM profiles to run the simulations with, in order.
+   */
+  @Parameter(required = true)
+  private List<JvmProfile> jvmProfiles;
+
+  /**
+   * Tab-separated comparison of the profiles.
+   */
+  @Parameter(property = "gatling.matrix.reportFile", defaultValue = "${project.build.directory}/gatling-matrix.tsv")
+  private File reportFile;
+
+  @Component
+  private ToolchainManagerPrivate toolchainManagerPrivate;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping events-gatling-maven-plugin");
+      return;
+    }
+    Set<String> names = new HashSet<>();
+    for (JvmProfile profile : jvmProfiles) {
+      if (profile.getName() == null || !names.add(profile.getName())) {
+        throw new MojoExecutionException("Each JVM profile needs a unique name, got " + profile.getName());
+      }
+    }
+
+    List<Row> rows = new ArrayList<>();
+    try {
+      for (JvmProfile profile : jvmProfiles) {
+        getLog().info("Running JVM profile " + profile);
+        rows.add(runProfile(profile));
+      }
+    } finally {
+      writeReport(rows);
+    }
+    logTable(rows);
+  }
+
+  private Row runProfile(JvmProfile profile) throws MojoExecutionException, MojoFailureException {
+    Toolchain toolchain = toolchain(profile);
+    Row row = new Row(profile.getName(), toolchain != null ? toolchain.findTool("java") : "build");
+    Set<File> before = new HashSet<>(Arrays.asList(runDirectories()));
+    File statsFile;
+    try {
+      statsFile = File.createTempFile("gatling-jvm-stats-", ".tsv");
+      Files.delete(statsFile.toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not create the JVM statistics file", e);
+    }
+    try {
+      executeWithJvmProfile(profile, toolchain, Collections.singletonMap(JVM_STATS_FILE_PROPERTY, statsFile.getAbsolutePath()));
+    } catch (MojoFailureException e) {
+      // the profiles are compared on the same load, failed assertions do not stop the comparison
+      if (!(e.getCause() instanceof GatlingSimulationAssertionsFailedException)) {
+        throw e;
+      }
+      row.assertionsFailed = true;
+    }
+    try {
+      row.jvmStats = JvmStats.read(statsFile);
+      Files.deleteIfExists(statsFile.toPath());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not read the JVM statistics of profile " + profile.getName() + " in " + statsFile, e);
+    }
+    for (File directory : runDirectories()) {
+      if (!before.contains(directory) && SimulationLogs.hasSimulationLog(directory)) {
+        row.runDirectories.add(directory.getName());
+        aggregate(row, directory);
+      }
+    }
+    return row;
+  }
+
+  /**
+   * @return the first JDK toolchain meeting the requirements of the profile, null for the toolchain of the build
+   */
+  private Toolchain toolchain(JvmProfile profile) throws MojoExecutionException {
+    if (!profile.hasJdkRequirements()) {
+      return null;
+    }
+    Map<String, String> requirements = new LinkedHashMap<>();
+    if (profile.getJdkVersion() != null) {
+      requirements.put("version", profile.getJdkVersion());
+    }
+    if (profile.getJdkVendor() != null) {
+      requirements.put("vendor", profile.getJdkVendor());
+    }
+    try {
+      for (ToolchainPrivate toolchain : toolchainManagerPrivate.getToolchainsForType("jdk", session)) {
+        if (toolchain.matchesRequirements(requirements)) {
+          return toolchain;
+        }
+      }
+    } catch (MisconfiguredToolchainException e) {
+      throw new MojoExecutionException("Could not read the JDK toolchains", e);
+    }
+    throw new MojoExecutionException("No JDK toolchain in toolchains.xml matches " + requirements + " of JVM profile " + profile.getName());
+  }
+
+  private void aggregate(Row row, File runDirectory) throws MojoExecutionException {
+    RunAggregates aggregates;
+    try {
+      aggregates = RunAggregates.ofRun(runDirectory);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new MojoExecutionException("Could not read the results of " + runDirectory, e);
+    }
+    for (RunAggregates.RequestStats stats : aggregates.getRequests().values()) {
+      row.histogram.add(stats.getHistogram());
+      row.failures += stats.getFailures();
+    }
+    row.durationSeconds += aggregates.getDurationSeconds();
+  }
+
+  private File[] runDirectories() {
+    File[] directories = resultsFolder.listFiles(File::isDirectory);
+    return directories != null ? directories : new File[0];
+  }
+
+  private void writeReport(List<Row> rows) throws MojoExecutionException {
+    File parent = reportFile.getParentFile();
+    try {
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Could not create " + parent);
+      }
+      try (BufferedWriter writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+        writer.write("profile\tjava\tjvms\tcpuSeconds\tcpuPercent\tgcCount\tgcPauseMillis\tgcMaxPauseMillis\trequests\tko\tthroughput\tp50\tp95\tp99\tmax\tassertions\trunDirectories");
+        writer.newLine();
+        for (Row row : rows) {
+          JvmStats stats = row.jvmStats;
+          LatencyHistogram histogram = row.histogram;
+          writer.write(String.format(Locale.ROOT, "%s\t%s\t%d\t%.3f\t%.2f\t%d\t%d\t%d\t%d\t%d\t%.2f\t%d\t%d\t%d\t%d\t%s\t%s",
+            row.profile, row.java, stats.getJvms(), stats.getCpuSeconds(), stats.getCpuPercent(), stats.getGcCount(), stats.getGcPauseMillis(),
+            stats.getGcMaxPauseMillis(), histogram.getTotalCount(), row.failures, row.throughput(), histogram.getValueAtPercentile(50),
+            histogram.getValueAtPercentile(95), histogram.getValueAtPercentile(99), histogram.getMax(), row.assertionsFailed ? "failed" : "ok",
+            String.join(",", row.runDirectories)));
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not write matrix report " + reportFile, e);
+    }
+  }
+
+  private void logTable(List<Row> rows) {
+    getLog().info(String.format(Locale.ROOT, "%-20s %8s %6s %6s %8s %8s %9s %7s %7s %7s %7s",
+      "profile", "cpu s", "cpu%", "gc", "pause ms", "max ms", "rps", "p50", "p95", "p99", "max"));
+    for (Row row : rows) {
+      JvmStats stats = row.jvmStats;
+      LatencyHistogram histogram = row.histogram;
+      getLog().info(String.format(Locale.ROOT, "%-20s %8.1f %6.1f %6d %8d %8d %9.2f %7d %7d %7d %7d",
+        row.profile, stats.getCpuSeconds(), stats.getCpuPercent(), stats.getGcCount(), stats.getGcPauseMillis(), stats.getGcMaxPauseMillis(),
+        row.throughput(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(95), histogram.getValueAtPercentile(99), histogram.getMax()));
+    }
+    getLog().info("JVM profile comparison written to " + reportFile);
+  }
+
+  private static final class Row {
+    private final String profile;
+    private final String java;
+    private final List<String> runDirectories = new ArrayList<>();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private JvmStats jvmStats;
+    private long failures;
+    private double durationSeconds;
+    private boolean assertionsFailed;
+
+    private Row(String profile, String java) {
+      this.profile = profile;
+      this.java = java;
+    }
+
+    private double throughput() {
+      return durationSeconds > 0 ? histogram.getTotalCount() / durationSeconds : 0;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Mojo to merge the results of several runs, for instance of Gatling processes on several machines, into one run
+ * directory and generate its reports.
+ */
+@Mojo(name = "merge", requiresDependencyResolution = ResolutionScope.TEST)
+public class MergeMojo extends GatlingMojo {
+
+  /**
+   * Run directories to merge, relative to {@literal resultsFolder} or absolute.
+   */
+  @Parameter(property = "gatling.merge.runDirectories", required = true)
+  private List<String> runDirectories;
+
+  /**
+   * Prefix of the merged run directory, followed by a timestamp.
+   */
+  @Parameter(property = "gatling.merge.runName", defaultValue = "merged")
+  private String runName;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("Skipping the merge goal of events-gatling-maven-plugin");
+      return;
+    }
+    List<File> simulationLogs = new ArrayList<>();
+    for (String runDirectory : runDirectories) {
+      File directory = new File(runDirectory).isAbsolute() ? new File(runDirectory) : new File(resultsFolder, runDirectory);
+      // only the simulation log: run directories also hold other logs, such as the console output of the run
+      File simulationLog = SimulationLogs.simulationLog(directory);
+      if (!simulationLog.isFile()) {
+        throw new MojoExecutionException("No " + SimulationLogs.SIMULATION_LOG + " found in run directory " + directory);
+      }
+      simulationLogs.add(simulationLog);
+    }
+
+    String mergedName = runName + "-" + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
+    File merged = new File(resultsFolder, mergedName);
+    try {
+      long records = SimulationLogMerger.merge(simulationLogs, SimulationLogs.simulationLog(merged),
+        "merged from " + runDirectories.size() + " runs");
+      getLog().info("Merged " + records + " records of " + simulationLogs.size() + " logs into " + merged);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not merge simulation logs", e);
+    }
+
+    try {
+      executeReportsOnly(mergedName);
+    } finally {
+      addToLastRun(mergedName);
+    }
+  }
+
+  /**
+   * The merged directory exists before the reports run, so it is not listed as a new directory: add it,
+   * so the verify goal checks the merged results.
+   */
+  private void addToLastRun(String mergedName) throws MojoExecutionException {
+    Path lastRun = resultsFolder.toPath().resolve(LAST_RUN_FILE);
+    try {
+      Files.write(lastRun, Collections.singletonList(mergedName), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not record merged run in " + lastRun, e);
+    }
+  }
+}
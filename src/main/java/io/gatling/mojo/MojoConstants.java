@@ -33,6 +33,12 @@ public final class MojoConstants {
 
     // Gatling constants
     public static final String GATLING_MAIN_CLASS = "io.gatling.app.Gatling";
+    public static final String STOP_SIGNAL_FILE_PROPERTY = "gatling.mojo.stopSignalFile";
+    public static final int STOPPED_EXIT_CODE = 143;
+    public static final String HEARTBEAT_FILE_PROPERTY = "gatling.mojo.heartbeatFile";
+    public static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+    public static final String JVM_STATS_FILE_PROPERTY = "gatling.mojo.jvmStatsFile";
+    public static final String WARM_UP_DURATION_PROPERTY = "gatling.warmUpDurationInSeconds";
     public static final List<String> GATLING_JVM_ARGS = asList(
             "-server",
             "-Xmx1G",
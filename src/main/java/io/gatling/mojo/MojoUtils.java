@@ -21,9 +21,12 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -53,6 +56,11 @@ public final class MojoUtils {
       if (m.find()) {
         return URLDecoder.decode(m.group(1), "UTF-8");
       }
+      // loaded from a classes directory, e.g. when running from the IDE or the benchmark harness
+      String url = location.toString();
+      if (url.startsWith("file:") && url.endsWith(classLocation)) {
+        return new File(new URL(url.substring(0, url.length() - classLocation.length())).toURI()).getPath();
+      }
       throw new ClassNotFoundException("Cannot parse location of '" + location + "'.  Probably not loaded from a Jar");
     }
     throw new ClassNotFoundException("Cannot find class '" + c.getName() + " using the classloader");
@@ -109,4 +117,45 @@ public final class MojoUtils {
 
     return new URL(file.toURI().toASCIIString());
   }
+
+  /**
+   * @return the system properties set by the -D arguments among the given JVM arguments, unquoted
+   */
+  static Map<String, String> systemProperties(List<String> jvmArgs) {
+    Map<String, String> properties = new LinkedHashMap<>();
+    for (String jvmArg : jvmArgs) {
+      if (jvmArg.startsWith("-D")) {
+        int separator = jvmArg.indexOf('=');
+        String name = separator < 0 ? jvmArg.substring(2) : jvmArg.substring(2, separator);
+        properties.put(name, separator < 0 ? "" : unquote(jvmArg.substring(separator + 1)));
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * @return true when the JVM argument selects a garbage collector, such as -XX:+UseG1GC
+   */
+  static boolean isCollectorSelection(String jvmArg) {
+    return jvmArg.startsWith("-XX:+Use") && jvmArg.endsWith("GC");
+  }
+
+  /**
+   * @return the JVM arguments without the garbage collector selection and the options of that collector, such as
+   * -XX:+ParallelRefProcEnabled and the G1 ones of the defaults, which do not apply to another collector
+   */
+  static List<String> withoutCollectorArgs(List<String> jvmArgs) {
+    List<String> result = new ArrayList<>();
+    for (String jvmArg : jvmArgs) {
+      boolean collectorOption = jvmArg.startsWith("-XX:") && (jvmArg.contains("G1") || jvmArg.endsWith("ParallelRefProcEnabled"));
+      if (!isCollectorSelection(jvmArg) && !collectorOption) {
+        result.add(jvmArg);
+      }
+    }
+    return result;
+  }
+
+  private static String unquote(String value) {
+    return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+  }
 }
@@ -0,0 +1,236 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static io.gatling.mojo.MojoConstants.HEARTBEAT_INTERVAL_MILLIS;
+
+/**
+ * Aborts a forked Gatling run that stopped making progress, after writing a thread dump of the forked JVM into its
+ * run directory.
+ * <p>
+ * Once the simulation.log of the run exists, only its growth counts as progress: Gatling keeps printing its console
+ * summary and using some CPU while all virtual users are stuck on a dead connection pool or a deadlock. Before that,
+ * while the simulation is loaded and its feeders are read, any output or CPU time of the forked JVM counts as progress.
+ */
+final class ProgressWatchdog implements Closeable {
+
+  static final String THREAD_DUMP_PREFIX = "thread-dump-";
+  private static final long DUMP_TIMEOUT_MILLIS = 10000;
+
+  private final String simulation;
+  private final Supplier<File> runDirectory;
+  private final File fallbackFolder;
+  private final File heartbeatFile;
+  private final LongSupplier outputBytes;
+  private final File jcmd;
+  private final SchedulerExceptionHandler handler;
+  private final long timeoutMillis;
+  private final Log log;
+
+  private ScheduledExecutorService executor;
+  private File directory;
+  private long lastProgressMillis = -1;
+  private long lastLogLength = -1;
+  private long lastOutputBytes = -1;
+  private long lastCpuNanos = -1;
+  private long cpuNanosSinceProgress;
+  private boolean stalled;
+
+  ProgressWatchdog(String simulation, Supplier<File> runDirectory, File fallbackFolder, File heartbeatFile, LongSupplier outputBytes,
+                   File jcmd, SchedulerExceptionHandler handler, long timeoutMillis, Log log) {
+    this.simulation = simulation;
+    this.runDirectory = runDirectory;
+    this.fallbackFolder = fallbackFolder;
+    this.heartbeatFile = heartbeatFile;
+    this.outputBytes = outputBytes;
+    this.jcmd = jcmd;
+    this.handler = handler;
+    this.timeoutMillis = timeoutMillis;
+    this.log = log;
+  }
+
+  /**
+   * Watches the given fork, which must not have been started yet, until the watchdog is closed.
+   *
+   * @param runDirectory supplies the run directory of the simulation, or null as long as it does not exist
+   * @param fallbackFolder folder for the thread dump when there is no run directory
+   */
+  static ProgressWatchdog watch(Fork fork, String simulation, Supplier<File> runDirectory, File fallbackFolder, long timeoutMillis, Log log) throws IOException {
+    File heartbeatFile = File.createTempFile("gatling-heartbeat-", ".txt");
+    if (!heartbeatFile.delete()) {
+      throw new IOException("Could not prepare heartbeat file " + heartbeatFile);
+    }
+    heartbeatFile.deleteOnExit();
+    fork.setHeartbeatFile(heartbeatFile);
+    ProgressWatchdog watchdog = new ProgressWatchdog(simulation, runDirectory, fallbackFolder, heartbeatFile, fork::getOutputBytes,
+      fork.javaTool("jcmd"), fork.getSchedulerExceptionHandler(), timeoutMillis, log);
+    watchdog.start();
+    return watchdog;
+  }
+
+  static File dumpRequestFile(File heartbeatFile) {
+    return new File(heartbeatFile.getPath() + ".dump");
+  }
+
+  private void start() {
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "gatlingProgressWatchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(100, Math.min(HEARTBEAT_INTERVAL_MILLIS, timeoutMillis / 4));
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        if (check(System.currentTimeMillis())) {
+          executor.shutdown();
+        }
+      } catch (RuntimeException e) {
+        log.warn("Progress watchdog of " + simulation + " failed: " + e.getMessage());
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return true when the run stalled and was aborted, the watchdog does not check it again afterwards
+   */
+  synchronized boolean check(long nowMillis) {
+    if (stalled) {
+      return true;
+    }
+    if (directory == null) {
+      directory = runDirectory.get();
+    }
+    long logLength = directory != null ? SimulationLogs.simulationLog(directory).length() : 0;
+    long output = outputBytes.getAsLong();
+    long cpuNanos = cpuNanos();
+    boolean progress;
+    if (logLength > 0) {
+      progress = logLength != lastLogLength;
+    } else {
+      progress = output != lastOutputBytes || (cpuNanos >= 0 && cpuNanos != lastCpuNanos);
+    }
+    if (lastCpuNanos >= 0 && cpuNanos >= lastCpuNanos) {
+      cpuNanosSinceProgress += cpuNanos - lastCpuNanos;
+    }
+    lastLogLength = logLength;
+    lastOutputBytes = output;
+    lastCpuNanos = cpuNanos;
+
+    if (progress || lastProgressMillis < 0) {
+      lastProgressMillis = nowMillis;
+      cpuNanosSinceProgress = 0;
+      return false;
+    }
+    if (nowMillis - lastProgressMillis < timeoutMillis) {
+      return false;
+    }
+
+    stalled = true;
+    String message = String.format(Locale.ROOT, "No progress of %s for %d s (simulation.log %s, %.1f s of CPU time used meanwhile)",
+      simulation, (nowMillis - lastProgressMillis) / 1000, logLength > 0 ? logLength + " bytes" : "not written yet", cpuNanosSinceProgress / 1e9);
+    log.error(message + ", aborting it.");
+    File dump = new File(directory != null ? directory : fallbackFolder,
+      THREAD_DUMP_PREFIX + (directory != null ? "" : simulation + "-") + new SimpleDateFormat("yyyyMMddHHmmss", Locale.ROOT).format(new Date(nowMillis)) + ".txt");
+    if (writeThreadDump(dump)) {
+      log.error("Thread dump of the forked process written to " + dump);
+    }
+    handler.abort(message);
+    return true;
+  }
+
+  /**
+   * Asks the forked JVM to write its thread dump through its heartbeat thread, and falls back to jcmd when it does not.
+   */
+  private boolean writeThreadDump(File dump) {
+    File request = dumpRequestFile(heartbeatFile);
+    try {
+      Files.write(request.toPath(), dump.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+      long deadline = System.currentTimeMillis() + DUMP_TIMEOUT_MILLIS;
+      while (!dump.isFile() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(100);
+      }
+      if (dump.isFile()) {
+        return true;
+      }
+      Files.deleteIfExists(request.toPath());
+      String pid = heartbeatFile.isFile() ? heartbeat()[0] : null;
+      if (pid == null || !jcmd.isFile()) {
+        log.warn("The forked process did not write a thread dump and jcmd is not available.");
+        return false;
+      }
+      Process process = new ProcessBuilder(jcmd.getPath(), pid, "Thread.print", "-l")
+        .redirectErrorStream(true)
+        .redirectOutput(dump)
+        .start();
+      if (!process.waitFor(DUMP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        process.destroyForcibly();
+        log.warn("jcmd did not write the thread dump of the forked process in time.");
+        return false;
+      }
+      return true;
+    } catch (IOException e) {
+      log.warn("Could not write the thread dump of the forked process: " + e.getMessage());
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private long cpuNanos() {
+    try {
+      String[] heartbeat = heartbeat();
+      return heartbeat.length > 1 ? Long.parseLong(heartbeat[1]) : -1;
+    } catch (IOException | NumberFormatException e) {
+      // not written yet, or the fork does not run with a heartbeat
+      return -1;
+    }
+  }
+
+  /**
+   * @return the process id and the CPU time in nanoseconds written by the forked JVM
+   */
+  private String[] heartbeat() throws IOException {
+    return new String(Files.readAllBytes(heartbeatFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    if (heartbeatFile.exists() && !heartbeatFile.delete()) {
+      log.debug("Could not delete heartbeat file " + heartbeatFile);
+    }
+  }
+}
@@ -24,8 +24,19 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.toolchain.Toolchain;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.gatling.mojo.MojoConstants.GATLING_JVM_ARGS;
 import static io.gatling.mojo.MojoConstants.RECORDER_MAIN_CLASS;
@@ -36,6 +47,8 @@ import static io.gatling.mojo.MojoConstants.RECORDER_MAIN_CLASS;
 @Mojo(name = "recorder", defaultPhase = LifecyclePhase.INTEGRATION_TEST, requiresDependencyResolution = ResolutionScope.TEST)
 public class RecorderMojo extends AbstractGatlingMojo {
 
+  private static final String DEFAULT_CLASS_NAME = "RecordedSimulation";
+
   /**
    * Local port used by Gatling Proxy for HTTP.
    */
@@ -96,14 +109,80 @@ public class RecorderMojo extends AbstractGatlingMojo {
   @Parameter(property = "gatling.recorder.followRedirect", alias = "fr")
   private Boolean followRedirect;
 
+  /**
+   * HAR file to convert without user interface. The file is streamed and split into chunks of
+   * {@literal harChunkSize} entries, each converted into its own simulation.
+   */
+  @Parameter(property = "gatling.recorder.harFile", alias = "hf")
+  private File harFile;
+
+  /**
+   * Maximum number of HAR entries per generated simulation.
+   */
+  @Parameter(property = "gatling.recorder.harChunkSize", defaultValue = "1000")
+  private int harChunkSize;
+
+  /**
+   * Regular expressions of urls, without query, of static resources to leave out of a HAR conversion.
+   * Defaults to the default black list of the recorder: scripts, stylesheets, images and fonts.
+   */
+  @Parameter(property = "gatling.recorder.harStaticResources")
+  private List<String> harStaticResources;
+
+  /**
+   * Hosts, including their sub domains, to leave out of a HAR conversion.
+   */
+  @Parameter(property = "gatling.recorder.harIgnoredHosts")
+  private List<String> harIgnoredHosts;
+
+  /**
+   * Number of recent HAR entries to remember to drop duplicate entries.
+   */
+  @Parameter(property = "gatling.recorder.harDeduplicationWindow", defaultValue = "10000")
+  private int harDeduplicationWindow;
+
+  /**
+   * Folder to write the HAR chunks to.
+   */
+  @Parameter(property = "gatling.recorder.harChunksFolder", defaultValue = "${project.build.directory}/gatling-har")
+  private File harChunksFolder;
+
+  /**
+   * Folder of HAR files to convert without user interface, each one like {@literal harFile}.
+   * The class names are derived from the file names, {@literal className} is ignored.
+   */
+  @Parameter(property = "gatling.recorder.harFolder")
+  private File harFolder;
+
+  /**
+   * Maximum number of HAR files of {@literal harFolder} converted at the same time, each in its own forked JVM.
+   */
+  @Parameter(property = "gatling.recorder.concurrentConversions", defaultValue = "2")
+  private int concurrentConversions;
+
+  /**
+   * File to store the content hashes of the converted HAR files of {@literal harFolder}. A file with an unchanged hash
+   * is not converted again as long as its simulation exists.
+   */
+  @Parameter(property = "gatling.recorder.harHashesFile", defaultValue = "${project.build.directory}/gatling-har-hashes.properties")
+  private File harHashesFile;
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     try {
       List<String> testClasspath = buildTestClasspath();
-      List<String> recorderArgs = recorderArgs();
       Toolchain toolchain = toolchainManager.getToolchainFromBuildContext("jdk", session);
-      Fork forkedRecorder = new Fork(RECORDER_MAIN_CLASS, testClasspath, GATLING_JVM_ARGS, recorderArgs, toolchain, false, getLog());
-      forkedRecorder.run();
+      if (harFolder != null) {
+        convertHarFolder(testClasspath, toolchain);
+      } else if (harFile != null) {
+        if (!harFile.isFile()) {
+          throw new MojoExecutionException("HAR file " + harFile + " does not exist");
+        }
+        convertHar(harFile, className != null ? className : DEFAULT_CLASS_NAME, testClasspath, toolchain);
+      } else {
+        Fork forkedRecorder = new Fork(RECORDER_MAIN_CLASS, testClasspath, GATLING_JVM_ARGS, recorderArgs(), toolchain, false, getLog());
+        forkedRecorder.run();
+      }
     } catch (MojoExecutionException | MojoFailureException e) {
       throw e;
     } catch (Exception e) {
@@ -111,7 +190,137 @@ public class RecorderMojo extends AbstractGatlingMojo {
     }
   }
 
+  private void convertHarFolder(List<String> testClasspath, Toolchain toolchain) throws Exception {
+    File[] harFiles = harFolder.listFiles(file -> file.isFile() && file.getName().toLowerCase(Locale.ROOT).endsWith(".har"));
+    if (harFiles == null) {
+      throw new MojoExecutionException("HAR folder " + harFolder + " does not exist");
+    }
+    Arrays.sort(harFiles);
+
+    Properties hashes = new Properties();
+    if (harHashesFile.isFile()) {
+      try (InputStream in = Files.newInputStream(harHashesFile.toPath())) {
+        hashes.load(in);
+      }
+    }
+
+    Set<String> classNames = new HashSet<>();
+    Map<File, String> conversions = new LinkedHashMap<>();
+    Map<File, String> contentHashes = new HashMap<>();
+    for (File file : harFiles) {
+      String fileClassName = HarSplitter.classNameFor(file.getName());
+      for (int i = 2; !classNames.add(fileClassName); i++) {
+        fileClassName = HarSplitter.classNameFor(file.getName()) + i;
+      }
+      String contentHash = contentHash(file);
+      if (contentHash.equals(hashes.getProperty(file.getName())) && simulationExists(fileClassName)) {
+        getLog().info("Skipping " + file.getName() + ": " + fileClassName + " is already generated from the same content.");
+      } else {
+        conversions.put(file, fileClassName);
+        contentHashes.put(file, contentHash);
+      }
+    }
+    if (conversions.isEmpty()) {
+      return;
+    }
+
+    int threads = Math.max(1, Math.min(concurrentConversions, conversions.size()));
+    getLog().info("Converting " + conversions.size() + " HAR file(s) with " + threads + " concurrent recorder(s).");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Map<File, Future<Void>> runs = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<File, String> conversion : conversions.entrySet()) {
+        runs.put(conversion.getKey(), executor.submit(() -> {
+          convertHar(conversion.getKey(), conversion.getValue(), testClasspath, toolchain);
+          return null;
+        }));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    List<String> failures = new ArrayList<>();
+    for (Map.Entry<File, Future<Void>> run : runs.entrySet()) {
+      try {
+        run.getValue().get();
+        hashes.setProperty(run.getKey().getName(), contentHashes.get(run.getKey()));
+      } catch (ExecutionException e) {
+        getLog().error("Conversion of " + run.getKey() + " failed", e.getCause());
+        failures.add(run.getKey().getName());
+      }
+    }
+
+    File parent = harHashesFile.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new MojoExecutionException("Could not create " + parent);
+    }
+    try (OutputStream out = Files.newOutputStream(harHashesFile.toPath())) {
+      hashes.store(out, "Content hashes of converted HAR files, written by the gatling-maven-plugin");
+    }
+    if (!failures.isEmpty()) {
+      throw new MojoFailureException("Conversion failed for " + failures);
+    }
+  }
+
+  private boolean simulationExists(String simulationClassName) {
+    File packageFolder = new File(simulationsFolder, packageName == null ? "" : packageName.replace('.', File.separatorChar));
+    return new File(packageFolder, simulationClassName + ".scala").isFile()
+      || new File(packageFolder, simulationClassName + "Part1.scala").isFile();
+  }
+
+  /**
+   * Hash of the content of the file and of the settings that change the generated simulation.
+   */
+  private String contentHash(File file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+      byte[] buffer = new byte[64 * 1024];
+      while (in.read(buffer) != -1) {
+        // only digesting
+      }
+    }
+    String settings = harChunkSize + "|" + harStaticResources + "|" + harIgnoredHosts + "|" + harDeduplicationWindow + "|" + packageName + "|" + encoding + "|" + followRedirect;
+    digest.update(settings.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private void convertHar(File harFile, String baseName, List<String> testClasspath, Toolchain toolchain) throws Exception {
+    HarSplitter splitter = new HarSplitter(
+      harStaticResources == null || harStaticResources.isEmpty() ? HarSplitter.DEFAULT_STATIC_RESOURCES : harStaticResources,
+      harIgnoredHosts == null ? Collections.<String>emptyList() : harIgnoredHosts,
+      harChunkSize,
+      harDeduplicationWindow);
+    List<File> chunks = splitter.split(harFile, harChunksFolder, baseName);
+    getLog().info("Read " + splitter.getEntries() + " entries from " + harFile + ", dropped "
+      + splitter.getStaticResourceEntries() + " static resources, "
+      + splitter.getIgnoredHostEntries() + " for ignored hosts and "
+      + splitter.getDuplicateEntries() + " duplicates, converting " + chunks.size() + " chunk(s).");
+
+    for (int i = 0; i < chunks.size(); i++) {
+      String chunkClassName = chunks.size() == 1 ? baseName : baseName + "Part" + (i + 1);
+      List<String> arguments = recorderArgs(chunkClassName);
+      addArg(arguments, "m", "Har");
+      addArg(arguments, "hf", chunks.get(i).getCanonicalPath());
+      addArg(arguments, "cli", true);
+      Fork forkedRecorder = new Fork(RECORDER_MAIN_CLASS, testClasspath, GATLING_JVM_ARGS, arguments, toolchain, false, getLog());
+      forkedRecorder.run();
+    }
+  }
+
   private List<String> recorderArgs() throws Exception {
+    return recorderArgs(className);
+  }
+
+  private List<String> recorderArgs(String className) throws Exception {
     List<String> arguments = new ArrayList<>();
     addArg(arguments, "lp", localPort);
     addArg(arguments, "ph", proxyHost);
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-request aggregates of a run, collected with one streaming pass over its simulation.log.
+ */
+final class RunAggregates implements SimulationLogParser.Listener {
+
+  private String simulationClassName;
+  private String description;
+  private long runStart = Long.MAX_VALUE;
+  private long runEnd = Long.MIN_VALUE;
+  private final Map<String, RequestStats> requests = new TreeMap<>();
+
+  static RunAggregates of(File simulationLog) throws IOException {
+    RunAggregates aggregates = new RunAggregates();
+    SimulationLogParser.parse(simulationLog, aggregates);
+    return aggregates;
+  }
+
+  static RunAggregates of(SimulationLogIndex index) {
+    RunAggregates aggregates = new RunAggregates();
+    aggregates.simulationClassName = index.getSimulationClassName();
+    aggregates.description = index.getDescription();
+    aggregates.runStart = index.getRunStart();
+    for (SimulationLogIndex.Series series : index.getSeries()) {
+      if (!series.isGroup()) {
+        aggregates.runStart = Math.min(aggregates.runStart, series.getFirstStart());
+        aggregates.runEnd = Math.max(aggregates.runEnd, series.getLastEnd());
+        aggregates.requests.put(series.getPath(), series.stats());
+      }
+    }
+    return aggregates;
+  }
+
+  /**
+   * @return the aggregates of the run, from its index when it is current, otherwise from its complete simulation.log
+   */
+  static RunAggregates ofRun(File runDirectory) throws IOException {
+    SimulationLogIndex index = SimulationLogIndex.readIfCurrent(runDirectory);
+    return index != null ? of(index) : of(SimulationLogs.simulationLog(runDirectory));
+  }
+
+  @Override
+  public void run(String simulationClassName, String simulationId, long start, String description) {
+    this.simulationClassName = simulationClassName;
+    this.description = description;
+    runStart = Math.min(runStart, start);
+  }
+
+  @Override
+  public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+    runStart = Math.min(runStart, start);
+    runEnd = Math.max(runEnd, end);
+    requests.computeIfAbsent(SimulationLogParser.path(groups, name), path -> new RequestStats()).record(end - start, ok);
+  }
+
+  String getSimulationClassName() {
+    return simulationClassName;
+  }
+
+  String getDescription() {
+    return description;
+  }
+
+  long getRunStart() {
+    return runStart == Long.MAX_VALUE ? 0 : runStart;
+  }
+
+  double getDurationSeconds() {
+    return runEnd > runStart ? (runEnd - runStart) / 1000.0 : 0;
+  }
+
+  /**
+   * @return the statistics by request path, sorted by path
+   */
+  Map<String, RequestStats> getRequests() {
+    return requests;
+  }
+
+  static final class RequestStats {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long failures;
+
+    void record(long responseTime, boolean ok) {
+      histogram.record(responseTime);
+      if (!ok) {
+        failures++;
+      }
+    }
+
+    void addFailures(long count) {
+      failures += count;
+    }
+
+    LatencyHistogram getHistogram() {
+      return histogram;
+    }
+
+    long getCount() {
+      return histogram.getTotalCount();
+    }
+
+    long getFailures() {
+      return failures;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Disposable class loader of the compiled simulations of one run, on top of the loader of the framework classes.
+ * <p>
+ * The classes found in its own folders are loaded child-first, so every run gets the freshly compiled version even
+ * when the same folders are on the classpath of the parent, which needs them for the resources Gatling loads through
+ * its own class loader, like gatling.conf. All other classes and the resources come from the parent. For in-process
+ * runs it holds the whole test classpath, on top of the platform class loader.
+ */
+final class SimulationClassLoader extends URLClassLoader {
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  SimulationClassLoader(URL[] folders, ClassLoader parent) {
+    super(folders, parent);
+  }
+
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded == null && findResource(name.replace('.', '/') + ".class") != null) {
+        loaded = findClass(name);
+      }
+      if (loaded == null) {
+        return super.loadClass(name, resolve);
+      }
+      if (resolve) {
+        resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+}
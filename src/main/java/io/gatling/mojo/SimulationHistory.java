@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * Recorded wall times of simulation runs, used to schedule the longest simulations first.
+ * <p>
+ * The stored duration is the average of the previous stored duration and the last run, so one slow run
+ * does not reorder the whole suite.
+ */
+class SimulationHistory {
+
+  private final Properties durations = new Properties();
+
+  static SimulationHistory read(File file) throws IOException {
+    SimulationHistory history = new SimulationHistory();
+    if (file.isFile()) {
+      try (InputStream in = Files.newInputStream(file.toPath())) {
+        history.durations.load(in);
+      }
+    }
+    return history;
+  }
+
+  synchronized void write(File file) throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    try (OutputStream out = Files.newOutputStream(file.toPath())) {
+      durations.store(out, "Simulation wall times in milliseconds, written by the gatling-maven-plugin");
+    }
+  }
+
+  synchronized Long durationMillis(String simulation) {
+    String duration = durations.getProperty(simulation);
+    if (duration == null) {
+      return null;
+    }
+    try {
+      return Long.parseLong(duration);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  synchronized void record(String simulation, long durationMillis) {
+    Long previous = durationMillis(simulation);
+    long duration = previous == null ? durationMillis : (previous + durationMillis) / 2;
+    durations.setProperty(simulation, Long.toString(duration));
+  }
+
+  /**
+   * @return the simulations ordered by descending recorded duration. Simulations without history come first,
+   * so an unexpectedly long one does not end up at the tail of the schedule.
+   */
+  List<String> longestFirst(List<String> simulations) {
+    List<String> ordered = new ArrayList<>(simulations);
+    ordered.sort(Comparator.comparingLong((String simulation) -> {
+      Long duration = durationMillis(simulation);
+      return duration == null ? Long.MAX_VALUE : duration;
+    }).reversed());
+    return ordered;
+  }
+
+  /**
+   * Expected total time when the simulations are started in the given order on the given number of slots,
+   * each one on the first slot that becomes free. Simulations without history are not counted.
+   */
+  long expectedMillis(List<String> simulations, int slots) {
+    PriorityQueue<Long> slotEnds = new PriorityQueue<>();
+    for (int i = 0; i < slots; i++) {
+      slotEnds.add(0L);
+    }
+    long end = 0;
+    for (String simulation : simulations) {
+      Long duration = durationMillis(simulation);
+      long slotEnd = slotEnds.poll() + (duration == null ? 0 : duration);
+      end = Math.max(end, slotEnd);
+      slotEnds.add(slotEnd);
+    }
+    return end;
+  }
+}
@@ -0,0 +1,441 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.gatling.mojo.BinaryCodec.limit;
+import static io.gatling.mojo.BinaryCodec.readString;
+import static io.gatling.mojo.BinaryCodec.skip;
+import static io.gatling.mojo.BinaryCodec.writeString;
+
+/**
+ * Binary index of a simulation.log, with the response time histogram and the failures of each request and group
+ * per time bucket of {@value #BUCKET_MILLIS} ms, built with one streaming pass over the log.
+ * <p>
+ * The histograms only store their non-empty buckets, with variable-length numbers, so the index is a small fraction
+ * of the log. It is memory-mapped when read, and the buckets of a series are only decoded when queried. The length
+ * and modification time of the indexed log are recorded, so an index is not used anymore once the log changed.
+ */
+final class SimulationLogIndex {
+
+  static final String INDEX_FILE = "simulation.idx";
+  static final long BUCKET_MILLIS = 10_000;
+
+  private static final int MAGIC = 0x47494458; // GIDX
+  private static final int VERSION = 2;
+
+  private final long logLength;
+  private final long logLastModified;
+  private final long bucketMillis;
+  private final String simulationClassName;
+  private final String description;
+  private final long runStart;
+  private final List<Series> series;
+
+  private SimulationLogIndex(long logLength, long logLastModified, long bucketMillis, String simulationClassName, String description,
+                             long runStart, List<Series> series) {
+    this.logLength = logLength;
+    this.logLastModified = logLastModified;
+    this.bucketMillis = bucketMillis;
+    this.simulationClassName = simulationClassName;
+    this.description = description;
+    this.runStart = runStart;
+    this.series = series;
+  }
+
+  static File indexFile(File runDirectory) {
+    return new File(runDirectory, INDEX_FILE);
+  }
+
+  /**
+   * Indexes the complete simulation.log of the run into its {@value #INDEX_FILE}.
+   */
+  static SimulationLogIndex write(File runDirectory) throws IOException {
+    File simulationLog = SimulationLogs.simulationLog(runDirectory);
+    long logLength = simulationLog.length();
+    long logLastModified = simulationLog.lastModified();
+    Builder builder = new Builder();
+    SimulationLogParser.parse(simulationLog, builder);
+
+    File index = indexFile(runDirectory);
+    File temp = new File(index.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+      builder.write(out, logLength, logLastModified);
+    }
+    Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return read(index);
+  }
+
+  /**
+   * @return the index of the run, or null when it has none, it was written by another plugin version or its
+   * simulation.log changed since it was indexed
+   */
+  static SimulationLogIndex readIfCurrent(File runDirectory) throws IOException {
+    File index = indexFile(runDirectory);
+    if (!index.isFile() || !hasCurrentVersion(index)) {
+      return null;
+    }
+    SimulationLogIndex current = read(index);
+    File simulationLog = SimulationLogs.simulationLog(runDirectory);
+    return current.logLength == simulationLog.length() && current.logLastModified == simulationLog.lastModified() ? current : null;
+  }
+
+  private static boolean hasCurrentVersion(File indexFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile.toPath()))) {
+      return in.readInt() == MAGIC && in.readByte() == VERSION;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  static SimulationLogIndex read(File indexFile) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+        throw new IOException(indexFile + " is not a simulation.log index of this plugin version");
+      }
+      long logLength = buffer.getLong();
+      long logLastModified = buffer.getLong();
+      long bucketMillis = readVarLong(buffer);
+      long runStart = buffer.getLong();
+      String simulationClassName = readString(buffer);
+      String description = readString(buffer);
+      int seriesCount = (int) readVarLong(buffer);
+      List<Series> series = new ArrayList<>(seriesCount);
+      for (int i = 0; i < seriesCount; i++) {
+        boolean group = buffer.get() != 0;
+        String path = readString(buffer);
+        long count = readVarLong(buffer);
+        long failures = readVarLong(buffer);
+        long firstStart = buffer.getLong();
+        long lastEnd = buffer.getLong();
+        int bucketsLength = (int) readVarLong(buffer);
+        ByteBuffer buckets = buffer.slice();
+        limit(buckets, bucketsLength);
+        skip(buffer, bucketsLength);
+        series.add(new Series(group, path, count, failures, firstStart, lastEnd, bucketMillis, buckets));
+      }
+      return new SimulationLogIndex(logLength, logLastModified, bucketMillis, simulationClassName.isEmpty() ? null : simulationClassName,
+        description, runStart, Collections.unmodifiableList(series));
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Corrupt simulation.log index " + indexFile, e);
+    }
+  }
+
+  String getSimulationClassName() {
+    return simulationClassName;
+  }
+
+  String getDescription() {
+    return description;
+  }
+
+  /**
+   * @return the start of the RUN record, {@link Long#MAX_VALUE} when the log has none
+   */
+  long getRunStart() {
+    return runStart;
+  }
+
+  long getBucketMillis() {
+    return bucketMillis;
+  }
+
+  /**
+   * @return the requests and groups, each sorted by path
+   */
+  List<Series> getSeries() {
+    return series;
+  }
+
+  /**
+   * Response times of one request, or the cumulated response times of one group.
+   */
+  static final class Series {
+
+    private final boolean group;
+    private final String path;
+    private final long count;
+    private final long failures;
+    private final long firstStart;
+    private final long lastEnd;
+    private final long bucketMillis;
+    private final ByteBuffer buckets;
+
+    private Series(boolean group, String path, long count, long failures, long firstStart, long lastEnd, long bucketMillis, ByteBuffer buckets) {
+      this.group = group;
+      this.path = path;
+      this.count = count;
+      this.failures = failures;
+      this.firstStart = firstStart;
+      this.lastEnd = lastEnd;
+      this.bucketMillis = bucketMillis;
+      this.buckets = buckets;
+    }
+
+    boolean isGroup() {
+      return group;
+    }
+
+    String getPath() {
+      return path;
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    long getFailures() {
+      return failures;
+    }
+
+    long getFirstStart() {
+      return firstStart;
+    }
+
+    long getLastEnd() {
+      return lastEnd;
+    }
+
+    RunAggregates.RequestStats stats() {
+      return stats(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the merged histogram and failures of the time buckets overlapping [from, to), by start time
+     */
+    RunAggregates.RequestStats stats(long from, long to) {
+      RunAggregates.RequestStats stats = new RunAggregates.RequestStats();
+      ByteBuffer in = buckets.duplicate();
+      int[] indexes = new int[LatencyHistogram.BUCKET_COUNT];
+      long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+      long bucket = 0;
+      while (in.hasRemaining()) {
+        bucket += zigZagDecode(readVarLong(in));
+        long bucketFailures = readVarLong(in);
+        int size = (int) readVarLong(in);
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+          index += (int) readVarLong(in);
+          if (index < 0 || index >= LatencyHistogram.BUCKET_COUNT) {
+            throw new IllegalArgumentException("Histogram bucket " + index + " out of range");
+          }
+          indexes[i] = index;
+          counts[i] = readVarLong(in);
+        }
+        long min = readVarLong(in);
+        long max = readVarLong(in);
+        long sum = readVarLong(in);
+        long bucketStart = bucket * bucketMillis;
+        if (bucketStart + bucketMillis > from && bucketStart < to) {
+          stats.getHistogram().add(indexes, counts, size, min, max, sum);
+          stats.addFailures(bucketFailures);
+        }
+      }
+      return stats;
+    }
+  }
+
+  private static final class Builder implements SimulationLogParser.Listener {
+
+    private final Map<String, SeriesBuilder> requests = new TreeMap<>();
+    private final Map<String, SeriesBuilder> groups = new TreeMap<>();
+    private String simulationClassName;
+    private String description;
+    private long runStart = Long.MAX_VALUE;
+
+    @Override
+    public void run(String simulationClassName, String simulationId, long start, String description) {
+      if (this.simulationClassName == null) {
+        this.simulationClassName = simulationClassName;
+        this.description = description;
+      }
+      runStart = Math.min(runStart, start);
+    }
+
+    @Override
+    public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+      requests.computeIfAbsent(SimulationLogParser.path(groups, name), path -> new SeriesBuilder()).record(start, end, end - start, ok);
+    }
+
+    @Override
+    public void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+      this.groups.computeIfAbsent(SimulationLogParser.path(groups, null), path -> new SeriesBuilder()).record(start, end, cumulatedResponseTime, ok);
+    }
+
+    private void write(DataOutputStream out, long logLength, long logLastModified) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(logLength);
+      out.writeLong(logLastModified);
+      writeVarLong(out, BUCKET_MILLIS);
+      out.writeLong(runStart);
+      writeString(out, simulationClassName);
+      writeString(out, description);
+      writeVarLong(out, requests.size() + groups.size());
+      for (Map.Entry<String, SeriesBuilder> entry : requests.entrySet()) {
+        entry.getValue().write(out, false, entry.getKey());
+      }
+      for (Map.Entry<String, SeriesBuilder> entry : groups.entrySet()) {
+        entry.getValue().write(out, true, entry.getKey());
+      }
+    }
+  }
+
+  private static final class SeriesBuilder {
+
+    private final Map<Long, SparseHistogram> buckets = new TreeMap<>();
+    private long count;
+    private long failures;
+    private long firstStart = Long.MAX_VALUE;
+    private long lastEnd = Long.MIN_VALUE;
+
+    private void record(long start, long end, long responseTime, boolean ok) {
+      buckets.computeIfAbsent(Math.floorDiv(start, BUCKET_MILLIS), bucket -> new SparseHistogram()).record(responseTime, ok);
+      count++;
+      if (!ok) {
+        failures++;
+      }
+      firstStart = Math.min(firstStart, start);
+      lastEnd = Math.max(lastEnd, end);
+    }
+
+    private void write(DataOutputStream out, boolean group, String path) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream bucketsOut = new DataOutputStream(bytes);
+      long previous = 0;
+      for (Map.Entry<Long, SparseHistogram> entry : buckets.entrySet()) {
+        writeVarLong(bucketsOut, zigZagEncode(entry.getKey() - previous));
+        entry.getValue().write(bucketsOut);
+        previous = entry.getKey();
+      }
+      bucketsOut.flush();
+
+      out.writeByte(group ? 1 : 0);
+      writeString(out, path);
+      writeVarLong(out, count);
+      writeVarLong(out, failures);
+      out.writeLong(firstStart);
+      out.writeLong(lastEnd);
+      writeVarLong(out, bytes.size());
+      bytes.writeTo(out);
+    }
+  }
+
+  /**
+   * Histogram of one time bucket while indexing, only holding the non-empty buckets of a {@link LatencyHistogram}.
+   */
+  private static final class SparseHistogram {
+
+    private int[] indexes = new int[8];
+    private long[] counts = new long[8];
+    private int size;
+    private long failures;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long sum;
+
+    private void record(long value, boolean ok) {
+      long clamped = LatencyHistogram.clamp(value);
+      int index = LatencyHistogram.index(clamped);
+      int position = Arrays.binarySearch(indexes, 0, size, index);
+      if (position >= 0) {
+        counts[position]++;
+      } else {
+        position = -position - 1;
+        if (size == indexes.length) {
+          indexes = Arrays.copyOf(indexes, size * 2);
+          counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        System.arraycopy(counts, position, counts, position + 1, size - position);
+        indexes[position] = index;
+        counts[position] = 1;
+        size++;
+      }
+      if (!ok) {
+        failures++;
+      }
+      min = Math.min(min, clamped);
+      max = Math.max(max, clamped);
+      sum += clamped;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      writeVarLong(out, failures);
+      writeVarLong(out, size);
+      int previous = 0;
+      for (int i = 0; i < size; i++) {
+        writeVarLong(out, indexes[i] - previous);
+        writeVarLong(out, counts[i]);
+        previous = indexes[i];
+      }
+      writeVarLong(out, min);
+      writeVarLong(out, max);
+      writeVarLong(out, sum);
+    }
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed variable-length number");
+  }
+
+  private static long zigZagEncode(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long zigZagDecode(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
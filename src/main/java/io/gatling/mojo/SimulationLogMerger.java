@@ -0,0 +1,168 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges the simulation.log files of several runs of a simulation into one, with a streaming k-way merge on the
+ * time the records were written, holding one line per input in memory.
+ * <p>
+ * The merged log starts with a single RUN record, taken from the earliest run, and keeps each distinct ASSERTION
+ * record once, so generating the reports of the merged log evaluates the assertions on the combined results.
+ */
+final class SimulationLogMerger {
+
+  private SimulationLogMerger() {
+  }
+
+  /**
+   * @return the number of records written
+   */
+  static long merge(List<File> inputs, File output, String description) throws IOException {
+    List<BufferedReader> readers = new ArrayList<>();
+    try {
+      PriorityQueue<Head> heads = new PriorityQueue<>();
+      String runLine = null;
+      long runStart = Long.MAX_VALUE;
+      Set<String> assertions = new HashSet<>();
+      List<String> assertionLines = new ArrayList<>();
+      for (int i = 0; i < inputs.size(); i++) {
+        BufferedReader reader = Files.newBufferedReader(inputs.get(i).toPath(), StandardCharsets.UTF_8);
+        readers.add(reader);
+        // the header of each log: its RUN record and the ASSERTION records following it
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith("RUN\t")) {
+            long start = recordTime(line);
+            if (start < runStart) {
+              runStart = start;
+              runLine = line;
+            }
+          } else if (line.startsWith("ASSERTION\t")) {
+            if (assertions.add(line)) {
+              assertionLines.add(line);
+            }
+          } else {
+            heads.add(new Head(line, i));
+            break;
+          }
+        }
+      }
+
+      long records = 0;
+      File parent = output.getParentFile();
+      if (parent != null && !parent.exists() && !parent.mkdirs()) {
+        throw new IOException("Could not create " + parent);
+      }
+      try (BufferedWriter writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+        if (runLine != null) {
+          writer.write(withDescription(runLine, description));
+          writer.newLine();
+          records++;
+        }
+        for (String assertion : assertionLines) {
+          writer.write(assertion);
+          writer.newLine();
+          records++;
+        }
+        while (!heads.isEmpty()) {
+          Head head = heads.poll();
+          if (!head.line.startsWith("RUN\t") && !(head.line.startsWith("ASSERTION\t") && assertions.contains(head.line))) {
+            writer.write(head.line);
+            writer.newLine();
+            records++;
+          }
+          String next = readers.get(head.input).readLine();
+          if (next != null) {
+            heads.add(new Head(next, head.input));
+          }
+        }
+      }
+      return records;
+    } finally {
+      for (BufferedReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private static String withDescription(String runLine, String description) {
+    String[] columns = runLine.split("\t", -1);
+    if (description != null && columns.length > 4) {
+      columns[4] = description.replace('\t', ' ').replace('\n', ' ');
+    }
+    return String.join("\t", columns);
+  }
+
+  /**
+   * @return the time the record was written: the end of requests and groups, the time of user events
+   * and the start of the run, or 0 when it has none
+   */
+  static long recordTime(String line) {
+    long[] time = {0};
+    SimulationLogParser.parseLine(line, new SimulationLogParser.Listener() {
+      @Override
+      public void run(String simulationClassName, String simulationId, long start, String description) {
+        time[0] = start;
+      }
+
+      @Override
+      public void user(String scenario, boolean start, long timestamp) {
+        time[0] = timestamp;
+      }
+
+      @Override
+      public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+        time[0] = end;
+      }
+
+      @Override
+      public void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+        time[0] = end;
+      }
+    });
+    return time[0];
+  }
+
+  private static final class Head implements Comparable<Head> {
+    private final String line;
+    private final int input;
+    private final long time;
+
+    private Head(String line, int input) {
+      this.line = line;
+      this.input = input;
+      this.time = recordTime(line);
+    }
+
+    @Override
+    public int compareTo(Head other) {
+      int byTime = Long.compare(time, other.time);
+      return byTime != 0 ? byTime : Integer.compare(input, other.input);
+    }
+  }
+}
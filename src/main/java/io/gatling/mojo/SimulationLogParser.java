@@ -0,0 +1,171 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming reader of the records of a Gatling simulation.log, one line at a time.
+ * <p>
+ * Supports the record layouts with and without the user id column, by locating the status and time columns
+ * instead of relying on fixed positions.
+ */
+final class SimulationLogParser {
+
+  static final String GROUP_SEPARATOR = " / ";
+
+  /**
+   * Receives the records of a simulation.log, times are epoch milliseconds.
+   */
+  interface Listener {
+
+    default void run(String simulationClassName, String simulationId, long start, String description) {
+    }
+
+    default void user(String scenario, boolean start, long timestamp) {
+    }
+
+    default void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+    }
+
+    default void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+    }
+  }
+
+  private SimulationLogParser() {
+  }
+
+  /**
+   * @return the number of lines that could not be parsed
+   */
+  static long parse(File simulationLog, Listener listener) throws IOException {
+    long invalidLines = 0;
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!parseLine(line, listener)) {
+          invalidLines++;
+        }
+      }
+    }
+    return invalidLines;
+  }
+
+  /**
+   * @return false when the line is not a valid record, records of unknown types are valid and ignored
+   */
+  static boolean parseLine(String line, Listener listener) {
+    if (line.isEmpty()) {
+      return true;
+    }
+    String[] columns = line.split("\t", -1);
+    try {
+      switch (columns[0]) {
+        case "REQUEST":
+          return parseRequest(columns, listener);
+        case "GROUP":
+          return parseGroup(columns, listener);
+        case "USER":
+          return parseUser(columns, listener);
+        case "RUN":
+          if (columns.length < 5) {
+            return false;
+          }
+          listener.run(columns[1], columns[2], Long.parseLong(columns[3]), columns[4]);
+          return true;
+        default:
+          return true;
+      }
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static boolean parseRequest(String[] columns, Listener listener) {
+    // REQUEST [userId] groups name start end status message
+    int status = -1;
+    if (columns.length > 6 && isStatus(columns[6]) && isNumber(columns[4]) && isNumber(columns[5])) {
+      status = 6;
+    } else if (columns.length > 5 && isStatus(columns[5])) {
+      status = 5;
+    }
+    if (status < 0) {
+      return false;
+    }
+    String message = columns.length > status + 1 ? columns[status + 1] : "";
+    listener.request(groups(columns[status - 4]), columns[status - 3],
+      Long.parseLong(columns[status - 2]), Long.parseLong(columns[status - 1]), "OK".equals(columns[status]), message);
+    return true;
+  }
+
+  private static boolean parseGroup(String[] columns, Listener listener) {
+    // GROUP [userId] groups start end cumulatedResponseTime status
+    int status = columns.length - 1;
+    if (status < 5 || !isStatus(columns[status])) {
+      return false;
+    }
+    listener.group(groups(columns[status - 4]), Long.parseLong(columns[status - 3]), Long.parseLong(columns[status - 2]),
+      Long.parseLong(columns[status - 1]), "OK".equals(columns[status]));
+    return true;
+  }
+
+  private static boolean parseUser(String[] columns, Listener listener) {
+    // USER scenario [userId] START|END start end
+    for (int i = 2; i < columns.length - 1; i++) {
+      if ("START".equals(columns[i]) || "END".equals(columns[i])) {
+        boolean start = "START".equals(columns[i]);
+        listener.user(columns[1], start, Long.parseLong(columns[start ? i + 1 : Math.min(i + 2, columns.length - 1)]));
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String path(List<String> groups, String name) {
+    if (groups.isEmpty()) {
+      return name;
+    }
+    String groupPath = String.join(GROUP_SEPARATOR, groups);
+    return name == null ? groupPath : groupPath + GROUP_SEPARATOR + name;
+  }
+
+  private static List<String> groups(String column) {
+    return column.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(column.split(","));
+  }
+
+  private static boolean isStatus(String column) {
+    return "OK".equals(column) || "KO".equals(column);
+  }
+
+  private static boolean isNumber(String column) {
+    if (column.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < column.length(); i++) {
+      if (!Character.isDigit(column.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
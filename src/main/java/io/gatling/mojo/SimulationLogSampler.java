@@ -0,0 +1,253 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * Reduces a huge simulation.log to a bounded size before generating its reports, keeping at most a fixed number of
+ * OK records per request and per group, chosen by reservoir sampling so every OK record has the same chance to be
+ * kept. KO records are all kept, so the error counts of the reports stay exact.
+ * <p>
+ * Two streaming passes keep memory bounded by the sample size and the number of KO records: the first one picks the
+ * line numbers to keep and counts the records exactly, the second one copies the picked lines in their original
+ * order. Other records, such as users, are all kept.
+ * <p>
+ * Only a copy is sampled: the simulation.log of the run stays complete, so the assertions, SLA rules and trends are
+ * evaluated on all records. The copy has no ASSERTION records, so the reports generated from it do not evaluate the
+ * assertions on the sample. The exact counts are written to {@value #COUNTS_FILE} in the run directory and
+ * summarized in the run description of the copy.
+ */
+final class SimulationLogSampler {
+
+  static final String COUNTS_FILE = "sampling-counts.tsv";
+  /**
+   * Results folder, inside the run directory, to generate the reports of the sampled copy in.
+   */
+  static final String SAMPLE_FOLDER = "sampled";
+
+  private final int samplesPerKey;
+  private final SplittableRandom random;
+  private final Map<String, Reservoir> reservoirs = new TreeMap<>();
+
+  private SimulationLogSampler(int samplesPerKey, long seed) {
+    this.samplesPerKey = samplesPerKey;
+    this.random = new SplittableRandom(seed);
+  }
+
+  /**
+   * @param runDirectory the run directory with the simulation.log to sample
+   * @param sampledLog the file to write the sampled copy to, not written when nothing needed to be sampled
+   * @param samplesPerKey maximum number of OK records to keep per request and per group
+   * @param seed seed of the random choice, the same seed gives the same sample
+   * @return the share of the sampled records that was kept, 1 when nothing needed to be sampled
+   */
+  static double sample(File runDirectory, File sampledLog, int samplesPerKey, long seed) throws IOException {
+    SimulationLogSampler sampler = new SimulationLogSampler(samplesPerKey, seed);
+    File simulationLog = SimulationLogs.simulationLog(runDirectory);
+    sampler.pick(simulationLog);
+
+    long seen = 0;
+    long kept = 0;
+    long failures = 0;
+    for (Reservoir reservoir : sampler.reservoirs.values()) {
+      seen += reservoir.seen;
+      kept += reservoir.size();
+      failures += reservoir.failures;
+    }
+    if (kept == seen) {
+      return 1;
+    }
+
+    long[] keptLines = new long[(int) kept];
+    int index = 0;
+    for (Reservoir reservoir : sampler.reservoirs.values()) {
+      int sampledOk = reservoir.size() - (int) reservoir.failures;
+      System.arraycopy(reservoir.lines, 0, keptLines, index, sampledOk);
+      index += sampledOk;
+      System.arraycopy(reservoir.failureLines, 0, keptLines, index, (int) reservoir.failures);
+      index += (int) reservoir.failures;
+    }
+    Arrays.sort(keptLines);
+
+    double ratio = (double) kept / seen;
+    String summary = String.format(Locale.ROOT, "sampled %.2f%% of %d records, all %d KO kept", ratio * 100, seen, failures);
+    File parent = sampledLog.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    copyKeptLines(simulationLog, sampledLog, keptLines, summary);
+    sampler.writeCounts(new File(runDirectory, COUNTS_FILE));
+    return ratio;
+  }
+
+  /**
+   * @return the sampled copy of the run, in a run directory of the same name in {@value #SAMPLE_FOLDER}
+   */
+  static File sampledLog(File runDirectory) {
+    return SimulationLogs.simulationLog(new File(new File(runDirectory, SAMPLE_FOLDER), runDirectory.getName()));
+  }
+
+  /**
+   * Moves the reports generated from the sampled copy into the run directory, then deletes {@value #SAMPLE_FOLDER}.
+   */
+  static void moveReports(File runDirectory) throws IOException {
+    File sampleFolder = new File(runDirectory, SAMPLE_FOLDER);
+    File[] reportFiles = sampledLog(runDirectory).getParentFile().listFiles(file -> !file.getName().equals(SimulationLogs.SIMULATION_LOG));
+    if (reportFiles != null) {
+      for (File reportFile : reportFiles) {
+        Files.move(reportFile.toPath(), new File(runDirectory, reportFile.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    FileUtils.deleteDirectory(sampleFolder);
+  }
+
+  private void pick(File simulationLog) throws IOException {
+    KeyListener listener = new KeyListener();
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      long lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        listener.key = null;
+        SimulationLogParser.parseLine(line, listener);
+        if (listener.key != null) {
+          reservoirs.computeIfAbsent(listener.key, key -> new Reservoir()).offer(lineNumber, listener.ok);
+        }
+        lineNumber++;
+      }
+    }
+  }
+
+  private static void copyKeptLines(File simulationLog, File sampledLog, long[] keptLines, String summary) throws IOException {
+    KeyListener listener = new KeyListener();
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8);
+         BufferedWriter writer = Files.newBufferedWriter(sampledLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      long lineNumber = 0;
+      int next = 0;
+      while ((line = reader.readLine()) != null) {
+        listener.key = null;
+        SimulationLogParser.parseLine(line, listener);
+        boolean sampled = listener.key != null;
+        if (sampled && next < keptLines.length && keptLines[next] == lineNumber) {
+          next++;
+          writer.write(line);
+          writer.newLine();
+        } else if (!sampled && !line.startsWith("ASSERTION\t")) {
+          writer.write(line.startsWith("RUN\t") ? withSummary(line, summary) : line);
+          writer.newLine();
+        }
+        lineNumber++;
+      }
+    }
+  }
+
+  private static String withSummary(String runLine, String summary) {
+    String[] columns = runLine.split("\t", -1);
+    if (columns.length > 4) {
+      String description = columns[4].trim();
+      columns[4] = description.isEmpty() ? summary : description + " (" + summary + ")";
+    }
+    return String.join("\t", columns);
+  }
+
+  private void writeCounts(File countsFile) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(countsFile.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("record\tcount\tko\tkept");
+      writer.newLine();
+      for (Map.Entry<String, Reservoir> entry : reservoirs.entrySet()) {
+        Reservoir reservoir = entry.getValue();
+        writer.write(entry.getKey() + "\t" + reservoir.seen + "\t" + reservoir.failures + "\t" + reservoir.size());
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Sets the sampling key of request and group records.
+   */
+  private static final class KeyListener implements SimulationLogParser.Listener {
+    private String key;
+    private boolean ok;
+
+    @Override
+    public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+      this.key = "REQUEST " + SimulationLogParser.path(groups, name);
+      this.ok = ok;
+    }
+
+    @Override
+    public void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+      this.key = "GROUP " + SimulationLogParser.path(groups, null);
+      this.ok = ok;
+    }
+  }
+
+  /**
+   * Samples the OK records of a key and keeps all its KO records.
+   */
+  private final class Reservoir {
+    private long[] lines = new long[Math.min(samplesPerKey, 16)];
+    private long[] failureLines = new long[0];
+    private long seen;
+    private long successes;
+    private long failures;
+
+    private void offer(long lineNumber, boolean ok) {
+      seen++;
+      if (!ok) {
+        if (failures == failureLines.length) {
+          failureLines = Arrays.copyOf(failureLines, Math.max(16, failureLines.length * 2));
+        }
+        failureLines[(int) failures++] = lineNumber;
+        return;
+      }
+      successes++;
+      if (successes <= samplesPerKey) {
+        if (successes > lines.length) {
+          lines = Arrays.copyOf(lines, (int) Math.min(samplesPerKey, lines.length * 2L));
+        }
+        lines[(int) successes - 1] = lineNumber;
+      } else {
+        long slot = random.nextLong(successes);
+        if (slot < samplesPerKey) {
+          lines[(int) slot] = lineNumber;
+        }
+      }
+    }
+
+    /**
+     * @return the number of records kept: the sampled OK records and all KO records
+     */
+    private int size() {
+      return (int) (Math.min(successes, samplesPerKey) + failures);
+    }
+  }
+}
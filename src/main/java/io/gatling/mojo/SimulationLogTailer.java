@@ -0,0 +1,83 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental reader of a simulation.log that is still being written: each poll parses the lines completed
+ * since the previous poll, a partially written last line is kept until its end arrives.
+ */
+final class SimulationLogTailer {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File simulationLog;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+  private long position;
+
+  SimulationLogTailer(File simulationLog) {
+    this.simulationLog = simulationLog;
+  }
+
+  File getSimulationLog() {
+    return simulationLog;
+  }
+
+  long getPosition() {
+    return position;
+  }
+
+  /**
+   * @return the number of bytes read
+   */
+  long poll(SimulationLogParser.Listener listener) throws IOException {
+    if (!simulationLog.isFile()) {
+      return 0;
+    }
+    long read = 0;
+    try (RandomAccessFile file = new RandomAccessFile(simulationLog, "r")) {
+      if (file.length() < position) {
+        // the file was replaced, start over
+        position = 0;
+        partialLine.reset();
+      }
+      file.seek(position);
+      int count;
+      while ((count = file.read(buffer)) > 0) {
+        int lineStart = 0;
+        for (int i = 0; i < count; i++) {
+          if (buffer[i] == '\n') {
+            partialLine.write(buffer, lineStart, i - lineStart);
+            String line = new String(partialLine.toByteArray(), StandardCharsets.UTF_8);
+            partialLine.reset();
+            SimulationLogParser.parseLine(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line, listener);
+            lineStart = i + 1;
+          }
+        }
+        partialLine.write(buffer, lineStart, count - lineStart);
+        position += count;
+        read += count;
+      }
+    }
+    return read;
+  }
+}
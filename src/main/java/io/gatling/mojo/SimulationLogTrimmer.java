@@ -0,0 +1,179 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuts the warm-up at the start of a run out of its simulation.log, so the reports and assertions only cover the
+ * measured window.
+ * <p>
+ * Requests and groups that started during the warm-up are removed, as well as users that ended during it. Users that
+ * started during the warm-up and were still active at its end are kept as if they started at its end, which is the
+ * new start of the run. The first pass finds the users that ended during the warm-up, so their start records can be
+ * removed as well, the second pass writes the trimmed log and replaces the original one.
+ */
+final class SimulationLogTrimmer {
+
+  private SimulationLogTrimmer() {
+  }
+
+  /**
+   * @return the number of removed records, -1 when the log has no RUN record to take the start of the run from
+   */
+  static long trimWarmUp(File runDirectory, long warmUpMillis) throws IOException {
+    File simulationLog = SimulationLogs.simulationLog(runDirectory);
+    long[] runStart = {-1};
+    // users are matched by scenario and start time, as not all layouts have the user id column
+    Map<String, Integer> endedUsers = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("RUN\t") && runStart[0] < 0) {
+          SimulationLogParser.parseLine(line, new SimulationLogParser.Listener() {
+            @Override
+            public void run(String simulationClassName, String simulationId, long start, String description) {
+              runStart[0] = start;
+            }
+          });
+        } else if (line.startsWith("USER\t") && runStart[0] >= 0) {
+          String[] columns = line.split("\t", -1);
+          int type = userRecordType(columns);
+          if (type > 0 && "END".equals(columns[type]) && time(columns[type + 2]) < runStart[0] + warmUpMillis) {
+            endedUsers.merge(columns[1] + "\t" + columns[type + 1], 1, Integer::sum);
+          }
+        }
+      }
+    }
+    if (runStart[0] < 0) {
+      return -1;
+    }
+
+    long cutoff = runStart[0] + warmUpMillis;
+    File trimmedLog = new File(runDirectory, SimulationLogs.SIMULATION_LOG + ".tmp");
+    long removed = 0;
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8);
+         BufferedWriter writer = Files.newBufferedWriter(trimmedLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String trimmed = trim(line, cutoff, warmUpMillis, endedUsers);
+        if (trimmed == null) {
+          removed++;
+        } else {
+          writer.write(trimmed);
+          writer.newLine();
+        }
+      }
+    }
+    Files.move(trimmedLog.toPath(), simulationLog.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return removed;
+  }
+
+  /**
+   * @return the record as it is kept, null when it is removed
+   */
+  private static String trim(String line, long cutoff, long warmUpMillis, Map<String, Integer> endedUsers) {
+    String[] columns = line.split("\t", -1);
+    switch (columns[0]) {
+      case "RUN":
+        if (columns.length > 4) {
+          columns[3] = Long.toString(cutoff);
+          String description = columns[4].trim();
+          String summary = "warm-up of " + warmUpMillis / 1000 + " s excluded";
+          columns[4] = description.isEmpty() ? summary : description + " (" + summary + ")";
+        }
+        return String.join("\t", columns);
+      case "USER":
+        return trimUser(columns, cutoff, endedUsers);
+      case "REQUEST":
+      case "GROUP":
+        long[] start = {Long.MAX_VALUE};
+        SimulationLogParser.parseLine(line, new SimulationLogParser.Listener() {
+          @Override
+          public void request(List<String> groups, String name, long requestStart, long end, boolean ok, String message) {
+            start[0] = requestStart;
+          }
+
+          @Override
+          public void group(List<String> groups, long groupStart, long end, long cumulatedResponseTime, boolean ok) {
+            start[0] = groupStart;
+          }
+        });
+        return start[0] < cutoff ? null : line;
+      default:
+        return line;
+    }
+  }
+
+  private static String trimUser(String[] columns, long cutoff, Map<String, Integer> endedUsers) {
+    int type = userRecordType(columns);
+    if (type < 0 || time(columns[type + 1]) >= cutoff) {
+      return String.join("\t", columns);
+    }
+    if ("END".equals(columns[type])) {
+      if (time(columns[type + 2]) < cutoff) {
+        return null;
+      }
+      columns[type + 1] = Long.toString(cutoff);
+      return String.join("\t", columns);
+    }
+    String user = columns[1] + "\t" + columns[type + 1];
+    Integer ended = endedUsers.get(user);
+    if (ended != null) {
+      if (ended == 1) {
+        endedUsers.remove(user);
+      } else {
+        endedUsers.put(user, ended - 1);
+      }
+      return null;
+    }
+    columns[type + 1] = Long.toString(cutoff);
+    columns[type + 2] = Long.toString(cutoff);
+    return String.join("\t", columns);
+  }
+
+  /**
+   * @return the index of the START or END column of a USER record followed by its start and end, -1 when there is none
+   */
+  private static int userRecordType(String[] columns) {
+    for (int i = 2; i < columns.length - 2; i++) {
+      if ("START".equals(columns[i]) || "END".equals(columns[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the time of a column, or the end of times when it is not a number so the record is kept as it is
+   */
+  private static long time(String column) {
+    try {
+      return Long.parseLong(column);
+    } catch (NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+}
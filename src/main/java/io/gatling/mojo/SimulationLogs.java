@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Helpers for the simulation.log files in Gatling run directories.
+ */
+final class SimulationLogs {
+
+  static final String SIMULATION_LOG = "simulation.log";
+  static final String REPORT_INDEX = "index.html";
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private SimulationLogs() {
+  }
+
+  static File simulationLog(File runDirectory) {
+    return new File(runDirectory, SIMULATION_LOG);
+  }
+
+  /**
+   * @return the simulation class name of the RUN record at the start of the log, or null when there is none
+   */
+  static String simulationClassName(File simulationLog) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (line != null && line.startsWith("RUN\t")) {
+        String[] columns = line.split("\t", -1);
+        return columns.length > 1 ? columns[1] : null;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * @return true when the log has ASSERTION records, which Gatling writes after the RUN record
+   */
+  static boolean hasAssertions(File simulationLog) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(simulationLog.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("ASSERTION\t")) {
+          return true;
+        }
+        if (!line.startsWith("RUN\t")) {
+          return false;
+        }
+      }
+      return false;
+    }
+  }
+
+  static boolean hasSimulationLog(File runDirectory) {
+    return simulationLog(runDirectory).isFile();
+  }
+
+  static boolean hasReport(File runDirectory) {
+    return new File(runDirectory, REPORT_INDEX).isFile();
+  }
+
+  /**
+   * Cuts off a last line that was only partially written, for instance because the
+   * Gatling process was stopped while its writers were flushing.
+   *
+   * @param logFile the simulation.log to repair
+   * @return the number of bytes removed
+   * @throws IOException when the file can not be read or truncated
+   */
+  static long truncateIncompleteLastLine(File logFile) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+      long length = file.length();
+      long position = length;
+      byte[] chunk = new byte[CHUNK_SIZE];
+      while (position > 0) {
+        int size = (int) Math.min(CHUNK_SIZE, position);
+        position -= size;
+        file.seek(position);
+        file.readFully(chunk, 0, size);
+        for (int i = size - 1; i >= 0; i--) {
+          if (chunk[i] == '\n') {
+            long newLength = position + i + 1;
+            file.setLength(newLength);
+            return length - newLength;
+          }
+        }
+      }
+      file.setLength(0);
+      return length;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM and resource settings of the simulations matching one of its {@literal simulations} patterns, applied on top of
+ * the JVM arguments of the plugin when the simulation is forked. The first matching profile of the list is used.
+ * <p>
+ * The patterns are matched against the simulation class names, like {@literal includes}.
+ */
+public class SimulationProfile {
+
+  /**
+   * Simulation class names or patterns, such as com.example.smoke.* or *LoadTest.
+   */
+  private List<String> simulations = new ArrayList<>();
+
+  /**
+   * Heap size, such as 256m or 8g, replacing the -Xmx and -Xms JVM arguments: the heap starts and stays at this size.
+   */
+  private String heap;
+
+  /**
+   * Garbage collector, such as G1, Parallel or Z, replacing the -XX:+Use...GC JVM arguments and the options of the
+   * default G1 collector.
+   */
+  private String gc;
+
+  /**
+   * JVM arguments added after the JVM arguments of the plugin.
+   */
+  private List<String> jvmArgs = new ArrayList<>();
+
+  /**
+   * System properties of the simulation JVM.
+   */
+  private Map<String, String> systemProperties = new LinkedHashMap<>();
+
+  /**
+   * Working directory of the simulation JVM, instead of {@literal workingDirectory}.
+   */
+  private File workingDirectory;
+
+  public SimulationProfile() {
+  }
+
+  SimulationProfile(List<String> simulations, String heap, String gc, List<String> jvmArgs, Map<String, String> systemProperties, File workingDirectory) {
+    this.simulations = simulations;
+    this.heap = heap;
+    this.gc = gc;
+    this.jvmArgs = jvmArgs;
+    this.systemProperties = systemProperties;
+    this.workingDirectory = workingDirectory;
+  }
+
+  /**
+   * @return the first profile matching the simulation, or null when there is none
+   */
+  static SimulationProfile find(List<SimulationProfile> profiles, String simulation) {
+    if (profiles == null || simulation == null) {
+      return null;
+    }
+    for (SimulationProfile profile : profiles) {
+      if (profile.matches(simulation)) {
+        return profile;
+      }
+    }
+    return null;
+  }
+
+  boolean matches(String simulation) {
+    for (String pattern : getSimulations()) {
+      if (pattern.equals(simulation) || SelectorUtils.match(pattern, simulation)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the given JVM arguments with the heap and garbage collector of the profile, followed by its JVM arguments and system properties
+   */
+  List<String> applyTo(List<String> runJvmArgs) {
+    List<String> result = new ArrayList<>();
+    for (String arg : gc != null ? MojoUtils.withoutCollectorArgs(runJvmArgs) : runJvmArgs) {
+      boolean heapArg = arg.startsWith("-Xmx") || arg.startsWith("-Xms");
+      if (!(heap != null && heapArg)) {
+        result.add(arg);
+      }
+    }
+    if (heap != null) {
+      result.add("-Xms" + heap);
+      result.add("-Xmx" + heap);
+    }
+    if (gc != null) {
+      result.add("-XX:+Use" + gc + "GC");
+    }
+    result.addAll(getJvmArgs());
+    for (Map.Entry<String, String> property : getSystemProperties().entrySet()) {
+      result.add("-D" + property.getKey() + "=" + (property.getValue() != null ? property.getValue() : ""));
+    }
+    return result;
+  }
+
+  /**
+   * @return true when the profile changes the JVM itself, which a daemon or the Maven JVM can not apply
+   */
+  boolean hasJvmSettings() {
+    return heap != null || gc != null || !getJvmArgs().isEmpty();
+  }
+
+  public List<String> getSimulations() {
+    return simulations != null ? simulations : new ArrayList<>();
+  }
+
+  public String getHeap() {
+    return heap;
+  }
+
+  public String getGc() {
+    return gc;
+  }
+
+  public List<String> getJvmArgs() {
+    return jvmArgs != null ? jvmArgs : new ArrayList<>();
+  }
+
+  public Map<String, String> getSystemProperties() {
+    return systemProperties != null ? systemProperties : new LinkedHashMap<>();
+  }
+
+  public File getWorkingDirectory() {
+    return workingDirectory;
+  }
+
+  @Override
+  public String toString() {
+    return getSimulations() + (heap != null ? " heap " + heap : "") + (gc != null ? " gc " + gc : "")
+      + (getJvmArgs().isEmpty() ? "" : " " + getJvmArgs()) + (getSystemProperties().isEmpty() ? "" : " " + getSystemProperties())
+      + (workingDirectory != null ? " in " + workingDirectory : "");
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+/**
+ * Service level agreement checked by the verify goal against the simulation.log of a run.
+ * <p>
+ * Without {@literal request} and {@literal group} the rule applies to all requests together. Otherwise it applies
+ * to each request or group whose name matches the regular expression. The name of a request in a group is prefixed
+ * with its group path, as in {@literal checkout / pay}.
+ */
+public class SlaRule {
+
+  /**
+   * Regular expression for the names of the requests this rule applies to.
+   */
+  private String request;
+
+  /**
+   * Regular expression for the group paths this rule applies to, the response time of a group is its cumulated
+   * response time.
+   */
+  private String group;
+
+  /**
+   * Percentile of the response times to compare to {@literal maxResponseTime}, 100 when not set.
+   */
+  private Double percentile;
+
+  /**
+   * Maximum response time in milliseconds at {@literal percentile}.
+   */
+  private Long maxResponseTime;
+
+  /**
+   * Maximum percentage of failed requests.
+   */
+  private Double maxErrorRate;
+
+  /**
+   * Minimum number of requests per second over the duration of the run.
+   */
+  private Double minThroughput;
+
+  public SlaRule() {
+  }
+
+  SlaRule(String request, String group, Double percentile, Long maxResponseTime, Double maxErrorRate, Double minThroughput) {
+    this.request = request;
+    this.group = group;
+    this.percentile = percentile;
+    this.maxResponseTime = maxResponseTime;
+    this.maxErrorRate = maxErrorRate;
+    this.minThroughput = minThroughput;
+  }
+
+  public String getRequest() {
+    return request;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public Double getPercentile() {
+    return percentile;
+  }
+
+  public Long getMaxResponseTime() {
+    return maxResponseTime;
+  }
+
+  public Double getMaxErrorRate() {
+    return maxErrorRate;
+  }
+
+  public Double getMinThroughput() {
+    return minThroughput;
+  }
+
+  static String percentileLabel(double percentile) {
+    return percentile == Math.rint(percentile) ? "p" + (long) percentile : "p" + percentile;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder description = new StringBuilder(request != null ? "requests '" + request + "'" : group != null ? "groups '" + group + "'" : "all requests");
+    if (maxResponseTime != null) {
+      description.append(", ").append(percentileLabel(percentile != null ? percentile : 100)).append(" <= ").append(maxResponseTime).append(" ms");
+    }
+    if (maxErrorRate != null) {
+      description.append(", error rate <= ").append(maxErrorRate).append("%");
+    }
+    if (minThroughput != null) {
+      description.append(", throughput >= ").append(minThroughput).append(" rps");
+    }
+    return description.toString();
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Checks {@link SlaRule}s with a single streaming pass over a simulation.log, keeping one fixed-memory
+ * histogram per rule and matching request or group.
+ */
+final class SlaVerifier implements SimulationLogParser.Listener {
+
+  private static final String ALL_REQUESTS = "all requests";
+
+  private final List<SlaRule> rules;
+  private final List<Pattern> patterns = new ArrayList<>();
+  private final List<Map<String, Stats>> statsByRule = new ArrayList<>();
+  private long runStart = Long.MAX_VALUE;
+  private long runEnd = Long.MIN_VALUE;
+
+  SlaVerifier(List<SlaRule> rules) {
+    this.rules = rules;
+    for (SlaRule rule : rules) {
+      if (rule.getRequest() != null && rule.getGroup() != null) {
+        throw new IllegalArgumentException("An SLA rule applies to either requests or groups: " + rule);
+      }
+      String regex = rule.getRequest() != null ? rule.getRequest() : rule.getGroup();
+      patterns.add(regex == null ? null : Pattern.compile(regex));
+      statsByRule.add(new LinkedHashMap<>());
+    }
+  }
+
+  /**
+   * @return the violated rules, with the actual values, empty when all rules are met
+   */
+  static List<String> verify(File simulationLog, List<SlaRule> rules) throws IOException {
+    SlaVerifier verifier = new SlaVerifier(rules);
+    SimulationLogParser.parse(simulationLog, verifier);
+    return verifier.violations();
+  }
+
+  /**
+   * Same as {@link #verify(File, List)}, with the histograms of a {@link SimulationLogIndex} instead of the log records.
+   */
+  static List<String> verify(SimulationLogIndex index, List<SlaRule> rules) {
+    SlaVerifier verifier = new SlaVerifier(rules);
+    verifier.runStart = index.getRunStart();
+    for (SimulationLogIndex.Series series : index.getSeries()) {
+      verifier.updateRunWindow(series.getFirstStart(), series.getLastEnd());
+      RunAggregates.RequestStats seriesStats = null;
+      for (int i = 0; i < rules.size(); i++) {
+        SlaRule rule = rules.get(i);
+        Pattern pattern = verifier.patterns.get(i);
+        String key;
+        if (series.isGroup()) {
+          key = rule.getGroup() != null && pattern.matcher(series.getPath()).matches() ? series.getPath() : null;
+        } else if (rule.getGroup() == null) {
+          key = pattern == null ? ALL_REQUESTS : pattern.matcher(series.getPath()).matches() ? series.getPath() : null;
+        } else {
+          key = null;
+        }
+        if (key != null) {
+          if (seriesStats == null) {
+            seriesStats = series.stats();
+          }
+          verifier.stats(i, key).add(seriesStats.getHistogram(), seriesStats.getFailures());
+        }
+      }
+    }
+    return verifier.violations();
+  }
+
+  @Override
+  public void run(String simulationClassName, String simulationId, long start, String description) {
+    runStart = Math.min(runStart, start);
+  }
+
+  @Override
+  public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+    updateRunWindow(start, end);
+    String path = SimulationLogParser.path(groups, name);
+    for (int i = 0; i < rules.size(); i++) {
+      SlaRule rule = rules.get(i);
+      if (rule.getGroup() == null) {
+        Pattern pattern = patterns.get(i);
+        if (pattern == null) {
+          stats(i, ALL_REQUESTS).record(end - start, ok);
+        } else if (pattern.matcher(path).matches()) {
+          stats(i, path).record(end - start, ok);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void group(List<String> groups, long start, long end, long cumulatedResponseTime, boolean ok) {
+    updateRunWindow(start, end);
+    String path = SimulationLogParser.path(groups, null);
+    for (int i = 0; i < rules.size(); i++) {
+      if (rules.get(i).getGroup() != null && patterns.get(i).matcher(path).matches()) {
+        stats(i, path).record(cumulatedResponseTime, ok);
+      }
+    }
+  }
+
+  List<String> violations() {
+    double durationSeconds = runEnd > runStart ? (runEnd - runStart) / 1000.0 : 0;
+    List<String> violations = new ArrayList<>();
+    for (int i = 0; i < rules.size(); i++) {
+      SlaRule rule = rules.get(i);
+      if (statsByRule.get(i).isEmpty()) {
+        violations.add(rule + ": no matching records");
+      }
+      for (Map.Entry<String, Stats> entry : statsByRule.get(i).entrySet()) {
+        Stats stats = entry.getValue();
+        String prefix = rule + ": " + entry.getKey() + " ";
+        if (rule.getMaxResponseTime() != null) {
+          double percentile = rule.getPercentile() != null ? rule.getPercentile() : 100;
+          long actual = stats.histogram.getValueAtPercentile(percentile);
+          if (actual > rule.getMaxResponseTime()) {
+            violations.add(prefix + "has " + SlaRule.percentileLabel(percentile) + " " + actual + " ms");
+          }
+        }
+        if (rule.getMaxErrorRate() != null) {
+          double errorRate = 100.0 * stats.failures / stats.histogram.getTotalCount();
+          if (errorRate > rule.getMaxErrorRate()) {
+            violations.add(prefix + "has error rate " + format(errorRate) + "%");
+          }
+        }
+        if (rule.getMinThroughput() != null) {
+          double throughput = durationSeconds > 0 ? stats.histogram.getTotalCount() / durationSeconds : 0;
+          if (throughput < rule.getMinThroughput()) {
+            violations.add(prefix + "has throughput " + format(throughput) + " rps");
+          }
+        }
+      }
+    }
+    return violations;
+  }
+
+  private Stats stats(int rule, String key) {
+    return statsByRule.get(rule).computeIfAbsent(key, k -> new Stats());
+  }
+
+  private void updateRunWindow(long start, long end) {
+    runStart = Math.min(runStart, start);
+    runEnd = Math.max(runEnd, end);
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.2f", value);
+  }
+
+  private static final class Stats {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long failures;
+
+    private void add(LatencyHistogram other, long otherFailures) {
+      histogram.add(other);
+      failures += otherFailures;
+    }
+
+    private void record(long responseTime, boolean ok) {
+      histogram.record(responseTime);
+      if (!ok) {
+        failures++;
+      }
+    }
+  }
+}
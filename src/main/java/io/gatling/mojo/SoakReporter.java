@@ -0,0 +1,272 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Interim report of a long running simulation, rewritten every interval into its run directory while it runs, and a
+ * last time when it ends. That last one stays next to the final report, as the trend of the whole run.
+ * <p>
+ * The simulation.log is followed with a {@link SimulationLogTailer}, so every record is parsed once and only fixed-size
+ * aggregates are kept: a histogram per request for the whole run, and one per interval of the run. Once an interval is
+ * over, its histogram is reduced to a row of the trend table, which shows degradation over the hours of a soak test.
+ */
+final class SoakReporter implements Closeable, SimulationLogParser.Listener {
+
+  static final String REPORT_FILE = "interim-report.html";
+  private static final long POLL_MILLIS = 5000;
+  private static final double[] PERCENTILES = {50, 95, 99};
+
+  private final String simulation;
+  private final Supplier<File> runDirectory;
+  private final long intervalMillis;
+  private final Log log;
+
+  private ScheduledExecutorService executor;
+  private File directory;
+  private SimulationLogTailer tailer;
+  private long nextReportMillis;
+
+  private long runStart = -1;
+  private long activeUsers;
+  private final Map<String, Stats> requests = new TreeMap<>();
+  private final TreeMap<Long, Interval> openIntervals = new TreeMap<>();
+  private final List<String[]> trend = new ArrayList<>();
+
+  SoakReporter(String simulation, Supplier<File> runDirectory, long intervalMillis, Log log) {
+    this.simulation = simulation;
+    this.runDirectory = runDirectory;
+    this.intervalMillis = intervalMillis;
+    this.log = log;
+  }
+
+  void start() {
+    nextReportMillis = System.currentTimeMillis() + intervalMillis;
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "gatlingSoakReporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.min(POLL_MILLIS, intervalMillis);
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        poll();
+        long now = System.currentTimeMillis();
+        if (now >= nextReportMillis) {
+          nextReportMillis = now + intervalMillis;
+          report();
+        }
+      } catch (IOException | RuntimeException e) {
+        log.warn("Could not update the interim report of " + simulation + ": " + e.getMessage());
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Reads the records written since the previous poll.
+   */
+  synchronized void poll() throws IOException {
+    if (tailer == null) {
+      directory = runDirectory.get();
+      if (directory == null) {
+        return;
+      }
+      tailer = new SimulationLogTailer(SimulationLogs.simulationLog(directory));
+    }
+    tailer.poll(this);
+  }
+
+  @Override
+  public void run(String simulationClassName, String simulationId, long start, String description) {
+    if (runStart < 0) {
+      runStart = start;
+    }
+  }
+
+  @Override
+  public void user(String scenario, boolean start, long timestamp) {
+    activeUsers += start ? 1 : -1;
+    interval(timestamp).maxActiveUsers = Math.max(interval(timestamp).maxActiveUsers, activeUsers);
+  }
+
+  @Override
+  public void request(List<String> groups, String name, long start, long end, boolean ok, String message) {
+    long responseTime = end - start;
+    requests.computeIfAbsent(SimulationLogParser.path(groups, name), path -> new Stats()).record(responseTime, ok);
+    interval(end).stats.record(responseTime, ok);
+  }
+
+  private Interval interval(long timestamp) {
+    long index = runStart < 0 ? 0 : Math.max(0, (timestamp - runStart) / intervalMillis);
+    Interval interval = openIntervals.get(index);
+    if (interval == null) {
+      interval = new Interval(index);
+      interval.maxActiveUsers = activeUsers;
+      openIntervals.put(index, interval);
+      // records arrive about in order, so the interval before the previous one is over
+      while (openIntervals.firstKey() < index - 1) {
+        trend.add(openIntervals.pollFirstEntry().getValue().row());
+      }
+    }
+    return interval;
+  }
+
+  /**
+   * Replaces the report in the run directory with one of the records read so far.
+   */
+  synchronized void report() throws IOException {
+    if (directory == null) {
+      return;
+    }
+    List<String[]> rows = new ArrayList<>(trend);
+    for (Interval interval : openIntervals.values()) {
+      rows.add(interval.row());
+    }
+    File report = new File(directory, REPORT_FILE);
+    File temp = new File(directory, REPORT_FILE + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>" + escape(simulation) + " interim report</title>"
+        + "<style>body{font-family:sans-serif}table{border-collapse:collapse}td,th{border:1px solid #ccc;padding:2px 8px;text-align:right}"
+        + "td:first-child,th:first-child{text-align:left}</style></head><body>\n");
+      writer.write("<h1>" + escape(simulation) + "</h1>\n<p>Interim report of " + escape(directory.getName()) + ", updated "
+        + timestamp(System.currentTimeMillis()) + ". It is rewritten while the run lasts and a last time when it ends, "
+        + "next to the final report of the run in " + SimulationLogs.REPORT_INDEX + ".</p>\n");
+      writer.write("<h2>Trend per " + intervalMillis / 60000.0 + " minutes</h2>\n");
+      table(writer, new String[]{"interval start", "requests", "rps", "KO %", "p50 ms", "p95 ms", "p99 ms", "max ms", "max active users"}, rows);
+      List<String[]> requestRows = new ArrayList<>();
+      for (Map.Entry<String, Stats> request : requests.entrySet()) {
+        requestRows.add(request.getValue().row(request.getKey()));
+      }
+      writer.write("<h2>Requests since the start</h2>\n");
+      table(writer, new String[]{"request", "requests", "KO %", "p50 ms", "p95 ms", "p99 ms", "max ms"}, requestRows);
+      writer.write("</body></html>\n");
+    }
+    Files.move(temp.toPath(), report.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void table(BufferedWriter writer, String[] header, List<String[]> rows) throws IOException {
+    writer.write("<table><tr>");
+    for (String column : header) {
+      writer.write("<th>" + escape(column) + "</th>");
+    }
+    writer.write("</tr>\n");
+    for (String[] row : rows) {
+      writer.write("<tr>");
+      for (String cell : row) {
+        writer.write("<td>" + escape(cell) + "</td>");
+      }
+      writer.write("</tr>\n");
+    }
+    writer.write("</table>\n");
+  }
+
+  private static String escape(String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+  }
+
+  private static String timestamp(long millis) {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss 'UTC'", Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(new Date(millis));
+  }
+
+  /**
+   * Reads the rest of the log and writes the last interim report.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      poll();
+      report();
+    } catch (IOException e) {
+      log.warn("Could not write the last interim report of " + simulation + ": " + e.getMessage());
+    }
+  }
+
+  private static final class Stats {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long failures;
+
+    private void record(long responseTime, boolean ok) {
+      histogram.record(responseTime);
+      if (!ok) {
+        failures++;
+      }
+    }
+
+    private String[] row(String label) {
+      String[] row = new String[3 + PERCENTILES.length + 1];
+      row[0] = label;
+      row[1] = Long.toString(histogram.getTotalCount());
+      row[2] = String.format(Locale.ROOT, "%.2f", histogram.getTotalCount() == 0 ? 0 : 100.0 * failures / histogram.getTotalCount());
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        row[3 + i] = histogram.getTotalCount() == 0 ? "-" : Long.toString(histogram.getValueAtPercentile(PERCENTILES[i]));
+      }
+      row[row.length - 1] = histogram.getTotalCount() == 0 ? "-" : Long.toString(histogram.getMax());
+      return row;
+    }
+  }
+
+  private final class Interval {
+    private final long index;
+    private final Stats stats = new Stats();
+    private long maxActiveUsers;
+
+    private Interval(long index) {
+      this.index = index;
+    }
+
+    private String[] row() {
+      String[] statsRow = stats.row(timestamp(Math.max(runStart, 0) + index * intervalMillis));
+      String[] row = new String[statsRow.length + 2];
+      row[0] = statsRow[0];
+      row[1] = statsRow[1];
+      row[2] = String.format(Locale.ROOT, "%.2f", stats.histogram.getTotalCount() * 1000.0 / intervalMillis);
+      System.arraycopy(statsRow, 2, row, 3, statsRow.length - 2);
+      row[row.length - 1] = Long.toString(maxActiveUsers);
+      return row;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Sets system properties for the duration of a run in a shared JVM, and restores the previous ones when closed.
+ */
+final class SystemPropertiesScope implements AutoCloseable {
+
+  private final Map<Object, Object> previous;
+
+  private SystemPropertiesScope(Map<Object, Object> previous) {
+    this.previous = previous;
+  }
+
+  static SystemPropertiesScope set(Map<String, String> properties) {
+    SystemPropertiesScope scope = new SystemPropertiesScope(new HashMap<>(System.getProperties()));
+    properties.forEach(System::setProperty);
+    return scope;
+  }
+
+  @Override
+  public void close() {
+    Properties current = System.getProperties();
+    current.keySet().retainAll(previous.keySet());
+    current.putAll(previous);
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Mojo to print the trends of past runs recorded in the trend store.
+ */
+@Mojo(name = "trend")
+public class TrendMojo extends AbstractGatlingExecutionMojo {
+
+  private static final DateTimeFormatter START_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+  /**
+   * Regular expression for the simulation class names to show, all when not set.
+   */
+  @Parameter(property = "gatling.trend.simulation")
+  private String simulation;
+
+  /**
+   * Regular expression for the request names to show, all when not set.
+   */
+  @Parameter(property = "gatling.trend.request")
+  private String request;
+
+  /**
+   * Maximum number of most recent runs to show per simulation.
+   */
+  @Parameter(property = "gatling.trend.runs", defaultValue = "20")
+  private int runs;
+
+  /**
+   * Output format: table or csv.
+   */
+  @Parameter(property = "gatling.trend.format", defaultValue = "table")
+  private String format;
+
+  /**
+   * File to write the output to instead of the console.
+   */
+  @Parameter(property = "gatling.trend.outputFile")
+  private File outputFile;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (skip) {
+      getLog().info("Skipping gatling-maven-plugin");
+      return;
+    }
+    if (!trendStoreFile.isFile()) {
+      getLog().info("No trend store found at " + trendStoreFile);
+      return;
+    }
+    Pattern simulationPattern = simulation == null ? null : Pattern.compile(simulation);
+    Pattern requestPattern = request == null ? null : Pattern.compile(request);
+    boolean csv = "csv".equalsIgnoreCase(format);
+    if (!csv && !"table".equalsIgnoreCase(format)) {
+      throw new MojoExecutionException("Unknown trend format " + format + ", use table or csv");
+    }
+
+    try {
+      List<TrendStore.Run> selected = TrendStore.read(trendStoreFile, name -> simulationPattern == null || simulationPattern.matcher(name).matches());
+      StringWriter output = new StringWriter();
+      try (PrintWriter out = new PrintWriter(output)) {
+        if (csv) {
+          printCsv(out, lastRuns(selected), requestPattern);
+        } else {
+          printTables(out, lastRuns(selected), requestPattern);
+        }
+      }
+      if (outputFile != null) {
+        Files.write(outputFile.toPath(), output.toString().getBytes(StandardCharsets.UTF_8));
+        getLog().info("Trends written to " + outputFile);
+      } else {
+        for (String line : output.toString().split("\\r?\\n")) {
+          getLog().info(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not read trend store " + trendStoreFile, e);
+    }
+  }
+
+  /**
+   * @return the last {@literal runs} runs of each simulation, by simulation
+   */
+  private Map<String, List<TrendStore.Run>> lastRuns(List<TrendStore.Run> selected) {
+    Map<String, List<TrendStore.Run>> bySimulation = new LinkedHashMap<>();
+    for (TrendStore.Run run : selected) {
+      bySimulation.computeIfAbsent(run.simulation, key -> new ArrayList<>()).add(run);
+    }
+    for (Map.Entry<String, List<TrendStore.Run>> entry : bySimulation.entrySet()) {
+      List<TrendStore.Run> simulationRuns = entry.getValue();
+      simulationRuns.sort((first, second) -> Long.compare(first.start, second.start));
+      if (simulationRuns.size() > runs) {
+        entry.setValue(new ArrayList<>(simulationRuns.subList(simulationRuns.size() - runs, simulationRuns.size())));
+      }
+    }
+    return bySimulation;
+  }
+
+  private void printTables(PrintWriter out, Map<String, List<TrendStore.Run>> bySimulation, Pattern requestPattern) {
+    for (Map.Entry<String, List<TrendStore.Run>> entry : bySimulation.entrySet()) {
+      Map<String, List<String>> rowsByRequest = new LinkedHashMap<>();
+      for (TrendStore.Run run : entry.getValue()) {
+        for (int row = 0; row < run.requests.length; row++) {
+          if (requestPattern == null || requestPattern.matcher(run.requests[row]).matches()) {
+            rowsByRequest.computeIfAbsent(run.requests[row], key -> new ArrayList<>()).add(String.format(Locale.ROOT,
+              "%-19s  %-10s %8d %7.2f %9.2f %7d %7d %7d %7d %7d",
+              START_FORMAT.format(Instant.ofEpochMilli(run.start)), shortRevision(run.revision), run.counts[row],
+              run.errorRate(row), run.throughputs[row], run.means[row], run.percentiles[0][row], run.percentiles[2][row],
+              run.percentiles[3][row], run.maxes[row]));
+          }
+        }
+      }
+      for (Map.Entry<String, List<String>> rows : rowsByRequest.entrySet()) {
+        out.println(entry.getKey() + " - " + rows.getKey());
+        out.println(String.format(Locale.ROOT, "%-19s  %-10s %8s %7s %9s %7s %7s %7s %7s %7s",
+          "start (UTC)", "revision", "count", "err%", "rps", "mean", "p50", "p95", "p99", "max"));
+        for (String row : rows.getValue()) {
+          out.println(row);
+        }
+        out.println();
+      }
+    }
+  }
+
+  private void printCsv(PrintWriter out, Map<String, List<TrendStore.Run>> bySimulation, Pattern requestPattern) {
+    out.println("simulation,request,start,revision,runId,count,errorRate,throughput,mean,p50,p75,p95,p99,max");
+    for (List<TrendStore.Run> simulationRuns : bySimulation.values()) {
+      for (TrendStore.Run run : simulationRuns) {
+        for (int row = 0; row < run.requests.length; row++) {
+          if (requestPattern == null || requestPattern.matcher(run.requests[row]).matches()) {
+            out.println(String.format(Locale.ROOT, "%s,%s,%s,%s,%s,%d,%.4f,%.4f,%d,%d,%d,%d,%d,%d",
+              csvValue(run.simulation), csvValue(run.requests[row]), Instant.ofEpochMilli(run.start), run.revision, csvValue(run.runId),
+              run.counts[row], run.errorRate(row), run.throughputs[row], run.means[row], run.percentiles[0][row],
+              run.percentiles[1][row], run.percentiles[2][row], run.percentiles[3][row], run.maxes[row]));
+          }
+        }
+      }
+    }
+  }
+
+  private static String shortRevision(String revision) {
+    return revision.length() > 10 ? revision.substring(0, 10) : revision;
+  }
+
+  private static String csvValue(String value) {
+    return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+  }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static io.gatling.mojo.BinaryCodec.flip;
+import static io.gatling.mojo.BinaryCodec.position;
+import static io.gatling.mojo.BinaryCodec.readString;
+import static io.gatling.mojo.BinaryCodec.skip;
+import static io.gatling.mojo.BinaryCodec.writeString;
+
+/**
+ * Append-only file of per-request aggregates of runs, for long-term trends.
+ * <p>
+ * After a header, the file holds one block per run: the run key (start time, simulation, git revision and run id),
+ * followed by the request names and then one column per aggregate, so a block is read with a few bulk reads.
+ * Blocks start with their length, so reading skips the runs of other simulations without decoding them.
+ */
+final class TrendStore {
+
+  static final double[] PERCENTILES = {50, 75, 95, 99};
+
+  private static final int MAGIC = 0x47545231; // GTR1
+
+  private TrendStore() {
+  }
+
+  static final class Run {
+    final long start;
+    final String simulation;
+    final String revision;
+    final String runId;
+    final String[] requests;
+    final long[] counts;
+    final long[] failures;
+    final double[] throughputs;
+    final int[] means;
+    final int[][] percentiles;
+    final int[] maxes;
+
+    Run(long start, String simulation, String revision, String runId, String[] requests, long[] counts, long[] failures,
+        double[] throughputs, int[] means, int[][] percentiles, int[] maxes) {
+      this.start = start;
+      this.simulation = simulation;
+      this.revision = revision;
+      this.runId = runId;
+      this.requests = requests;
+      this.counts = counts;
+      this.failures = failures;
+      this.throughputs = throughputs;
+      this.means = means;
+      this.percentiles = percentiles;
+      this.maxes = maxes;
+    }
+
+    static Run of(RunAggregates aggregates, String revision, String runId) {
+      Map<String, RunAggregates.RequestStats> stats = aggregates.getRequests();
+      int rows = stats.size();
+      String[] requests = new String[rows];
+      long[] counts = new long[rows];
+      long[] failures = new long[rows];
+      double[] throughputs = new double[rows];
+      int[] means = new int[rows];
+      int[][] percentiles = new int[PERCENTILES.length][rows];
+      int[] maxes = new int[rows];
+      double duration = aggregates.getDurationSeconds();
+      int row = 0;
+      for (Map.Entry<String, RunAggregates.RequestStats> entry : stats.entrySet()) {
+        LatencyHistogram histogram = entry.getValue().getHistogram();
+        requests[row] = entry.getKey();
+        counts[row] = entry.getValue().getCount();
+        failures[row] = entry.getValue().getFailures();
+        throughputs[row] = duration > 0 ? counts[row] / duration : 0;
+        means[row] = (int) Math.round(histogram.getMean());
+        for (int p = 0; p < PERCENTILES.length; p++) {
+          percentiles[p][row] = (int) histogram.getValueAtPercentile(PERCENTILES[p]);
+        }
+        maxes[row] = (int) histogram.getMax();
+        row++;
+      }
+      return new Run(aggregates.getRunStart(), aggregates.getSimulationClassName(), revision, runId, requests, counts, failures,
+        throughputs, means, percentiles, maxes);
+    }
+
+    double errorRate(int row) {
+      return counts[row] == 0 ? 0 : 100.0 * failures[row] / counts[row];
+    }
+  }
+
+  /**
+   * Appends a run, holding a file lock so concurrent builds do not interleave their blocks. A block cut off by a
+   * crashed write is removed first, reading stops at such a block.
+   */
+  static void append(File storeFile, Run run) throws IOException {
+    File parent = storeFile.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Could not create " + parent);
+    }
+    byte[] block = encode(run);
+    try (FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileLock ignored = channel.lock()) {
+      long size = completeLength(channel, storeFile);
+      if (size < channel.size()) {
+        channel.truncate(size);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((size == 0 ? 4 : 0) + 4 + block.length);
+      if (size == 0) {
+        buffer.putInt(MAGIC);
+      }
+      buffer.putInt(block.length).put(block);
+      flip(buffer);
+      channel.position(size);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * @return the length of the header and the complete blocks of the store, 0 when not even the header is complete
+   */
+  private static long completeLength(FileChannel channel, File storeFile) throws IOException {
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(4);
+    if (!readFully(channel, header, 0)) {
+      return 0;
+    }
+    if (header.getInt(0) != MAGIC) {
+      throw new IOException(storeFile + " is not a trend store");
+    }
+    long end = 4;
+    while (readFully(channel, header, end)) {
+      int length = header.getInt(0);
+      if (length < 0 || end + 4 + length > size) {
+        break;
+      }
+      end += 4 + length;
+    }
+    return end;
+  }
+
+  /**
+   * @return false when the channel ends before the buffer is full
+   */
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    position(buffer, 0);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param simulationFilter selects the simulations to decode, other runs are skipped
+   * @return the selected runs, in the order they were appended
+   */
+  static List<Run> read(File storeFile, Predicate<String> simulationFilter) throws IOException {
+    List<Run> runs = new ArrayList<>();
+    if (!storeFile.isFile()) {
+      return runs;
+    }
+    try (FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() == 0) {
+        return runs;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException(storeFile + " is not a trend store");
+      }
+      while (buffer.remaining() >= 4) {
+        int length = buffer.getInt();
+        if (length > buffer.remaining()) {
+          // a block cut off by a crashed write
+          break;
+        }
+        int next = buffer.position() + length;
+        long start = buffer.getLong();
+        String simulation = readString(buffer);
+        if (simulationFilter.test(simulation)) {
+          runs.add(decode(buffer, start, simulation));
+        }
+        position(buffer, next);
+      }
+    }
+    return runs;
+  }
+
+  private static byte[] encode(Run run) throws IOException {
+    int rows = run.requests.length;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + rows * 64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeLong(run.start);
+      writeString(out, run.simulation);
+      writeString(out, run.revision);
+      writeString(out, run.runId);
+      out.writeInt(rows);
+      for (String request : run.requests) {
+        writeString(out, request);
+      }
+      for (long count : run.counts) {
+        out.writeLong(count);
+      }
+      for (long failure : run.failures) {
+        out.writeLong(failure);
+      }
+      for (double throughput : run.throughputs) {
+        out.writeDouble(throughput);
+      }
+      for (int mean : run.means) {
+        out.writeInt(mean);
+      }
+      out.writeInt(PERCENTILES.length);
+      for (int[] percentile : run.percentiles) {
+        for (int value : percentile) {
+          out.writeInt(value);
+        }
+      }
+      for (int max : run.maxes) {
+        out.writeInt(max);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Run decode(ByteBuffer buffer, long start, String simulation) {
+    String revision = readString(buffer);
+    String runId = readString(buffer);
+    int rows = buffer.getInt();
+    String[] requests = new String[rows];
+    for (int row = 0; row < rows; row++) {
+      requests[row] = readString(buffer);
+    }
+    long[] counts = new long[rows];
+    buffer.asLongBuffer().get(counts);
+    skip(buffer, rows * 8);
+    long[] failures = new long[rows];
+    buffer.asLongBuffer().get(failures);
+    skip(buffer, rows * 8);
+    double[] throughputs = new double[rows];
+    buffer.asDoubleBuffer().get(throughputs);
+    skip(buffer, rows * 8);
+    int[] means = readInts(buffer, rows);
+    int percentileCount = buffer.getInt();
+    int[][] percentiles = new int[percentileCount][];
+    for (int p = 0; p < percentileCount; p++) {
+      percentiles[p] = readInts(buffer, rows);
+    }
+    int[] maxes = readInts(buffer, rows);
+    return new Run(start, simulation, revision, runId, requests, counts, failures, throughputs, means, percentiles, maxes);
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    skip(buffer, count * 4);
+    return values;
+  }
+}
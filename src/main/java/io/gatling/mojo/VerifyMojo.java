@@ -19,12 +19,14 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Mojo to verify Gatling simulation results.
@@ -32,6 +34,12 @@ import java.nio.file.Path;
 @Mojo(name = "verify", defaultPhase = LifecyclePhase.VERIFY)
 public class VerifyMojo extends AbstractGatlingExecutionMojo {
 
+    /**
+     * SLA rules to check with the simulation.log of each run, so they are also checked when no reports were generated.
+     */
+    @Parameter
+    private List<SlaRule> slaRules;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -57,6 +65,7 @@ public class VerifyMojo extends AbstractGatlingExecutionMojo {
                 checkError(line);
                 File directory = new File(resultsFolder, line);
                 searchForAssertionFailures(directory);
+                verifySlaRules(directory);
             }
         }
     }
@@ -77,6 +86,26 @@ public class VerifyMojo extends AbstractGatlingExecutionMojo {
         }
     }
 
+    private void verifySlaRules(File runDirectory) throws IOException, MojoFailureException {
+        if (slaRules == null || slaRules.isEmpty()) {
+            return;
+        }
+        File simulationLog = SimulationLogs.simulationLog(runDirectory);
+        if (!simulationLog.isFile()) {
+            getLog().warn("No " + SimulationLogs.SIMULATION_LOG + " in " + runDirectory + ", SLA rules are not checked.");
+            return;
+        }
+        SimulationLogIndex index = SimulationLogIndex.readIfCurrent(runDirectory);
+        List<String> violations = index != null ? SlaVerifier.verify(index, slaRules) : SlaVerifier.verify(simulationLog, slaRules);
+        if (!violations.isEmpty()) {
+            for (String violation : violations) {
+                getLog().error("SLA violated by " + violation);
+            }
+            throwFailureException("Gatling SLA rules violated in " + runDirectory.getName() + "!");
+        }
+        getLog().info("All " + slaRules.size() + " SLA rules met in " + runDirectory.getName() + ".");
+    }
+
     private void analyzeFile(File assertionFile) throws MojoExecutionException, MojoFailureException {
         AssertionsSummary summary;
         try {
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapacityMojoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InputStream systemIn;
+
+    @BeforeEach
+    void closeSystemIn() {
+        // forks pump System.in into the forked JVM, which blocks on the input of the test JVM
+        systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @AfterEach
+    void restoreSystemIn() {
+        System.setIn(systemIn);
+    }
+
+    @Test
+    void searchesTheHighestRateMeetingTheSla() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+        File reportFile = tempDir.resolve("target/gatling-capacity.tsv").toFile();
+
+        // the stub responds in ten times the rate: 100 ms at 10, 200 ms at 20, 150 ms at 15
+        CapacityMojo mojo = project.createMojo(CapacityMojo.class, "capacity");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        MojoDefaults.set(mojo, "slaRules", Collections.singletonList(new SlaRule("home", null, 95.0, 160L, null, null)));
+        MojoDefaults.set(mojo, "startRate", 10.0);
+        MojoDefaults.set(mojo, "maxSteps", 3);
+        MojoDefaults.set(mojo, "reportFile", reportFile);
+        mojo.execute();
+
+        List<String> gatlingRuns = new ArrayList<>();
+        for (String invocation : project.takeInvocations()) {
+            if (invocation.startsWith("gatling ")) {
+                gatlingRuns.add(invocation);
+            }
+        }
+        assertEquals(Arrays.asList(
+            "gatling shop.BrowseSimulation -Xmx1G -Dgatling.capacity.rate=10",
+            "gatling shop.BrowseSimulation -Xmx1G -Dgatling.capacity.rate=20",
+            "gatling shop.BrowseSimulation -Xmx1G -Dgatling.capacity.rate=15"), gatlingRuns);
+
+        List<String> report = Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, report.size());
+        assertTrue(report.get(1).startsWith("1\t10\tmet\t" + StubProject.REQUESTS + "\t0\t"), report.get(1));
+        assertTrue(report.get(2).startsWith("2\t20\tviolated\t" + StubProject.REQUESTS + "\t0\t"), report.get(2));
+        assertTrue(report.get(3).startsWith("3\t15\tmet\t"), report.get(3));
+
+        String bestRun = report.get(3).split("\t")[6];
+        assertEquals(Collections.singletonList(bestRun),
+            Files.readAllLines(project.getResultsFolder().resolve(AbstractGatlingExecutionMojo.LAST_RUN_FILE), StandardCharsets.UTF_8));
+    }
+}
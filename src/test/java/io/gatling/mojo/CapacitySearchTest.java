@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CapacitySearchTest {
+
+    @Test
+    void doublesThenBisectsUpToPrecision() {
+        assertEquals(Arrays.asList(1.0, 2.0, 4.0, 8.0, 16.0, 32.0, 64.0, 48.0, 40.0, 36.0, 38.0, 37.0), search(new CapacitySearch(1, 1000, 0.05), 37.5));
+    }
+
+    @Test
+    void stopsAtMaxRate() {
+        CapacitySearch search = new CapacitySearch(10, 50, 0.05);
+        assertEquals(Arrays.asList(10.0, 20.0, 40.0, 50.0), search(search, 100));
+        assertEquals(50, search.getHighestMetRate(), 0);
+    }
+
+    @Test
+    void bisectsBelowViolatedStartRate() {
+        CapacitySearch search = new CapacitySearch(8, 100, 0.1);
+        assertEquals(Arrays.asList(8.0, 4.0, 2.0, 3.0, 2.5, 2.75), search(search, 2.8));
+        assertEquals(2.75, search.getHighestMetRate(), 0);
+    }
+
+    private static List<Double> search(CapacitySearch search, double capacity) {
+        List<Double> rates = new ArrayList<>();
+        double rate;
+        while ((rate = search.nextRate()) != CapacitySearch.DONE) {
+            rates.add(rate);
+            search.record(rate, rate <= capacity);
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassDependencyGraphTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ClassDependencyGraph graph;
+
+    @BeforeEach
+    void scanPluginClasses() throws Exception {
+        graph = ClassDependencyGraph.scan(new File("target/classes"), "fingerprint");
+    }
+
+    @Test
+    void dependencies() {
+        assertTrue(graph.dependenciesOf(GatlingMojo.class.getName()).contains(Fork.class.getName()));
+        assertTrue(graph.dependenciesOf(VerifyMojo.class.getName()).contains(AssertionsSummary.class.getName()));
+    }
+
+    @Test
+    void selectsSimulationsNotUpToDate() throws Exception {
+        Path classes = tempDir.resolve("classes");
+        compile(classes,
+            "public class Constants { public static final int USERS = 10; }",
+            "public class Helper { static String name() { return \"one\"; } }",
+            "public class HelperSimulation { String name = Helper.name(); }",
+            "public class ConstantSimulation { int users = Constants.USERS; }",
+            "public class PlainSimulation { }");
+        List<String> simulations = Arrays.asList("HelperSimulation", "ConstantSimulation", "PlainSimulation");
+        File file = tempDir.resolve("graph.txt").toFile();
+
+        ClassDependencyGraph first = ClassDependencyGraph.scan(classes.toFile(), "fingerprint");
+        first.recordSuccessfulRuns(null, simulations);
+        first.write(file);
+        assertEquals(Collections.emptyList(), ClassDependencyGraph.scan(classes.toFile(), "fingerprint").notUpToDate(simulations, ClassDependencyGraph.read(file)));
+        assertEquals(simulations, ClassDependencyGraph.scan(classes.toFile(), "other").notUpToDate(simulations, ClassDependencyGraph.read(file)));
+
+        compile(classes, "public class Helper { static String name() { return \"two\"; } }");
+        ClassDependencyGraph second = ClassDependencyGraph.scan(classes.toFile(), "fingerprint");
+        assertEquals(Collections.singletonList("HelperSimulation"), second.notUpToDate(simulations, ClassDependencyGraph.read(file)));
+
+        // a failed run leaves the simulation selected
+        second.recordSuccessfulRuns(ClassDependencyGraph.read(file), Collections.emptyList());
+        second.write(file);
+        assertEquals(Collections.singletonList("HelperSimulation"),
+            ClassDependencyGraph.scan(classes.toFile(), "fingerprint").notUpToDate(simulations, ClassDependencyGraph.read(file)));
+
+        // only Constants is recompiled, ConstantSimulation keeps the inlined value, and older compilers do not even refer to Constants
+        compile(classes, "public class Constants { public static final int USERS = 20; }");
+        ClassDependencyGraph third = ClassDependencyGraph.scan(classes.toFile(), "fingerprint");
+        assertEquals(Collections.singleton("Constants"), third.changedConstants(ClassDependencyGraph.read(file)));
+        assertEquals(simulations, third.notUpToDate(simulations, ClassDependencyGraph.read(file)));
+    }
+
+    @Test
+    void writeAndRead() throws Exception {
+        File file = tempDir.resolve("graph.txt").toFile();
+        graph.write(file);
+        ClassDependencyGraph read = ClassDependencyGraph.read(file);
+
+        assertEquals("fingerprint", read.getFingerprint());
+        assertEquals(Collections.emptySet(), graph.changedClasses(read));
+        assertEquals(graph.dependenciesOf(GatlingMojo.class.getName()), read.dependenciesOf(GatlingMojo.class.getName()));
+        assertEquals(Collections.emptySet(), graph.changedConstants(read));
+    }
+
+    private static void compile(Path classes, String... sources) throws Exception {
+        Path sourceFolder = Files.createDirectories(classes.resolveSibling("sources"));
+        List<String> arguments = new ArrayList<>(Arrays.asList("-d", Files.createDirectories(classes).toString(), "-cp", classes.toString()));
+        for (String source : sources) {
+            Path file = sourceFolder.resolve(source.replaceAll("(?s).*public class (\\w+).*", "$1") + ".java");
+            Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+            arguments.add(file.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+    }
+}
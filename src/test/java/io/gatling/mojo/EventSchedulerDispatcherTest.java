@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import nl.stokpop.eventscheduler.exception.EventCheckFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventSchedulerDispatcherTest {
+
+    private static final SchedulerExceptionHandler KILL_SWITCH = new SchedulerExceptionHandler() {
+        @Override
+        public void kill(String message) {
+        }
+
+        @Override
+        public void abort(String message) {
+        }
+    };
+
+    @Test
+    void runsTheLifecycleInOrderOnTheThreadOfTheRun() throws Exception {
+        StubEventScheduler scheduler = new StubEventScheduler();
+        EventSchedulerDispatcher dispatcher = new EventSchedulerDispatcher("basicsimulation", scheduler, 1000, new SystemStreamLog());
+
+        dispatcher.startSession(KILL_SWITCH);
+        assertTrue(dispatcher.stopSession());
+        assertFalse(dispatcher.abortSession());
+        dispatcher.checkResults();
+        dispatcher.shutdown();
+
+        assertEquals(EventSchedulerDispatcher.State.STOPPED, dispatcher.getState());
+        assertEquals(Arrays.asList("addKillSwitch", "startSession", "stopSession", "checkResults"), scheduler.calls());
+        assertEquals("eventSchedulerDispatcher-basicsimulation", scheduler.threads().get(1));
+        assertEquals(3, dispatcher.timings().size());
+        assertThrows(IllegalStateException.class, () -> dispatcher.startSession(KILL_SWITCH));
+    }
+
+    @Test
+    void skipsStopAndFailsChecksOfASessionThatDidNotStart() throws Exception {
+        StubEventScheduler scheduler = new StubEventScheduler(call -> {
+            if (call.equals("startSession")) {
+                throw new IllegalStateException("no connection");
+            }
+        });
+        EventSchedulerDispatcher dispatcher = new EventSchedulerDispatcher("basicsimulation", scheduler, 1000, new SystemStreamLog());
+
+        dispatcher.startSession(KILL_SWITCH);
+        dispatcher.stopSession();
+
+        assertEquals(EventSchedulerDispatcher.State.FAILED, dispatcher.getState());
+        EventCheckFailureException failure = assertThrows(EventCheckFailureException.class, dispatcher::checkResults);
+        assertTrue(failure.getMessage().contains("no connection"), failure.getMessage());
+        assertEquals(Arrays.asList("addKillSwitch", "startSession"), scheduler.calls());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void givesUpWaitingForSlowCalls() throws Exception {
+        StubEventScheduler scheduler = new StubEventScheduler(call -> {
+            if (!call.equals("startSession")) {
+                sleep(2000);
+            }
+        });
+        EventSchedulerDispatcher dispatcher = new EventSchedulerDispatcher("basicsimulation", scheduler, 100, new SystemStreamLog());
+
+        dispatcher.startSession(KILL_SWITCH);
+        long start = System.currentTimeMillis();
+        assertTrue(dispatcher.stopSession());
+        EventCheckFailureException failure = assertThrows(EventCheckFailureException.class, dispatcher::checkResults);
+        assertTrue(failure.getMessage().contains("did not finish within 100 ms"), failure.getMessage());
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void callsDirectlyWhenTheDispatcherRejects() throws Exception {
+        StubEventScheduler scheduler = new StubEventScheduler();
+        EventSchedulerDispatcher dispatcher = new EventSchedulerDispatcher("basicsimulation", scheduler, 1000, new SystemStreamLog());
+
+        dispatcher.startSession(KILL_SWITCH);
+        dispatcher.stopSession();
+        dispatcher.shutdown();
+        dispatcher.checkResults();
+
+        assertEquals("checkResults", scheduler.calls().get(3));
+        assertEquals(Thread.currentThread().getName(), scheduler.threads().get(3));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
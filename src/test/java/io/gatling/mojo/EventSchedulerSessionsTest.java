@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventSchedulerSessionsTest {
+
+    private static final SchedulerExceptionHandler KILL_SWITCH = new SchedulerExceptionHandler() {
+        @Override
+        public void kill(String message) {
+        }
+
+        @Override
+        public void abort(String message) {
+        }
+    };
+
+    @Test
+    void startsAndStopsSessionsConcurrently() throws Exception {
+        List<StubEventScheduler> schedulers = Collections.synchronizedList(new ArrayList<>());
+        EventSchedulerSessions sessions = new EventSchedulerSessions(() -> {
+            StubEventScheduler scheduler = new StubEventScheduler();
+            schedulers.add(scheduler);
+            return scheduler;
+        }, 1000, new SystemStreamLog());
+        ExecutorService runs = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> stops = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String runName = "simulation" + i;
+                stops.add(runs.submit(() -> sessions.start(runName, KILL_SWITCH).stopSession()));
+            }
+            for (Future<Boolean> stop : stops) {
+                assertTrue(stop.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            runs.shutdown();
+            sessions.close();
+        }
+
+        assertEquals(8, sessions.sessions().size());
+        for (EventSchedulerDispatcher session : sessions.sessions()) {
+            assertEquals(EventSchedulerDispatcher.State.STOPPED, session.getState());
+        }
+        for (StubEventScheduler scheduler : schedulers) {
+            assertEquals(Arrays.asList("addKillSwitch", "startSession", "stopSession"), scheduler.calls());
+        }
+    }
+
+    @Test
+    void abortsOnlyLiveSessionsInParallelAndOnce() throws Exception {
+        // each abort waits for the other one, which only returns in time when they run in parallel
+        CountDownLatch aborts = new CountDownLatch(2);
+        List<Boolean> parallel = Collections.synchronizedList(new ArrayList<>());
+        List<StubEventScheduler> schedulers = new ArrayList<>();
+        EventSchedulerSessions sessions = new EventSchedulerSessions(() -> {
+            StubEventScheduler scheduler = new StubEventScheduler(call -> {
+                if (call.equals("abortSession")) {
+                    aborts.countDown();
+                    try {
+                        parallel.add(aborts.await(2, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            schedulers.add(scheduler);
+            return scheduler;
+        }, 5000, new SystemStreamLog());
+        try {
+            sessions.start("first", KILL_SWITCH);
+            sessions.start("second", KILL_SWITCH).stopSession();
+            sessions.start("third", KILL_SWITCH);
+
+            assertEquals(2, sessions.abortLiveSessions());
+            assertEquals(Arrays.asList(true, true), parallel);
+            assertEquals(0, sessions.abortLiveSessions());
+        } finally {
+            sessions.close();
+        }
+
+        assertEquals(Arrays.asList("addKillSwitch", "startSession", "abortSession"), schedulers.get(0).calls());
+        assertEquals(Arrays.asList("addKillSwitch", "startSession", "stopSession"), schedulers.get(1).calls());
+        assertEquals(Arrays.asList("addKillSwitch", "startSession", "abortSession"), schedulers.get(2).calls());
+        assertEquals(EventSchedulerDispatcher.State.ABORTED, sessions.sessions().get(2).getState());
+    }
+}
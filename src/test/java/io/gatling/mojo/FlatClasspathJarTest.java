@@ -0,0 +1,94 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FlatClasspathJarTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void flattensJarsAndKeepsDirectories() throws Exception {
+        File classes = Files.createDirectories(tempDir.resolve("classes")).toFile();
+        File first = jar("first.jar",
+            "a/Shared.class", "first",
+            "reference.conf", "key = first",
+            "META-INF/services/x.Provider", "a.FirstProvider",
+            "META-INF/SIGNER.SF", "signature");
+        File second = jar("second.jar",
+            "a/Shared.class", "second",
+            "b/Other.class", "other",
+            "reference.conf", "key = second\nother = second",
+            "META-INF/services/x.Provider", "b.SecondProvider\na.FirstProvider");
+        File cache = tempDir.resolve("cache").toFile();
+
+        List<String> classpath = Arrays.asList(classes.getPath(), first.getPath(), second.getPath());
+        List<String> flattened = FlatClasspathJar.flatten(classpath, cache);
+
+        assertEquals(2, flattened.size());
+        assertEquals(classes.getPath(), flattened.get(0));
+        try (JarFile jar = new JarFile(flattened.get(1))) {
+            assertEquals("first", content(jar, "a/Shared.class"));
+            assertEquals("other", content(jar, "b/Other.class"));
+            assertEquals("key = second\nother = second\nkey = first\n", content(jar, "reference.conf"));
+            assertEquals("a.FirstProvider\nb.SecondProvider\n", content(jar, "META-INF/services/x.Provider"));
+            assertNull(jar.getEntry("META-INF/SIGNER.SF"));
+            assertEquals(ZipEntry.STORED, jar.getEntry("b/Other.class").getMethod());
+        }
+
+        long size = new File(flattened.get(1)).length();
+        assertEquals(flattened, FlatClasspathJar.flatten(classpath, cache));
+        assertEquals(size, new File(flattened.get(1)).length());
+        assertEquals(1, cache.listFiles().length);
+    }
+
+    private File jar(String name, String... entries) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(file.toPath()))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new JarEntry(entries[i]));
+                out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static String content(JarFile jar, String name) throws Exception {
+        try (InputStream in = jar.getInputStream(jar.getEntry(name)); Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForkAdmissionTest {
+
+    private static final long GB = 1L << 30;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void admitsForksWithinBudget() throws Exception {
+        ForkAdmission admission = new ForkAdmission(tempDir.toFile(), 4 * GB, 4, 0, new SystemStreamLog());
+
+        try (ForkAdmission.Lease first = admission.tryAcquire("first", 2 * GB, 1)) {
+            assertNotNull(first);
+            try (ForkAdmission.Lease second = admission.tryAcquire("second", 2 * GB, 1)) {
+                assertNotNull(second);
+                assertNull(admission.tryAcquire("third", GB, 1));
+            }
+            ForkAdmission.Lease third = admission.tryAcquire("third", GB, 3);
+            assertNotNull(third);
+            third.close();
+            assertFalse(third.getFile().exists());
+        }
+    }
+
+    @Test
+    void admitsForkAboveBudgetWhenAlone() throws Exception {
+        ForkAdmission admission = new ForkAdmission(tempDir.toFile(), GB, 1, 0, new SystemStreamLog());
+
+        try (ForkAdmission.Lease lease = admission.tryAcquire("large", 2 * GB, 2)) {
+            assertNotNull(lease);
+            assertNull(admission.tryAcquire("small", 1, 1));
+        }
+    }
+
+    @Test
+    void removesLeasesThatAreNotHeld() throws Exception {
+        File stale = tempDir.resolve((4 * GB) + "-1-stale" + ForkAdmission.LEASE_SUFFIX).toFile();
+        Files.write(stale.toPath(), new byte[0]);
+        ForkAdmission admission = new ForkAdmission(tempDir.toFile(), 4 * GB, 4, 0, new SystemStreamLog());
+
+        try (ForkAdmission.Lease lease = admission.tryAcquire("fork", 2 * GB, 1)) {
+            assertNotNull(lease);
+            assertTrue(lease.getFile().exists());
+        }
+        assertFalse(stale.exists());
+    }
+
+    @Test
+    void timesOutWaitingForResources() throws Exception {
+        ForkAdmission admission = new ForkAdmission(tempDir.toFile(), 0, 1, 1, new SystemStreamLog());
+
+        try (ForkAdmission.Lease ignored = admission.acquire("first", GB, 1)) {
+            assertThrows(IOException.class, () -> admission.acquire("second", GB, 1));
+        }
+    }
+
+    @Test
+    void keepsLeasesOfThisJvmLockedForOtherBuilds() throws Exception {
+        ForkAdmission admission = new ForkAdmission(tempDir.toFile(), 4 * GB, 4, 0, new SystemStreamLog());
+
+        try (ForkAdmission.Lease running = admission.tryAcquire("running", 3 * GB, 1)) {
+            // a second admission of this JVM sees the running lease
+            try (ForkAdmission.Lease ignored = admission.tryAcquire("second", GB, 1)) {
+                assertEquals("refused", otherBuild(2 * GB));
+                assertTrue(running.getFile().exists());
+            }
+        }
+        assertEquals("admitted", otherBuild(2 * GB));
+    }
+
+    /**
+     * @return the admission of a fork by another JVM in the same ledger
+     */
+    private String otherBuild(long memoryBytes) throws Exception {
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), OtherBuild.class.getName(),
+            tempDir.toString(), String.valueOf(memoryBytes))
+            .redirectErrorStream(true)
+            .start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String output = reader.lines().collect(Collectors.joining("\n"));
+            assertEquals(0, process.waitFor(), output);
+            return output.substring(output.lastIndexOf('\n') + 1);
+        }
+    }
+
+    static final class OtherBuild {
+
+        public static void main(String[] args) throws Exception {
+            ForkAdmission admission = new ForkAdmission(new File(args[0]), 4 * GB, 4, 0, new SystemStreamLog());
+            try (ForkAdmission.Lease lease = admission.tryAcquire("other", Long.parseLong(args[1]), 1)) {
+                System.out.println(lease != null ? "admitted" : "refused");
+            }
+        }
+    }
+
+    @Test
+    void parsesHeapOfJvmArguments() {
+        assertEquals(512L << 20, ForkAdmission.heapBytes(Arrays.asList("-Xms1G", "-Xmx512m")));
+        assertEquals(2 * GB, ForkAdmission.heapBytes(Arrays.asList("-Xmx1G", "-Xmx2g")));
+        assertEquals(1024, ForkAdmission.parseSize("1k"));
+        assertEquals(-1, ForkAdmission.parseSize("lots"));
+        assertTrue(ForkAdmission.heapBytes(Collections.emptyList()) >= 0);
+    }
+
+    @Test
+    void readsPhysicalMemory() {
+        assertTrue(ForkAdmission.physicalMemoryBytes() > 0);
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatlingDaemonTest {
+
+    private static final File JAVA = new File(System.getProperty("java.home"), "bin/java");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void servesRunsOfClientsWithTheToken() throws Exception {
+        List<String> classpath = stubClasspath();
+        File daemonFolder = tempDir.resolve("daemons").toFile();
+        GatlingDaemonClient client = new GatlingDaemonClient(daemonFolder, 10000, new SystemStreamLog());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, client.run(JAVA, Collections.singletonList("-Dgatling.test.exitCode=2"), classpath, MojoConstants.GATLING_MAIN_CLASS,
+            Collections.emptyList(), out, new ByteArrayOutputStream()));
+        assertEquals("served", out.toString("UTF-8").trim());
+
+        File stateFile = stateFile(daemonFolder);
+        assertTrue(GatlingDaemon.isPrivate(daemonFolder));
+        assertTrue(GatlingDaemon.isPrivate(stateFile));
+        Properties state = state(stateFile);
+
+        try (Socket socket = connect(state)) {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+            request.writeUTF("not the token");
+            request.flush();
+            assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+        }
+        assertEquals(0, client.run(JAVA, Collections.emptyList(), classpath, MojoConstants.GATLING_MAIN_CLASS, Collections.emptyList(),
+            new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+        assertEquals(state.getProperty(GatlingDaemon.PID), state(stateFile).getProperty(GatlingDaemon.PID));
+    }
+
+    @Test
+    void ignoresStateFilesOthersCanRead() throws Exception {
+        List<String> classpath = stubClasspath();
+        File daemonFolder = tempDir.resolve("daemons").toFile();
+        GatlingDaemonClient client = new GatlingDaemonClient(daemonFolder, 10000, new SystemStreamLog());
+        client.run(JAVA, Collections.emptyList(), classpath, MojoConstants.GATLING_MAIN_CLASS, Collections.emptyList(),
+            new ByteArrayOutputStream(), new ByteArrayOutputStream());
+        File stateFile = stateFile(daemonFolder);
+        String pid = state(stateFile).getProperty(GatlingDaemon.PID);
+
+        Files.setPosixFilePermissions(stateFile.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+        assertFalse(GatlingDaemon.isPrivate(stateFile));
+        client.run(JAVA, Collections.emptyList(), classpath, MojoConstants.GATLING_MAIN_CLASS, Collections.emptyList(),
+            new ByteArrayOutputStream(), new ByteArrayOutputStream());
+
+        assertTrue(GatlingDaemon.isPrivate(stateFile));
+        assertNotEquals(pid, state(stateFile).getProperty(GatlingDaemon.PID));
+    }
+
+    @Test
+    void stopsWhenTheClientDisconnectsDuringARun() throws Exception {
+        List<String> classpath = stubClasspath();
+        File daemonFolder = tempDir.resolve("daemons").toFile();
+        GatlingDaemonClient client = new GatlingDaemonClient(daemonFolder, 10000, new SystemStreamLog());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CompletableFuture<Integer> run = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.run(JAVA, Collections.singletonList("-Dgatling.test.sleep=true"), classpath, MojoConstants.GATLING_MAIN_CLASS,
+                    Collections.emptyList(), out, new ByteArrayOutputStream());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!out.toString("UTF-8").contains("sleeping")) {
+            assertTrue(System.currentTimeMillis() < deadline, "the run did not start");
+            Thread.sleep(50);
+        }
+        Properties state = state(stateFile(daemonFolder));
+        client.stop();
+
+        assertThrows(Exception.class, () -> run.get(10, TimeUnit.SECONDS));
+        deadline = System.currentTimeMillis() + 10000;
+        while (isListening(state)) {
+            assertTrue(System.currentTimeMillis() < deadline, "the daemon did not exit");
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * @return the classpath of the test JVM, with a stub Gatling main that prints, sleeps and exits as its system properties say
+     */
+    private List<String> stubClasspath() throws Exception {
+        Path classes = Files.createDirectories(tempDir.resolve("classes"));
+        Path sources = Files.createDirectories(tempDir.resolve("sources"));
+        Path option = sources.resolve("Option.java");
+        Files.write(option, "package scala; public class Option { public static Option apply(Object value) { return new Option(); } }"
+            .getBytes(StandardCharsets.UTF_8));
+        Path gatling = sources.resolve("Gatling.java");
+        Files.write(gatling, ("package io.gatling.app; public class Gatling {"
+            + " public static int fromArgs(String[] args, scala.Option simulation) throws Exception {"
+            + "  if (Boolean.getBoolean(\"gatling.test.sleep\")) { System.out.println(\"sleeping\"); Thread.sleep(60000); }"
+            + "  System.out.println(\"served\");"
+            + "  return Integer.getInteger(\"gatling.test.exitCode\", 0); } }").getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, "-d", classes.toString(), option.toString(), gatling.toString()));
+
+        List<String> classpath = new ArrayList<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        classpath.add(classes.toString());
+        return classpath;
+    }
+
+    private static File stateFile(File daemonFolder) {
+        File[] stateFiles = daemonFolder.listFiles((dir, name) -> name.endsWith(".properties"));
+        assertEquals(1, stateFiles.length);
+        return stateFiles[0];
+    }
+
+    private static Properties state(File stateFile) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+            state.load(in);
+        }
+        return state;
+    }
+
+    private static Socket connect(Properties state) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty(GatlingDaemon.PORT))), 1000);
+        return socket;
+    }
+
+    private static boolean isListening(Properties state) {
+        try (Socket ignored = connect(state)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GatlingMojoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InputStream systemIn;
+
+    @BeforeEach
+    void closeSystemIn() {
+        // forks pump System.in into the forked JVM, which blocks on the input of the test JVM
+        systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @AfterEach
+    void restoreSystemIn() {
+        System.setIn(systemIn);
+    }
+
+    @Test
+    void generatesReportsFromASampleAndKeepsTheCompleteLog() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+
+        GatlingMojo mojo = project.createMojo(GatlingMojo.class, "test");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        MojoDefaults.set(mojo, "reportSampleSize", 5);
+        mojo.execute();
+
+        List<String> lastRun = Files.readAllLines(project.getResultsFolder().resolve(AbstractGatlingExecutionMojo.LAST_RUN_FILE), StandardCharsets.UTF_8);
+        assertEquals(1, lastRun.size());
+        String runName = lastRun.get(0);
+        assertEquals(Arrays.asList("compiler", "gatling shop.BrowseSimulation -Xmx1G", "reports " + runName), project.takeInvocations());
+
+        File runDirectory = project.getResultsFolder().resolve(runName).toFile();
+        assertEquals(1 + StubProject.REQUESTS, Files.readAllLines(SimulationLogs.simulationLog(runDirectory).toPath(), StandardCharsets.UTF_8).size());
+        assertTrue(SimulationLogs.hasReport(runDirectory));
+        assertTrue(new File(runDirectory, SimulationLogSampler.COUNTS_FILE).isFile());
+        assertFalse(new File(runDirectory, SimulationLogSampler.SAMPLE_FOLDER).exists());
+    }
+
+    @Test
+    void keepsTheAlphabeticalOrderOfSimulationsRunningOneAtATime() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+        project.addSimulation("shop", "CheckoutSimulation");
+        File historyFile = tempDir.resolve("history.properties").toFile();
+        SimulationHistory history = new SimulationHistory();
+        history.record("shop.CheckoutSimulation", 60000);
+        history.write(historyFile);
+
+        GatlingMojo mojo = project.createMojo(GatlingMojo.class, "test");
+        MojoDefaults.set(mojo, "runMultipleSimulations", true);
+        MojoDefaults.set(mojo, "simulationHistoryFile", historyFile);
+        mojo.execute();
+
+        List<String> invocations = project.takeInvocations();
+        assertEquals(Arrays.asList("compiler", "gatling shop.BrowseSimulation -Xmx1G", "gatling shop.CheckoutSimulation -Xmx1G"), invocations.subList(0, 3));
+        SimulationHistory recorded = SimulationHistory.read(historyFile);
+        assertTrue(recorded.durationMillis("shop.BrowseSimulation") < 60000);
+        assertTrue(recorded.durationMillis("shop.CheckoutSimulation") < 60000);
+    }
+
+    @Test
+    void stopsAKilledRunGracefullyAndReportsItsPartialResults() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+
+        KilledGatlingMojo mojo = project.createMojo(KilledGatlingMojo.class, "test");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        MojoDefaults.set(mojo, "jvmArgs", Arrays.asList("-Dstub.runMillis=60000", "-Dstub.stopMillis=0"));
+        MojoDefaults.set(mojo, "overrideJvmArgs", true);
+        long start = System.nanoTime();
+        mojo.execute();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30), "the run was not stopped");
+        File runDirectory = mojo.killedRun.get(0, TimeUnit.SECONDS).toFile();
+        assertTrue(new File(runDirectory, StubProject.FLUSHED_FILE).isFile(), "the run did not flush its results");
+        assertEquals(Arrays.asList("compiler", "gatling shop.BrowseSimulation -Xmx1G", "reports " + runDirectory.getName()), project.takeInvocations());
+        assertTrue(SimulationLogs.hasReport(runDirectory));
+        assertEquals(Arrays.asList("addKillSwitch", "startSession", "stopSession", "checkResults"), mojo.eventScheduler.calls());
+    }
+
+    @Test
+    void destroysAKilledRunThatDoesNotStopInTime() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+
+        KilledGatlingMojo mojo = project.createMojo(KilledGatlingMojo.class, "test");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        MojoDefaults.set(mojo, "jvmArgs", Arrays.asList("-Dstub.runMillis=60000", "-Dstub.stopMillis=60000"));
+        MojoDefaults.set(mojo, "overrideJvmArgs", true);
+        MojoDefaults.set(mojo, "gracefulStopTimeoutInSeconds", 1);
+        long start = System.nanoTime();
+        mojo.execute();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30), "the run was not destroyed");
+        File runDirectory = mojo.killedRun.get(0, TimeUnit.SECONDS).toFile();
+        assertFalse(new File(runDirectory, StubProject.FLUSHED_FILE).exists(), "the run was not destroyed");
+        assertEquals(Arrays.asList("compiler", "gatling shop.BrowseSimulation -Xmx1G", "reports " + runDirectory.getName()), project.takeInvocations());
+        assertTrue(SimulationLogs.hasReport(runDirectory));
+    }
+
+    /**
+     * Gatling goal whose event scheduler kills the run as soon as it wrote its simulation.log, as a kill switch does.
+     */
+    static class KilledGatlingMojo extends GatlingMojo {
+
+        final StubEventScheduler eventScheduler = new StubEventScheduler();
+        final CompletableFuture<Path> killedRun = new CompletableFuture<>();
+
+        @Override
+        EventSchedulerSessions createEventSchedulerSessions() {
+            CompletableFuture.runAsync(this::killOnceRunning);
+            return new EventSchedulerSessions(() -> eventScheduler, 10000, getLog());
+        }
+
+        private void killOnceRunning() {
+            try {
+                Path results = resultsFolder.toPath();
+                while (true) {
+                    if (eventScheduler.killSwitch() != null && Files.isDirectory(results)) {
+                        try (Stream<Path> runs = Files.list(results)) {
+                            Optional<Path> run = runs.filter(directory -> SimulationLogs.hasSimulationLog(directory.toFile())).findFirst();
+                            if (run.isPresent()) {
+                                eventScheduler.killSwitch().kill("stub kill switch");
+                                killedRun.complete(run.get());
+                                return;
+                            }
+                        }
+                    }
+                    Thread.sleep(100);
+                }
+            } catch (Exception e) {
+                killedRun.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HarSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void filtersDeduplicatesAndSplits() throws Exception {
+        String har = "{\"log\":{\"version\":\"1.2\",\"pages\":[{\"id\":\"page_1\"}],\"entries\":["
+            + entry("https://shop.example.com/login", "1") + ","
+            + entry("https://shop.example.com/login", "1") + ","
+            + entry("https://shop.example.com/app.js?v=3", "2") + ","
+            + entry("https://www.tracker.example.org/collect", "3") + ","
+            + entry("https://shop.example.com/cart", "4") + ","
+            + entry("https://shop.example.com/checkout", "5")
+            + "]}}";
+        File harFile = tempDir.resolve("capture.har").toFile();
+        Files.write(harFile.toPath(), har.getBytes(StandardCharsets.UTF_8));
+
+        HarSplitter splitter = new HarSplitter(HarSplitter.DEFAULT_STATIC_RESOURCES, Collections.singletonList("tracker.example.org"), 2, 100);
+        List<File> chunks = splitter.split(harFile, tempDir.resolve("chunks").toFile(), "Shop");
+
+        assertEquals(6, splitter.getEntries());
+        assertEquals(1, splitter.getDuplicateEntries());
+        assertEquals(1, splitter.getStaticResourceEntries());
+        assertEquals(1, splitter.getIgnoredHostEntries());
+        assertEquals(2, chunks.size());
+        assertEquals("ShopPart1.har", chunks.get(0).getName());
+        assertEquals(2, countEntries(chunks.get(0)));
+        assertEquals(1, countEntries(chunks.get(1)));
+    }
+
+    @Test
+    void deduplicatesEntriesThatOnlyDifferInTimings() throws Exception {
+        String har = "{\"log\":{\"entries\":["
+            + timedEntry("https://shop.example.com/login", "1", "12", "3") + ","
+            + timedEntry("https://shop.example.com/login", "7", "40", "9") + ","
+            + timedEntry("https://shop.example.com/logout", "8", "40", "9")
+            + "]}}";
+        File harFile = tempDir.resolve("recapture.har").toFile();
+        Files.write(harFile.toPath(), har.getBytes(StandardCharsets.UTF_8));
+
+        HarSplitter splitter = new HarSplitter(Collections.emptyList(), Collections.emptyList(), 10, 100);
+        List<File> chunks = splitter.split(harFile, tempDir.resolve("chunks").toFile(), "Shop");
+
+        assertEquals(3, splitter.getEntries());
+        assertEquals(1, splitter.getDuplicateEntries());
+        assertEquals(2, countEntries(chunks.get(0)));
+    }
+
+    @Test
+    void deduplicatesEntriesThatOnlyDifferInResponseHeaders() throws Exception {
+        String har = "{\"log\":{\"entries\":["
+            + respondedEntry("Tue, 01 Sep 2020 10:00:01 GMT", "session=1", "<html/>") + ","
+            + respondedEntry("Tue, 01 Sep 2020 10:00:07 GMT", "session=2", "<html/>") + ","
+            + respondedEntry("Tue, 01 Sep 2020 10:00:08 GMT", "session=2", "<html>changed</html>")
+            + "]}}";
+        File harFile = tempDir.resolve("recapture.har").toFile();
+        Files.write(harFile.toPath(), har.getBytes(StandardCharsets.UTF_8));
+
+        HarSplitter splitter = new HarSplitter(Collections.emptyList(), Collections.emptyList(), 10, 100);
+        List<File> chunks = splitter.split(harFile, tempDir.resolve("chunks").toFile(), "Shop");
+
+        assertEquals(3, splitter.getEntries());
+        assertEquals(1, splitter.getDuplicateEntries());
+        assertEquals(2, countEntries(chunks.get(0)));
+    }
+
+    @Test
+    void derivesClassNamesFromFileNames() {
+        assertEquals("CheckoutFlow", HarSplitter.classNameFor("checkout-flow.har"));
+        assertEquals("MyCapture2", HarSplitter.classNameFor("my capture_2.HAR"));
+        assertEquals("Har2020Login", HarSplitter.classNameFor("2020-login.har"));
+    }
+
+    private static String entry(String url, String time) {
+        return "{\"startedDateTime\":\"2020-01-01T00:00:0" + time + ".000Z\",\"request\":{\"method\":\"GET\",\"url\":\"" + url
+            + "\",\"headers\":[{\"name\":\"Referer\",\"value\":\"https://shop.example.com/\"}]},"
+            + "\"response\":{\"status\":200,\"content\":{\"mimeType\":\"text/html\",\"text\":\"<html/>\"}}}";
+    }
+
+    private static String timedEntry(String url, String second, String time, String wait) {
+        return "{\"startedDateTime\":\"2020-01-01T00:00:0" + second + ".000Z\",\"time\":" + time
+            + ",\"request\":{\"method\":\"GET\",\"url\":\"" + url + "\"},\"response\":{\"status\":200},"
+            + "\"timings\":{\"send\":1,\"wait\":" + wait + ",\"receive\":2}}";
+    }
+
+    private static String respondedEntry(String date, String cookie, String body) {
+        return "{\"startedDateTime\":\"2020-09-01T10:00:00.000Z\",\"request\":{\"method\":\"GET\",\"url\":\"https://shop.example.com/\"},"
+            + "\"response\":{\"status\":200,\"headers\":[{\"name\":\"Date\",\"value\":\"" + date + "\"},"
+            + "{\"name\":\"Set-Cookie\",\"value\":\"" + cookie + "\"}],\"content\":{\"mimeType\":\"text/html\",\"text\":\"" + body + "\"}}}";
+    }
+
+    private static int countEntries(File chunk) throws Exception {
+        int entries = 0;
+        try (JsonParser parser = new JsonFactory().createParser(chunk)) {
+            while (parser.nextToken() != null) {
+                if (parser.getCurrentToken() == JsonToken.FIELD_NAME && "startedDateTime".equals(parser.getCurrentName())) {
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+}
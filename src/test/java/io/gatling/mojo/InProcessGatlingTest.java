@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InProcessGatlingTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runsIsolatedWithScopedSystemProperties() throws Exception {
+        Path classes = tempDir.resolve("classes");
+        compile(classes,
+            "package scala; public class Option { public static Option apply(Object value) { return new Option(); } }",
+            "package io.gatling.app; public class Gatling { public static int fromArgs(String[] args, scala.Option simulation) {"
+                + " if (Gatling.class.getClassLoader() == ClassLoader.getSystemClassLoader()) { return -1; }"
+                + " return Integer.parseInt(System.getProperty(\"gatling.test.exitCode\")); } }");
+
+        InProcessGatling gatling = new InProcessGatling(1000, new SystemStreamLog());
+        int exitCode = gatling.run(Collections.singletonList(classes.toString()), MojoConstants.GATLING_MAIN_CLASS, Arrays.asList("-rf", "results"),
+            Collections.singletonMap("gatling.test.exitCode", "2"));
+
+        assertEquals(2, exitCode);
+        assertNull(System.getProperty("gatling.test.exitCode"));
+    }
+
+    @Test
+    void trapsExitOfTheRunAndRemovesTheTrap() throws Exception {
+        Path classes = tempDir.resolve("classes");
+        compile(classes,
+            "package scala; public class Option { public static Option apply(Object value) { return new Option(); } }",
+            "package io.gatling.app; public class Gatling { public static int fromArgs(String[] args, scala.Option simulation) {"
+                + " System.exit(3); return 0; } }");
+
+        InProcessGatling gatling = new InProcessGatling(1000, new SystemStreamLog());
+        int exitCode = gatling.run(Collections.singletonList(classes.toString()), MojoConstants.GATLING_MAIN_CLASS, Collections.emptyList(),
+            Collections.emptyMap());
+
+        assertEquals(3, exitCode);
+        assertNull(System.getSecurityManager());
+    }
+
+    @Test
+    void removesTheTrapOfAnAbandonedRun() throws Exception {
+        Path classes = tempDir.resolve("classes");
+        compile(classes,
+            "package scala; public class Option { public static Option apply(Object value) { return new Option(); } }",
+            "package io.gatling.app; public class Gatling { public static int fromArgs(String[] args, scala.Option simulation) {"
+                + " long end = System.currentTimeMillis() + 5000;"
+                + " while (System.currentTimeMillis() < end) { try { Thread.sleep(100); } catch (InterruptedException e) { /* ignored */ } }"
+                + " return 0; } }");
+
+        InProcessGatling gatling = new InProcessGatling(200, new SystemStreamLog());
+        CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+        Thread run = new Thread(() -> {
+            try {
+                exitCode.complete(gatling.run(Collections.singletonList(classes.toString()), MojoConstants.GATLING_MAIN_CLASS,
+                    Collections.emptyList(), Collections.emptyMap()));
+            } catch (Exception e) {
+                exitCode.completeExceptionally(e);
+            }
+        });
+        run.start();
+        while (System.getSecurityManager() == null) {
+            Thread.sleep(10);
+        }
+        // the run thread starts right after the trap
+        Thread.sleep(300);
+        gatling.stop();
+
+        assertEquals(MojoConstants.STOPPED_EXIT_CODE, exitCode.get(5, TimeUnit.SECONDS));
+        assertNull(System.getSecurityManager());
+    }
+
+    private static void compile(Path classes, String... sources) throws Exception {
+        Path sourceFolder = Files.createDirectories(classes.resolveSibling("sources"));
+        String[] arguments = new String[sources.length + 2];
+        arguments[0] = "-d";
+        arguments[1] = Files.createDirectories(classes).toString();
+        for (int i = 0; i < sources.length; i++) {
+            Path source = sourceFolder.resolve(sources[i].replaceAll("(?s).*public class (\\w+).*", "$1") + ".java");
+            Files.write(source, sources[i].getBytes(StandardCharsets.UTF_8));
+            arguments[i + 2] = source.toString();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments));
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JvmStatsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sumsTheJvmsOfTheFile() throws Exception {
+        File file = tempDir.resolve("stats.tsv").toFile();
+        Files.write(file.toPath(), ("2000000000\t10000\t12\t150\t40\t4\n"
+            + "1000000000\t10000\t3\t30\t55\t4\n"
+            + "3000000000\t100").getBytes(StandardCharsets.UTF_8));
+
+        JvmStats stats = JvmStats.read(file);
+
+        assertEquals(2, stats.getJvms());
+        assertEquals(3.0, stats.getCpuSeconds(), 1e-9);
+        assertEquals(3.75, stats.getCpuPercent(), 1e-9);
+        assertEquals(15, stats.getGcCount());
+        assertEquals(180, stats.getGcPauseMillis());
+        assertEquals(55, stats.getGcMaxPauseMillis());
+    }
+
+    @Test
+    void skipsCollectorsReportingCycles() {
+        assertTrue(JvmStats.isPauseCollector("G1 Young Generation"));
+        assertTrue(JvmStats.isPauseCollector("ZGC Pauses"));
+        assertFalse(JvmStats.isPauseCollector("ZGC Cycles"));
+        assertFalse(JvmStats.isPauseCollector("Shenandoah Cycles"));
+        assertFalse(JvmStats.isPauseCollector("ConcurrentMarkSweep"));
+    }
+}
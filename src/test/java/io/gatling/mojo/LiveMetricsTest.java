@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveMetricsTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void servesMetricsOfGrowingLog() throws Exception {
+        byte[] content = Files.readAllBytes(SIMULATION_LOG.toPath());
+        Path run = Files.createDirectories(tempDir.resolve("basicsimulation-1"));
+        Path log = run.resolve(SimulationLogs.SIMULATION_LOG);
+        // cut in the middle of a line, which must wait for the next poll
+        int cut = content.length / 2;
+        Files.write(log, Arrays.copyOf(content, cut));
+
+        try (LiveMetrics metrics = new LiveMetrics(tempDir.toFile(), Collections.emptySet(), new SystemStreamLog())) {
+            assertTrue(metrics.start("localhost", 0, 60_000));
+            metrics.poll();
+            assertTrue(metrics.render().contains("gatling_active_users{simulation=\"computerdatabase.BasicSimulation\",scenario=\"Scenario Name\"}"));
+
+            Files.write(log, Arrays.copyOfRange(content, cut, content.length), StandardOpenOption.APPEND);
+            metrics.poll();
+
+            String body;
+            try (InputStream in = new URL("http://localhost:" + metrics.getPort() + LiveMetrics.PATH).openStream()) {
+                body = new String(readAll(in), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("gatling_requests_total{simulation=\"computerdatabase.BasicSimulation\",request=\"checkout / pay\",status=\"KO\"} 5\n"), body);
+            assertTrue(body.contains("gatling_requests_total{simulation=\"computerdatabase.BasicSimulation\",request=\"home\",status=\"OK\"} 100\n"), body);
+            assertTrue(body.contains("gatling_active_users{simulation=\"computerdatabase.BasicSimulation\",scenario=\"Scenario Name\"} 0\n"), body);
+            assertTrue(body.contains("gatling_response_time_milliseconds{simulation=\"computerdatabase.BasicSimulation\",request=\"home\",quantile=\"0.95\"} 144\n"), body);
+            assertTrue(body.contains("gatling_response_time_milliseconds_count{simulation=\"computerdatabase.BasicSimulation\",request=\"home\"} 100\n"), body);
+            assertEquals(1, body.split("gatling_request_rate\\{").length - 1);
+        }
+    }
+
+    @Test
+    void goesOnWithoutMetricsWhenThePortIsInUse() throws Exception {
+        try (ServerSocket otherModule = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+             LiveMetrics metrics = new LiveMetrics(tempDir.toFile(), Collections.emptySet(), new SystemStreamLog())) {
+            assertFalse(metrics.start("localhost", otherModule.getLocalPort(), 60_000));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatrixMojoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InputStream systemIn;
+
+    @BeforeEach
+    void closeSystemIn() {
+        // forks pump System.in into the forked JVM, which blocks on the input of the test JVM
+        systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @AfterEach
+    void restoreSystemIn() {
+        System.setIn(systemIn);
+    }
+
+    @Test
+    void runsTheSimulationOncePerProfile() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+        File reportFile = tempDir.resolve("target/gatling-matrix.tsv").toFile();
+
+        MatrixMojo mojo = project.createMojo(MatrixMojo.class, "matrix");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        MojoDefaults.set(mojo, "jvmProfiles", Arrays.asList(profile("small", "-Xmx256m"), profile("large", "-Xmx384m")));
+        MojoDefaults.set(mojo, "reportFile", reportFile);
+        mojo.execute();
+
+        List<String> gatlingRuns = new ArrayList<>();
+        for (String invocation : project.takeInvocations()) {
+            if (invocation.startsWith("gatling ")) {
+                gatlingRuns.add(invocation);
+            }
+        }
+        // the last heap size wins, the one of the profile
+        assertEquals(Arrays.asList("gatling shop.BrowseSimulation -Xmx1G -Xmx256m", "gatling shop.BrowseSimulation -Xmx1G -Xmx384m"), gatlingRuns);
+
+        List<String> report = Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, report.size());
+        for (int i = 1; i < report.size(); i++) {
+            String[] columns = report.get(i).split("\t");
+            assertEquals(i == 1 ? "small" : "large", columns[0]);
+            assertEquals("build", columns[1]);
+            assertEquals(String.valueOf(StubProject.REQUESTS), columns[8]);
+            assertEquals("ok", columns[15]);
+            assertTrue(SimulationLogs.hasSimulationLog(project.getResultsFolder().resolve(columns[16]).toFile()), columns[16]);
+        }
+    }
+
+    @Test
+    void leavesTheDefaultCollectorOutOfProfilesSelectingAnother() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        project.addSimulation("shop", "BrowseSimulation");
+        File reportFile = tempDir.resolve("target/gatling-matrix.tsv").toFile();
+
+        MatrixMojo mojo = project.createMojo(MatrixMojo.class, "matrix");
+        MojoDefaults.set(mojo, "simulationClass", "shop.BrowseSimulation");
+        // the JVM refuses to start with two collectors
+        MojoDefaults.set(mojo, "jvmProfiles", Arrays.asList(profile("g1", "-Xmx256m"), profile("parallel", "-XX:+UseParallelGC")));
+        MojoDefaults.set(mojo, "reportFile", reportFile);
+        mojo.execute();
+
+        List<String> report = Files.readAllLines(reportFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, report.size());
+        for (int i = 1; i < report.size(); i++) {
+            String[] columns = report.get(i).split("\t");
+            assertEquals(i == 1 ? "g1" : "parallel", columns[0]);
+            assertEquals("ok", columns[15]);
+        }
+    }
+
+    private static JvmProfile profile(String name, String jvmArg) throws Exception {
+        JvmProfile profile = new JvmProfile();
+        MojoDefaults.set(profile, "name", name);
+        MojoDefaults.set(profile, "jvmArgs", Collections.singletonList(jvmArg));
+        return profile;
+    }
+}
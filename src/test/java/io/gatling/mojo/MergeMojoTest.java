@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergeMojoTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    private InputStream systemIn;
+
+    @BeforeEach
+    void closeSystemIn() {
+        // forks pump System.in into the forked JVM, which blocks on the input of the test JVM
+        systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @AfterEach
+    void restoreSystemIn() {
+        System.setIn(systemIn);
+    }
+
+    @Test
+    void mergesRunsAndGeneratesTheirReport() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        List<String> lines = Files.readAllLines(SIMULATION_LOG.toPath(), StandardCharsets.UTF_8);
+        List<String> first = new ArrayList<>(Collections.singletonList(lines.get(0)));
+        List<String> second = new ArrayList<>(Collections.singletonList(lines.get(0)));
+        for (int i = 1; i < lines.size(); i++) {
+            (i % 2 == 0 ? first : second).add(lines.get(i));
+        }
+        Path firstRun = Files.createDirectories(project.getResultsFolder().resolve("basicsimulation-1"));
+        Path secondRun = Files.createDirectories(tempDir.resolve("other-machine/basicsimulation-2"));
+        Files.write(firstRun.resolve("simulation.log"), first, StandardCharsets.UTF_8);
+        Files.write(secondRun.resolve("simulation.log"), second, StandardCharsets.UTF_8);
+        Files.write(secondRun.resolve("gatling.log"), Collections.singletonList("console output of the run"), StandardCharsets.UTF_8);
+
+        MergeMojo mojo = project.createMojo(MergeMojo.class, "merge");
+        MojoDefaults.set(mojo, "runDirectories", Arrays.asList("basicsimulation-1", secondRun.toString()));
+        mojo.execute();
+
+        List<String> lastRun = Files.readAllLines(project.getResultsFolder().resolve(AbstractGatlingExecutionMojo.LAST_RUN_FILE), StandardCharsets.UTF_8);
+        assertEquals(1, lastRun.size());
+        String merged = lastRun.get(0);
+        assertTrue(merged.startsWith("merged-"), merged);
+        assertEquals(Collections.singletonList("reports " + merged), project.takeInvocations());
+
+        File mergedRun = project.getResultsFolder().resolve(merged).toFile();
+        assertTrue(SimulationLogs.hasReport(mergedRun));
+        assertEquals(lines.size(), Files.readAllLines(SimulationLogs.simulationLog(mergedRun).toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void failsOnARunDirectoryWithoutSimulationLog() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        Path run = Files.createDirectories(project.getResultsFolder().resolve("basicsimulation-1"));
+        Files.write(run.resolve("gatling.log"), Collections.singletonList("console output of the run"), StandardCharsets.UTF_8);
+
+        MergeMojo mojo = project.createMojo(MergeMojo.class, "merge");
+        MojoDefaults.set(mojo, "runDirectories", Collections.singletonList("basicsimulation-1"));
+        MojoExecutionException e = assertThrows(MojoExecutionException.class, mojo::execute);
+        assertTrue(e.getMessage().contains("simulation.log"), e.getMessage());
+        assertEquals(Collections.emptyList(), project.takeInvocations());
+    }
+}
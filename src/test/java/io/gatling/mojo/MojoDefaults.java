@@ -0,0 +1,172 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates mojos initialised like Maven does, from the default values of their {@literal @Parameter} declarations in the
+ * generated plugin descriptor, for a project in the given base directory.
+ * <p>
+ * Only the expressions of the project layout and of system properties are evaluated. Parameters defaulting to other
+ * expressions, such as {@literal ${project}} or {@literal ${session}}, are left for the caller to set. Unset collection
+ * and array parameters are empty, as Maven configures them.
+ */
+final class MojoDefaults {
+
+  private static final Pattern EXPRESSION = Pattern.compile("\\$\\{([^}]+)}");
+
+  private MojoDefaults() {
+  }
+
+  static <T> T create(Class<T> mojoType, String goal, File baseDirectory) throws Exception {
+    T mojo = mojoType.getDeclaredConstructor().newInstance();
+    Map<String, String> values = new HashMap<>();
+    values.put("basedir", baseDirectory.getPath());
+    values.put("project.basedir", baseDirectory.getPath());
+    values.put("project.build.directory", new File(baseDirectory, "target").getPath());
+    values.put("project.build.outputDirectory", new File(baseDirectory, "target/classes").getPath());
+    values.put("project.build.testOutputDirectory", new File(baseDirectory, "target/test-classes").getPath());
+
+    for (Element parameter : configuration(goal)) {
+      Field field = field(mojoType, parameter.getTagName());
+      if (field == null) {
+        continue;
+      }
+      field.setAccessible(true);
+      String defaultValue = parameter.getAttribute("default-value");
+      if (!defaultValue.isEmpty()) {
+        String value = evaluate(defaultValue, values);
+        if (value != null) {
+          field.set(mojo, convert(value, field.getType()));
+        }
+      } else if (field.getType() == List.class) {
+        // Maven configures an unset collection or array parameter as an empty one
+        field.set(mojo, new ArrayList<>());
+      } else if (field.getType() == String[].class) {
+        field.set(mojo, new String[0]);
+      }
+    }
+    return mojo;
+  }
+
+  /**
+   * Sets a field of the mojo or of one of its super classes.
+   */
+  static void set(Object mojo, String fieldName, Object value) throws ReflectiveOperationException {
+    Field field = field(mojo.getClass(), fieldName);
+    if (field == null) {
+      throw new NoSuchFieldException(fieldName);
+    }
+    field.setAccessible(true);
+    field.set(mojo, value);
+  }
+
+  private static List<Element> configuration(String goal) throws Exception {
+    File descriptor = new File(MojoUtils.locateJar(GatlingMojo.class), "META-INF/maven/plugin.xml");
+    if (!descriptor.isFile()) {
+      throw new IllegalStateException("No plugin descriptor " + descriptor + ", it is generated in the process-classes phase");
+    }
+    NodeList mojos = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(descriptor).getElementsByTagName("mojo");
+    for (int i = 0; i < mojos.getLength(); i++) {
+      Element mojo = (Element) mojos.item(i);
+      if (goal.equals(mojo.getElementsByTagName("goal").item(0).getTextContent())) {
+        List<Element> parameters = new ArrayList<>();
+        NodeList configurations = mojo.getElementsByTagName("configuration");
+        if (configurations.getLength() > 0) {
+          NodeList children = configurations.item(0).getChildNodes();
+          for (int j = 0; j < children.getLength(); j++) {
+            if (children.item(j).getNodeType() == Node.ELEMENT_NODE) {
+              parameters.add((Element) children.item(j));
+            }
+          }
+        }
+        return parameters;
+      }
+    }
+    throw new IllegalArgumentException("No goal " + goal + " in " + descriptor);
+  }
+
+  /**
+   * @return the value with its expressions replaced, or null when it has an expression that is not known
+   */
+  private static String evaluate(String value, Map<String, String> values) {
+    Matcher matcher = EXPRESSION.matcher(value);
+    StringBuffer result = new StringBuffer();
+    while (matcher.find()) {
+      String expression = matcher.group(1);
+      String replacement = values.containsKey(expression) ? values.get(expression) : System.getProperty(expression);
+      if (replacement == null) {
+        return null;
+      }
+      matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
+
+  private static Object convert(String value, Class<?> type) {
+    if (type == String.class) {
+      return value;
+    } else if (type == File.class) {
+      return new File(value);
+    } else if (type == boolean.class || type == Boolean.class) {
+      return Boolean.parseBoolean(value);
+    } else if (type == int.class || type == Integer.class) {
+      return Integer.parseInt(value);
+    } else if (type == long.class || type == Long.class) {
+      return Long.parseLong(value);
+    } else if (type == double.class || type == Double.class) {
+      return Double.parseDouble(value);
+    } else if (type.isEnum()) {
+      return enumValue(type, value);
+    } else if (type == String[].class) {
+      return value.split(",");
+    } else if (type == List.class) {
+      return new ArrayList<>(Arrays.asList(value.split(",")));
+    }
+    throw new IllegalArgumentException("Can not convert default value " + value + " to " + type);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object enumValue(Class<?> type, String value) {
+    return Enum.valueOf((Class<? extends Enum>) type, value);
+  }
+
+  private static Field field(Class<?> type, String name) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      try {
+        return current.getDeclaredField(name);
+      } catch (NoSuchFieldException e) {
+        // look in the super class
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressWatchdogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void abortsStalledRunAfterThreadDump() throws Exception {
+        File runDirectory = Files.createDirectory(tempDir.resolve("simulation-1")).toFile();
+        File heartbeat = tempDir.resolve("heartbeat.txt").toFile();
+        File log = SimulationLogs.simulationLog(runDirectory);
+        AtomicLong output = new AtomicLong();
+        List<String> aborts = new ArrayList<>();
+        ProgressWatchdog watchdog = new ProgressWatchdog("MySimulation", () -> log.exists() ? runDirectory : null, tempDir.toFile(),
+            heartbeat, output::get, new File("jcmd"), handler(aborts), 10000, new SystemStreamLog());
+
+        // before the log exists output and CPU time count as progress
+        assertFalse(watchdog.check(0));
+        output.set(100);
+        assertFalse(watchdog.check(9000));
+        Files.write(heartbeat.toPath(), "1234 5000".getBytes(StandardCharsets.UTF_8));
+        assertFalse(watchdog.check(18000));
+
+        // afterwards only the growth of the log does, the console summary and CPU time of stuck users do not
+        Files.write(log.toPath(), "RUN\tMySimulation\n".getBytes(StandardCharsets.UTF_8));
+        assertFalse(watchdog.check(27000));
+        output.set(200);
+        Files.write(heartbeat.toPath(), "1234 9000".getBytes(StandardCharsets.UTF_8));
+        assertFalse(watchdog.check(36000));
+        assertTrue(aborts.isEmpty());
+
+        // answer the thread dump request like the heartbeat thread of the forked JVM
+        Thread child = new Thread(() -> {
+            try {
+                File request = ProgressWatchdog.dumpRequestFile(heartbeat);
+                while (!request.exists()) {
+                    Thread.sleep(10);
+                }
+                MainWithArgsInFile.writeThreadDump(new File(new String(Files.readAllBytes(request.toPath()), StandardCharsets.UTF_8)));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        child.start();
+        assertTrue(watchdog.check(37000));
+        child.join();
+
+        assertEquals(1, aborts.size());
+        assertTrue(aborts.get(0).startsWith("No progress of MySimulation for 10 s"), aborts.get(0));
+        File[] dumps = runDirectory.listFiles((dir, name) -> name.startsWith(ProgressWatchdog.THREAD_DUMP_PREFIX));
+        assertEquals(1, dumps.length);
+        assertTrue(new String(Files.readAllBytes(dumps[0].toPath()), StandardCharsets.UTF_8).contains("\"main\""));
+    }
+
+    private static SchedulerExceptionHandler handler(List<String> aborts) {
+        return new SchedulerExceptionHandler() {
+            @Override
+            public void kill(String message) {
+                throw new UnsupportedOperationException(message);
+            }
+
+            @Override
+            public void abort(String message) {
+                aborts.add(message);
+            }
+        };
+    }
+}
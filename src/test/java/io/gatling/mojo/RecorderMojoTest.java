@@ -0,0 +1,149 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecorderMojoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private InputStream systemIn;
+
+    @BeforeEach
+    void closeSystemIn() {
+        // forks pump System.in into the forked JVM, which blocks on the input of the test JVM
+        systemIn = System.in;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @AfterEach
+    void restoreSystemIn() {
+        System.setIn(systemIn);
+    }
+
+    @Test
+    void splitsEachHarFileAtTheChunkSize() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        Path harFolder = Files.createDirectories(tempDir.resolve("har"));
+        writeHar(harFolder.resolve("checkout.har"), 5);
+        writeHar(harFolder.resolve("login.har"), 2);
+        writeHar(harFolder.resolve("search.har"), 3);
+
+        RecorderMojo mojo = createMojo(project, harFolder);
+        MojoDefaults.set(mojo, "harChunkSize", 2);
+        mojo.execute();
+
+        assertEquals(Arrays.asList(
+            "recorder CheckoutPart1", "recorder CheckoutPart2", "recorder CheckoutPart3",
+            "recorder Login",
+            "recorder SearchPart1", "recorder SearchPart2"), sorted(project.takeInvocations()));
+        File simulations = tempDir.resolve("src/test/scala/shop").toFile();
+        assertTrue(new File(simulations, "CheckoutPart3.scala").isFile());
+        assertTrue(new File(simulations, "Login.scala").isFile());
+    }
+
+    @Test
+    void skipsUnchangedFilesWithAnExistingSimulation() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        Path harFolder = Files.createDirectories(tempDir.resolve("har"));
+        writeHar(harFolder.resolve("checkout.har"), 1);
+        writeHar(harFolder.resolve("login.har"), 1);
+        writeHar(harFolder.resolve("search.har"), 1);
+
+        createMojo(project, harFolder).execute();
+        assertEquals(Arrays.asList("recorder Checkout", "recorder Login", "recorder Search"), sorted(project.takeInvocations()));
+
+        createMojo(project, harFolder).execute();
+        assertEquals(Collections.emptyList(), project.takeInvocations());
+
+        writeHar(harFolder.resolve("login.har"), 2);
+        Files.delete(tempDir.resolve("src/test/scala/shop/Search.scala"));
+        createMojo(project, harFolder).execute();
+        assertEquals(Arrays.asList("recorder Login", "recorder Search"), sorted(project.takeInvocations()));
+
+        RecorderMojo otherSettings = createMojo(project, harFolder);
+        MojoDefaults.set(otherSettings, "harDeduplicationWindow", 1);
+        otherSettings.execute();
+        assertEquals(3, project.takeInvocations().size());
+    }
+
+    @Test
+    void reportsFailedConversionsAfterAllOthersRan() throws Exception {
+        StubProject project = new StubProject(tempDir);
+        Path harFolder = Files.createDirectories(tempDir.resolve("har"));
+        writeHar(harFolder.resolve("broken.har"), 1);
+        writeHar(harFolder.resolve("checkout.har"), 1);
+        writeHar(harFolder.resolve("login.har"), 1);
+
+        MojoFailureException failure = assertThrows(MojoFailureException.class, () -> createMojo(project, harFolder).execute());
+        assertTrue(failure.getMessage().contains("broken.har"), failure.getMessage());
+        assertEquals(Arrays.asList("recorder Broken", "recorder Checkout", "recorder Login"), sorted(project.takeInvocations()));
+
+        assertThrows(MojoFailureException.class, () -> createMojo(project, harFolder).execute());
+        assertEquals(Collections.singletonList("recorder Broken"), project.takeInvocations());
+    }
+
+    private static RecorderMojo createMojo(StubProject project, Path harFolder) throws Exception {
+        RecorderMojo mojo = project.createMojo(RecorderMojo.class, "recorder");
+        MojoDefaults.set(mojo, "packageName", "shop");
+        MojoDefaults.set(mojo, "harFolder", harFolder.toFile());
+        return mojo;
+    }
+
+    /**
+     * Writes a HAR file with distinct entries.
+     */
+    private static void writeHar(Path file, int entries) throws Exception {
+        StringBuilder har = new StringBuilder("{\"log\":{\"version\":\"1.2\",\"entries\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                har.append(',');
+            }
+            har.append("{\"request\":{\"method\":\"GET\",\"url\":\"https://shop.example.com/")
+                .append(file.getFileName()).append('/').append(i)
+                .append("\"},\"response\":{\"status\":200}}");
+        }
+        har.append("]}}");
+        Files.write(file, har.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> sorted(List<String> invocations) {
+        List<String> sorted = new ArrayList<>(invocations);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SimulationClassLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadsClassesOfItsFoldersAgainForEachRun() throws Exception {
+        String path = SimulationHistoryTest.class.getName().replace('.', '/') + ".class";
+        File classFile = tempDir.resolve(path).toFile();
+        Files.createDirectories(classFile.getParentFile().toPath());
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(path)) {
+            Files.copy(in, classFile.toPath());
+        }
+
+        ClassLoader parent = getClass().getClassLoader();
+        try (SimulationClassLoader first = new SimulationClassLoader(new URL[]{tempDir.toUri().toURL()}, parent);
+             SimulationClassLoader second = new SimulationClassLoader(new URL[]{tempDir.toUri().toURL()}, parent)) {
+            Class<?> simulation = first.loadClass(SimulationHistoryTest.class.getName());
+            assertSame(first, simulation.getClassLoader());
+            assertNotSame(simulation, second.loadClass(SimulationHistoryTest.class.getName()));
+            assertSame(SimulationHistory.class, first.loadClass(SimulationHistory.class.getName()));
+        }
+    }
+
+    @Test
+    void restoresSystemProperties() {
+        System.setProperty("gatling.test.kept", "before");
+        try (SystemPropertiesScope ignored = SystemPropertiesScope.set(Collections.singletonMap("gatling.test.added", "run"))) {
+            System.setProperty("gatling.test.kept", "changed");
+            assertEquals("run", System.getProperty("gatling.test.added"));
+        } finally {
+            assertEquals("before", System.getProperty("gatling.test.kept"));
+            assertNull(System.getProperty("gatling.test.added"));
+            System.clearProperty("gatling.test.kept");
+        }
+    }
+}
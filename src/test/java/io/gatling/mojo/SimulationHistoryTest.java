@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SimulationHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void ordersLongestFirstWithUnknownBeforeAll() throws Exception {
+        SimulationHistory history = SimulationHistory.read(tempDir.resolve("missing.properties").toFile());
+        history.record("a.Short", 1000);
+        history.record("b.Long", 5000);
+        assertEquals(Arrays.asList("c.New", "b.Long", "a.Short"), history.longestFirst(Arrays.asList("a.Short", "b.Long", "c.New")));
+    }
+
+    @Test
+    void expectsLongestSlotWhenPacked() throws Exception {
+        SimulationHistory history = SimulationHistory.read(tempDir.resolve("missing.properties").toFile());
+        history.record("a", 6000);
+        history.record("b", 4000);
+        history.record("c", 3000);
+        history.record("d", 3000);
+        assertEquals(16000, history.expectedMillis(Arrays.asList("a", "b", "c", "d"), 1));
+        assertEquals(9000, history.expectedMillis(Arrays.asList("a", "b", "c", "d"), 2));
+    }
+
+    @Test
+    void averagesWithPreviousRunAfterWriteAndRead() throws Exception {
+        File file = tempDir.resolve("history.properties").toFile();
+        SimulationHistory history = SimulationHistory.read(file);
+        history.record("a", 2000);
+        history.write(file);
+
+        SimulationHistory read = SimulationHistory.read(file);
+        read.record("a", 4000);
+        assertEquals(Long.valueOf(3000), read.durationMillis("a"));
+    }
+}
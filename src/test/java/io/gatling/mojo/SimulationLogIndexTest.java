@@ -0,0 +1,115 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationLogIndexTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void answersLikeTheSimulationLog() throws Exception {
+        File runDirectory = copyRun();
+        SimulationLogIndex index = SimulationLogIndex.write(runDirectory);
+        assertTrue(SimulationLogIndex.indexFile(runDirectory).length() < SIMULATION_LOG.length() / 4);
+
+        RunAggregates expected = RunAggregates.of(SIMULATION_LOG);
+        RunAggregates actual = RunAggregates.of(index);
+        assertEquals(expected.getSimulationClassName(), actual.getSimulationClassName());
+        assertEquals(expected.getRunStart(), actual.getRunStart());
+        assertEquals(expected.getDurationSeconds(), actual.getDurationSeconds());
+        assertEquals(expected.getRequests().keySet(), actual.getRequests().keySet());
+        for (Map.Entry<String, RunAggregates.RequestStats> entry : expected.getRequests().entrySet()) {
+            RunAggregates.RequestStats stats = actual.getRequests().get(entry.getKey());
+            assertEquals(entry.getValue().getCount(), stats.getCount(), entry.getKey());
+            assertEquals(entry.getValue().getFailures(), stats.getFailures(), entry.getKey());
+            assertEquals(entry.getValue().getHistogram().getMean(), stats.getHistogram().getMean(), 1e-9, entry.getKey());
+            for (double percentile : new double[]{0, 50, 95, 99, 100}) {
+                assertEquals(entry.getValue().getHistogram().getValueAtPercentile(percentile), stats.getHistogram().getValueAtPercentile(percentile), entry.getKey());
+            }
+        }
+
+        List<SlaRule> rules = Arrays.asList(
+            new SlaRule(null, null, null, null, null, 20.0),
+            new SlaRule("home", null, 95.0, 143L, null, null),
+            new SlaRule("checkout / .*", null, null, null, 4.0, null),
+            new SlaRule(null, "checkout", 90.0, 1000L, null, null));
+        assertEquals(SlaVerifier.verify(SIMULATION_LOG, rules), SlaVerifier.verify(index, rules));
+    }
+
+    @Test
+    void queriesTimeBuckets() throws Exception {
+        SimulationLogIndex index = SimulationLogIndex.write(copyRun());
+        for (SimulationLogIndex.Series series : index.getSeries()) {
+            long middle = series.getFirstStart() + (series.getLastEnd() - series.getFirstStart()) / 2;
+            long split = middle - Math.floorMod(middle, index.getBucketMillis());
+            long before = series.stats(Long.MIN_VALUE, split).getCount();
+            long after = series.stats(split, Long.MAX_VALUE).getCount();
+            assertEquals(series.getCount(), before + after, series.getPath());
+        }
+    }
+
+    @Test
+    void ignoresIndexOfChangedLog() throws Exception {
+        File runDirectory = copyRun();
+        SimulationLogIndex.write(runDirectory);
+        assertNotNull(SimulationLogIndex.readIfCurrent(runDirectory));
+
+        Files.write(SimulationLogs.simulationLog(runDirectory).toPath(), "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertNull(SimulationLogIndex.readIfCurrent(runDirectory));
+    }
+
+    @Test
+    void ignoresIndexOfOtherVersion() throws Exception {
+        File runDirectory = copyRun();
+        SimulationLogIndex.write(runDirectory);
+        File indexFile = SimulationLogIndex.indexFile(runDirectory);
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "rw")) {
+            index.seek(4);
+            index.writeByte(1);
+        }
+        assertNull(SimulationLogIndex.readIfCurrent(runDirectory));
+    }
+
+    private File copyRun() throws Exception {
+        File runDirectory = tempDir.resolve("run").toFile();
+        if (!runDirectory.isDirectory()) {
+            Files.createDirectories(runDirectory.toPath());
+            Files.copy(SIMULATION_LOG.toPath(), SimulationLogs.simulationLog(runDirectory).toPath());
+        }
+        return runDirectory;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationLogMergerTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mergesRunsInTimeOrder() throws Exception {
+        List<String> lines = Files.readAllLines(SIMULATION_LOG.toPath(), StandardCharsets.UTF_8);
+        String assertion = "ASSERTION\tAQBnbG9iYWw=";
+        List<String> first = new ArrayList<>(Arrays.asList(lines.get(0), assertion));
+        List<String> second = new ArrayList<>(Arrays.asList(lines.get(0).replace("1577836800000", "1577836800050"), assertion));
+        for (int i = 1; i < lines.size(); i++) {
+            (i % 3 == 0 ? first : second).add(lines.get(i));
+        }
+        File firstLog = tempDir.resolve("first.log").toFile();
+        File secondLog = tempDir.resolve("second.log").toFile();
+        Files.write(firstLog.toPath(), first, StandardCharsets.UTF_8);
+        Files.write(secondLog.toPath(), second, StandardCharsets.UTF_8);
+
+        File merged = tempDir.resolve("merged/simulation.log").toFile();
+        assertEquals(lines.size() + 1, SimulationLogMerger.merge(Arrays.asList(secondLog, firstLog), merged, "merged from 2 runs"));
+
+        List<String> mergedLines = Files.readAllLines(merged.toPath(), StandardCharsets.UTF_8);
+        assertEquals("RUN\tcomputerdatabase.BasicSimulation\tbasicsimulation\t1577836800000\tmerged from 2 runs\t3.1.3", mergedLines.get(0));
+        assertEquals(assertion, mergedLines.get(1));
+        long previous = 0;
+        for (String line : mergedLines.subList(2, mergedLines.size())) {
+            long time = SimulationLogMerger.recordTime(line);
+            assertTrue(time >= previous, line);
+            previous = time;
+        }
+        assertEquals(RunAggregates.of(SIMULATION_LOG).getRequests().keySet(), RunAggregates.of(merged).getRequests().keySet());
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationLogSamplerTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void samplesOkRecordsKeepingAllKoRecordsAndExactCounts() throws Exception {
+        File runDirectory = tempDir.toFile();
+        List<String> lines = new ArrayList<>(Files.readAllLines(SIMULATION_LOG.toPath(), StandardCharsets.UTF_8));
+        lines.add(1, "ASSERTION\tAAEAAAA=");
+        Files.write(SimulationLogs.simulationLog(runDirectory).toPath(), lines, StandardCharsets.UTF_8);
+        File sampledLog = SimulationLogSampler.sampledLog(runDirectory);
+
+        assertEquals(40 / 300.0, SimulationLogSampler.sample(runDirectory, sampledLog, 10, 42), 0.0001);
+
+        assertEquals(lines, Files.readAllLines(SimulationLogs.simulationLog(runDirectory).toPath(), StandardCharsets.UTF_8));
+        List<String> sampled = Files.readAllLines(sampledLog.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1 + 200 + 40, sampled.size());
+        assertFalse(sampled.stream().anyMatch(line -> line.startsWith("ASSERTION\t")));
+        assertTrue(sampled.get(0).endsWith("\tsampled 13.33% of 300 records, all 10 KO kept\t3.1.3"), sampled.get(0));
+        assertEquals(10, sampled.stream().filter(line -> line.contains("\tKO")).count());
+        long previous = 0;
+        for (String line : sampled) {
+            long time = SimulationLogMerger.recordTime(line);
+            assertTrue(time >= previous, line);
+            previous = time;
+        }
+        assertEquals(Arrays.asList(
+            "record\tcount\tko\tkept",
+            "GROUP checkout\t100\t5\t15",
+            "REQUEST checkout / pay\t100\t5\t15",
+            "REQUEST home\t100\t0\t10"),
+            Files.readAllLines(new File(runDirectory, SimulationLogSampler.COUNTS_FILE).toPath()));
+    }
+
+    @Test
+    void keepsSmallLogsUnchanged() throws Exception {
+        File runDirectory = tempDir.toFile();
+        Files.copy(SIMULATION_LOG.toPath(), SimulationLogs.simulationLog(runDirectory).toPath());
+
+        File sampledLog = SimulationLogSampler.sampledLog(runDirectory);
+
+        assertEquals(1, SimulationLogSampler.sample(runDirectory, sampledLog, 100, 42));
+        assertFalse(sampledLog.exists());
+        assertEquals(Files.readAllLines(SIMULATION_LOG.toPath()), Files.readAllLines(SimulationLogs.simulationLog(runDirectory).toPath()));
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationLogTrimmerTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void cutsWarmUpOutOfLog() throws Exception {
+        File runDirectory = tempDir.toFile();
+        Files.copy(SIMULATION_LOG.toPath(), SimulationLogs.simulationLog(runDirectory).toPath());
+
+        // users start every 100 ms and last 10 s, only user 1 ends before the cutoff
+        assertEquals(300, SimulationLogTrimmer.trimWarmUp(runDirectory, 10150));
+
+        List<String> trimmed = Files.readAllLines(SimulationLogs.simulationLog(runDirectory).toPath(), StandardCharsets.UTF_8);
+        assertEquals(201, trimmed.size());
+        assertEquals("RUN\tcomputerdatabase.BasicSimulation\tbasicsimulation\t1577836810150\twarm-up of 10 s excluded\t3.1.3", trimmed.get(0));
+        assertEquals(99, trimmed.stream().filter(line -> line.contains("\tSTART\t1577836810150\t1577836810150")).count());
+        assertTrue(trimmed.contains("USER\tScenario Name\t2\tEND\t1577836810150\t1577836810200"));
+        assertEquals(
+            "REQUEST\t100\tcheckout\tpay\t1577836810200\t1577836811390\tKO\tstatus.find.is(200), but actually found 500\n" +
+            "GROUP\t100\tcheckout\t1577836810200\t1577836811390\t1190\tKO",
+            trimmed.stream().filter(line -> !line.startsWith("USER") && !line.startsWith("RUN")).collect(Collectors.joining("\n")));
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SimulationLogsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void truncatesIncompleteLastLine() throws Exception {
+        File log = write("RUN\tsim\n" + "REQUEST\t1\t\tlogin\t1\t2\tOK\t \n" + "REQUEST\t1\t\tlog");
+        assertEquals(14, SimulationLogs.truncateIncompleteLastLine(log));
+        assertEquals("RUN\tsim\n" + "REQUEST\t1\t\tlogin\t1\t2\tOK\t \n", read(log));
+    }
+
+    @Test
+    void keepsCompleteFile() throws Exception {
+        File log = write("RUN\tsim\n");
+        assertEquals(0, SimulationLogs.truncateIncompleteLastLine(log));
+        assertEquals("RUN\tsim\n", read(log));
+    }
+
+    @Test
+    void emptiesFileWithoutCompleteLine() throws Exception {
+        File log = write("RUN\tsi");
+        assertEquals(6, SimulationLogs.truncateIncompleteLastLine(log));
+        assertEquals("", read(log));
+    }
+
+    private File write(String content) throws Exception {
+        Path file = tempDir.resolve(SimulationLogs.SIMULATION_LOG);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
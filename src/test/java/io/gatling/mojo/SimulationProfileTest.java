@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SimulationProfileTest {
+
+    @Test
+    void findsFirstMatchingProfile() {
+        SimulationProfile smoke = profile(Arrays.asList("com.example.smoke.*", "com.example.ApiCheck"), null, null);
+        SimulationProfile all = profile(Collections.singletonList("*"), "8g", null);
+        List<SimulationProfile> profiles = Arrays.asList(smoke, all);
+
+        assertSame(smoke, SimulationProfile.find(profiles, "com.example.smoke.LoginSimulation"));
+        assertSame(smoke, SimulationProfile.find(profiles, "com.example.ApiCheck"));
+        assertSame(all, SimulationProfile.find(profiles, "com.example.load.PeakSimulation"));
+        assertNull(SimulationProfile.find(Collections.singletonList(smoke), "com.example.load.PeakSimulation"));
+        assertNull(SimulationProfile.find(null, "com.example.ApiCheck"));
+    }
+
+    @Test
+    void replacesHeapAndGarbageCollector() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("users", "10");
+        SimulationProfile profile = new SimulationProfile(Collections.singletonList("*"), "256m", "Parallel",
+            Collections.singletonList("-XX:MaxInlineLevel=9"), properties, null);
+
+        List<String> jvmArgs = profile.applyTo(Arrays.asList("-server", "-Xms1G", "-Xmx1G", "-XX:+UseG1GC", "-XX:+ParallelRefProcEnabled"));
+
+        assertEquals(Arrays.asList("-server", "-Xms256m", "-Xmx256m", "-XX:+UseParallelGC", "-XX:MaxInlineLevel=9", "-Dusers=10"), jvmArgs);
+    }
+
+    @Test
+    void keepsTheCollectorOptionsWhenOnlyTheHeapIsReplaced() {
+        SimulationProfile profile = profile(Collections.singletonList("*"), "2g", null);
+
+        List<String> jvmArgs = profile.applyTo(Arrays.asList("-Xmx1G", "-XX:+UseG1GC", "-XX:+ParallelRefProcEnabled", "-XX:G1HeapRegionSize=4m"));
+
+        assertEquals(Arrays.asList("-XX:+UseG1GC", "-XX:+ParallelRefProcEnabled", "-XX:G1HeapRegionSize=4m", "-Xms2g", "-Xmx2g"), jvmArgs);
+    }
+
+    @Test
+    void keepsJvmArgumentsWithoutOverrides() {
+        SimulationProfile profile = profile(Collections.singletonList("*"), null, null);
+        List<String> jvmArgs = Arrays.asList("-Xmx1G", "-XX:+UseG1GC");
+
+        assertEquals(jvmArgs, profile.applyTo(jvmArgs));
+    }
+
+    private static SimulationProfile profile(List<String> simulations, String heap, String gc) {
+        return new SimulationProfile(simulations, heap, gc, null, null, null);
+    }
+}
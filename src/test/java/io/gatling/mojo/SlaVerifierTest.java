@@ -0,0 +1,72 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlaVerifierTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/sla-simulation-log/simulation.log");
+
+    @Test
+    void rulesMet() throws Exception {
+        List<SlaRule> rules = Arrays.asList(
+            new SlaRule(null, null, null, null, 3.0, 15.0),
+            new SlaRule("home", null, 95.0, 144L, 0.0, null),
+            new SlaRule(null, "checkout", 90.0, 1100L, null, null));
+        assertEquals(Collections.emptyList(), SlaVerifier.verify(SIMULATION_LOG, rules));
+    }
+
+    @Test
+    void rulesViolated() throws Exception {
+        List<SlaRule> rules = Arrays.asList(
+            new SlaRule(null, null, null, null, null, 20.0),
+            new SlaRule("home", null, 95.0, 143L, null, null),
+            new SlaRule("checkout / .*", null, null, null, 4.0, null),
+            new SlaRule("nope", null, null, 1000L, null, null));
+        assertEquals(Arrays.asList(
+            "all requests, throughput >= 20.0 rps: all requests has throughput 17.56 rps",
+            "requests 'home', p95 <= 143 ms: home has p95 144 ms",
+            "requests 'checkout / .*', error rate <= 4.0%: checkout / pay has error rate 5.00%",
+            "requests 'nope', p100 <= 1000 ms: no matching records"),
+            SlaVerifier.verify(SIMULATION_LOG, rules));
+    }
+
+    @Test
+    void histogramPercentilesWithinPrecision() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            (value % 2 == 0 ? first : second).record(value);
+        }
+        first.add(second);
+        assertEquals(100_000, first.getTotalCount());
+        assertEquals(1, first.getMin());
+        assertEquals(100_000, first.getMax());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = (long) (percentile * 1000);
+            long actual = first.getValueAtPercentile(percentile);
+            assertEquals(exact, actual, exact / (double) LatencyHistogram.HALF_SUB_BUCKET_COUNT, "p" + percentile);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SoakReporterTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reportsTrendAndRequestsOfGrowingLog() throws Exception {
+        File runDirectory = tempDir.toFile();
+        File log = SimulationLogs.simulationLog(runDirectory);
+        List<String> lines = Files.readAllLines(SIMULATION_LOG.toPath(), StandardCharsets.UTF_8);
+        Files.write(log.toPath(), lines.subList(0, 250), StandardCharsets.UTF_8);
+
+        try (SoakReporter reporter = new SoakReporter("computerdatabase.BasicSimulation", () -> runDirectory, 5000, new SystemStreamLog())) {
+            reporter.poll();
+            reporter.report();
+            assertTrue(report(runDirectory).contains("<td>home</td><td>66</td>"), report(runDirectory));
+
+            Files.write(log.toPath(), lines.subList(250, lines.size()), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        String report = report(runDirectory);
+        assertTrue(report.contains("<td>home</td><td>100</td><td>0.00</td>"), report);
+        assertTrue(report.contains("<td>checkout / pay</td><td>100</td><td>5.00</td>"), report);
+        assertTrue(report.contains("<tr><td>2020-01-01 00:00:05 UTC</td>"), report);
+        assertEquals(1 + 5 + 1 + 2, report.split("<tr>").length - 1);
+        assertTrue(report.contains("a last time when it ends, next to the final report of the run in index.html"), report);
+    }
+
+    private static String report(File runDirectory) throws Exception {
+        return new String(Files.readAllBytes(new File(runDirectory, SoakReporter.REPORT_FILE).toPath()), StandardCharsets.UTF_8);
+    }
+}
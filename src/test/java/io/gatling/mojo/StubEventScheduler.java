@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import nl.stokpop.eventscheduler.api.SchedulerExceptionHandler;
+import nl.stokpop.eventscheduler.exception.EventCheckFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event scheduler that records its calls, with the thread they ran on, and runs the given behaviour for each call.
+ */
+final class StubEventScheduler implements EventSchedulerDispatcher.Lifecycle {
+
+    interface Behaviour {
+        void on(String call) throws EventCheckFailureException;
+    }
+
+    private final List<String> calls = new ArrayList<>();
+    private final List<String> threads = new ArrayList<>();
+    private final Behaviour behaviour;
+    private volatile SchedulerExceptionHandler killSwitch;
+
+    StubEventScheduler() {
+        this(call -> { });
+    }
+
+    StubEventScheduler(Behaviour behaviour) {
+        this.behaviour = behaviour;
+    }
+
+    /**
+     * @return the calls so far, in order
+     */
+    synchronized List<String> calls() {
+        return new ArrayList<>(calls);
+    }
+
+    /**
+     * @return the names of the threads of the calls so far, in order
+     */
+    synchronized List<String> threads() {
+        return new ArrayList<>(threads);
+    }
+
+    /**
+     * @return the handler the run added to kill or abort it, null before
+     */
+    SchedulerExceptionHandler killSwitch() {
+        return killSwitch;
+    }
+
+    @Override
+    public void addKillSwitch(SchedulerExceptionHandler schedulerExceptionHandler) {
+        killSwitch = schedulerExceptionHandler;
+        record("addKillSwitch");
+    }
+
+    @Override
+    public void startSession() {
+        call("startSession");
+    }
+
+    @Override
+    public void stopSession() {
+        call("stopSession");
+    }
+
+    @Override
+    public void abortSession() {
+        call("abortSession");
+    }
+
+    @Override
+    public void checkResults() throws EventCheckFailureException {
+        record("checkResults");
+        behaviour.on("checkResults");
+    }
+
+    private void call(String call) {
+        record(call);
+        try {
+            behaviour.on(call);
+        } catch (EventCheckFailureException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized void record(String call) {
+        calls.add(call);
+        threads.add(Thread.currentThread().getName());
+    }
+}
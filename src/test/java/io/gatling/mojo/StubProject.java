@@ -0,0 +1,300 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.RepositorySystem;
+import org.apache.maven.toolchain.ToolchainManager;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Maven project in the default layout with stub Gatling main classes, to run goals end to end without network or
+ * repository access. The stubs record their invocations in {@literal target/invocations.log}.
+ * <ul>
+ * <li>{@code io.gatling.recorder.GatlingRecorder} writes an empty simulation for its {@literal -cn} argument and fails
+ * for class names starting with {@literal Broken}</li>
+ * <li>{@code io.gatling.compiler.ZincCompiler} compiles nothing, the simulations are compiled by {@link #addSimulation}</li>
+ * <li>{@code io.gatling.app.Gatling} writes a run directory with a simulation.log of {@value #REQUESTS} requests, their
+ * response time is ten times the {@literal gatling.capacity.rate} system property, 100 ms when not set. With
+ * {@literal -ro} it only writes the index.html of the run directory. With the {@literal stub.runMillis} system property
+ * it keeps running that long after writing the simulation.log, and its shutdown hook takes {@literal stub.stopMillis}
+ * to write a {@value #FLUSHED_FILE} file in the run directory, as Gatling flushes its results when it is stopped.
+ * It exits with 2, as for failed assertions, for simulation class names starting with {@literal Failing}.</li>
+ * </ul>
+ * The invocations are recorded with their time, once the stub main runs and, for Gatling, once the simulation is
+ * instantiated, so the launch latency harness of the benchmarks measures the goals with the same project.
+ */
+final class StubProject {
+
+    private static final String INVOCATIONS_FILE = "invocations.log";
+
+    static final int REQUESTS = 20;
+
+    static final String FLUSHED_FILE = "flushed";
+
+    private static final String RECORD =
+        "  public static java.nio.file.Path target(Class<?> anchor) throws Exception {\n" +
+        "    return java.nio.file.Paths.get(anchor.getProtectionDomain().getCodeSource().getLocation().toURI()).getParent();\n" +
+        "  }\n" +
+        "  public static synchronized void record(Class<?> anchor, String invocation) throws Exception {\n" +
+        "    java.time.Instant now = java.time.Instant.now();\n" +
+        "    long micros = java.util.concurrent.TimeUnit.SECONDS.toMicros(now.getEpochSecond()) + now.getNano() / 1000;\n" +
+        "    java.nio.file.Files.write(target(anchor).resolve(\"" + INVOCATIONS_FILE + "\"), (micros + \"\\t\" + invocation + \"\\n\").getBytes(),\n" +
+        "      java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.APPEND);\n" +
+        "  }\n" +
+        "  public static String arg(String[] args, String flag) {\n" +
+        "    int index = java.util.Arrays.asList(args).indexOf(\"-\" + flag);\n" +
+        "    return index < 0 ? null : args[index + 1];\n" +
+        "  }\n";
+
+    private final Path directory;
+    private final Path classesDirectory;
+    private final Path sourcesDirectory;
+
+    StubProject(Path directory) throws IOException {
+        this.directory = directory;
+        this.classesDirectory = Files.createDirectories(directory.resolve("target/test-classes"));
+        this.sourcesDirectory = Files.createDirectories(directory.resolve("target/stub-sources"));
+        Files.createDirectories(directory.resolve("src/test/resources"));
+        Files.createDirectories(directory.resolve("src/test/scala"));
+        compile(source("io.gatling.recorder", "GatlingRecorder",
+            "public class GatlingRecorder {\n" +
+            "  public static void main(String[] args) throws Exception {\n" +
+            "    String className = arg(args, \"cn\");\n" +
+            "    record(GatlingRecorder.class, \"recorder \" + className);\n" +
+            "    if (className.startsWith(\"Broken\")) {\n" +
+            "      System.exit(1);\n" +
+            "    }\n" +
+            "    String packageName = arg(args, \"pkg\");\n" +
+            "    java.nio.file.Path folder = java.nio.file.Paths.get(arg(args, \"sf\"), packageName == null ? \"\" : packageName.replace('.', '/'));\n" +
+            "    java.nio.file.Files.createDirectories(folder);\n" +
+            "    java.nio.file.Files.write(folder.resolve(className + \".scala\"), (\"// \" + arg(args, \"hf\") + \"\\n\").getBytes());\n" +
+            "  }\n" +
+            RECORD +
+            "}"),
+            source("io.gatling.compiler", "ZincCompiler",
+            "public class ZincCompiler {\n" +
+            "  public static void main(String[] args) throws Exception {\n" +
+            "    io.gatling.recorder.GatlingRecorder.record(ZincCompiler.class, \"compiler\");\n" +
+            "  }\n" +
+            "}"),
+            source("io.gatling.core.scenario", "Simulation", "public abstract class Simulation {}"),
+            source("io.gatling.app", "Gatling",
+            "public class Gatling {\n" +
+            "  public static void main(String[] args) throws Exception {\n" +
+            "    java.nio.file.Path results = java.nio.file.Paths.get(io.gatling.recorder.GatlingRecorder.arg(args, \"rf\"));\n" +
+            "    String reportsOnly = io.gatling.recorder.GatlingRecorder.arg(args, \"ro\");\n" +
+            "    if (reportsOnly != null) {\n" +
+            "      io.gatling.recorder.GatlingRecorder.record(Gatling.class, \"reports \" + reportsOnly);\n" +
+            "      java.nio.file.Files.write(results.resolve(reportsOnly).resolve(\"index.html\"), \"<html/>\".getBytes());\n" +
+            "      return;\n" +
+            "    }\n" +
+            "    String simulation = io.gatling.recorder.GatlingRecorder.arg(args, \"s\");\n" +
+            "    Thread.currentThread().getContextClassLoader().loadClass(simulation).getDeclaredConstructor().newInstance();\n" +
+            "    StringBuilder invocation = new StringBuilder(\"gatling \" + simulation);\n" +
+            "    for (String jvmArg : java.lang.management.ManagementFactory.getRuntimeMXBean().getInputArguments()) {\n" +
+            "      if (jvmArg.startsWith(\"-Xmx\") || jvmArg.startsWith(\"-Dgatling.capacity.rate=\")) {\n" +
+            "        invocation.append(' ').append(jvmArg);\n" +
+            "      }\n" +
+            "    }\n" +
+            "    io.gatling.recorder.GatlingRecorder.record(Gatling.class, invocation.toString());\n" +
+            "    long responseTime = Math.round(Double.parseDouble(System.getProperty(\"gatling.capacity.rate\", \"10\")) * 10);\n" +
+            "    long start = System.currentTimeMillis();\n" +
+            "    String id = simulation.substring(simulation.lastIndexOf('.') + 1).toLowerCase();\n" +
+            "    java.nio.file.Path runDirectory = results.resolve(id + \"-\" + System.nanoTime());\n" +
+            "    java.nio.file.Files.createDirectories(runDirectory);\n" +
+            "    StringBuilder log = new StringBuilder(\"RUN\\t\" + simulation + \"\\t\" + id + \"\\t\" + start + \"\\t \\t3.1.3\\n\");\n" +
+            "    for (int i = 0; i < " + REQUESTS + "; i++) {\n" +
+            "      long requestStart = start + i * 100;\n" +
+            "      log.append(\"REQUEST\\t1\\t\\thome\\t\").append(requestStart).append(\"\\t\").append(requestStart + responseTime).append(\"\\tOK\\t \\n\");\n" +
+            "    }\n" +
+            "    long runMillis = Long.getLong(\"stub.runMillis\", 0L);\n" +
+            "    if (runMillis > 0) {\n" +
+            "      long stopMillis = Long.getLong(\"stub.stopMillis\", 0L);\n" +
+            "      Runtime.getRuntime().addShutdownHook(new Thread(() -> {\n" +
+            "        try {\n" +
+            "          Thread.sleep(stopMillis);\n" +
+            "          java.nio.file.Files.write(runDirectory.resolve(\"" + FLUSHED_FILE + "\"), new byte[0]);\n" +
+            "        } catch (Exception e) {\n" +
+            "          e.printStackTrace();\n" +
+            "        }\n" +
+            "      }));\n" +
+            "    }\n" +
+            "    java.nio.file.Files.write(runDirectory.resolve(\"simulation.log\"), log.toString().getBytes());\n" +
+            "    Thread.sleep(runMillis);\n" +
+            "    if (!java.util.Arrays.asList(args).contains(\"-nr\")) {\n" +
+            "      java.nio.file.Files.write(runDirectory.resolve(\"index.html\"), \"<html/>\".getBytes());\n" +
+            "    }\n" +
+            "    if (simulation.substring(simulation.lastIndexOf('.') + 1).startsWith(\"Failing\")) {\n" +
+            "      System.exit(2);\n" +
+            "    }\n" +
+            "  }\n" +
+            "}"));
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    Path getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    Path getResultsFolder() {
+        return directory.resolve("target/gatling");
+    }
+
+    /**
+     * Compiles a simulation for the stub Gatling to run.
+     */
+    void addSimulation(String packageName, String className) throws IOException {
+        addClass(packageName, className, "public class " + className + " extends io.gatling.core.scenario.Simulation {}");
+    }
+
+    /**
+     * Compiles another class of the project, such as a helper or an abstract simulation.
+     */
+    void addClass(String packageName, String className, String declaration) throws IOException {
+        compile(source(packageName, className, declaration));
+    }
+
+    /**
+     * @return the invocations of the stubs, in order, and clears them
+     */
+    List<String> takeInvocations() throws IOException {
+        List<String> invocations = new ArrayList<>();
+        for (Invocation invocation : takeTimedInvocations()) {
+            invocations.add(invocation.line);
+        }
+        return invocations;
+    }
+
+    /**
+     * @return the invocations of the stubs with their time, in order, and clears them
+     */
+    List<Invocation> takeTimedInvocations() throws IOException {
+        Path invocations = classesDirectory.getParent().resolve(INVOCATIONS_FILE);
+        if (!Files.exists(invocations)) {
+            return Collections.emptyList();
+        }
+        List<Invocation> timed = new ArrayList<>();
+        for (String line : Files.readAllLines(invocations, StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('\t');
+            timed.add(new Invocation(line.substring(separator + 1), Long.parseLong(line.substring(0, separator))));
+        }
+        Files.delete(invocations);
+        return timed;
+    }
+
+    /**
+     * @return a mojo configured with its declared defaults for this project, with stub Maven components
+     */
+    <T extends AbstractMojo> T createMojo(Class<T> mojoType, String goal) throws Exception {
+        MavenProject project = new MavenProject() {
+            @Override
+            public List<String> getTestClasspathElements() {
+                return Collections.singletonList(classesDirectory.toString());
+            }
+
+            @Override
+            public Set<Artifact> getArtifacts() {
+                return Collections.singleton(artifact("io.gatling", "gatling-core", "3.1.0"));
+            }
+        };
+        project.setFile(directory.resolve("pom.xml").toFile());
+        MavenSession session = new MavenSession(null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult(), project);
+        session.setCurrentProject(project);
+
+        T mojo = MojoDefaults.create(mojoType, goal, directory.toFile());
+        mojo.setLog(new SystemStreamLog());
+        MojoDefaults.set(mojo, "mavenProject", project);
+        MojoDefaults.set(mojo, "session", session);
+        MojoDefaults.set(mojo, "toolchainManager", stub(ToolchainManager.class, (proxy, method, args) -> null));
+        if (mojo instanceof GatlingMojo) {
+            MojoDefaults.set(mojo, "artifacts", new ArrayList<Artifact>());
+        }
+        MojoDefaults.set(mojo, "repository", stub(RepositorySystem.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "createArtifact":
+                    return artifact((String) args[0], (String) args[1], (String) args[2]);
+                case "resolve":
+                    return new ArtifactResolutionResult();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+        return mojo;
+    }
+
+    private String source(String packageName, String className, String body) throws IOException {
+        Path folder = Files.createDirectories(sourcesDirectory.resolve(packageName.replace('.', File.separatorChar)));
+        Path source = folder.resolve(className + ".java");
+        Files.write(source, ("package " + packageName + ";\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+        return source.toString();
+    }
+
+    private void compile(String... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> arguments = new ArrayList<>(Arrays.asList("-d", classesDirectory.toString(), "-cp", classesDirectory.toString()));
+        arguments.addAll(Arrays.asList(sources));
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Could not compile " + Arrays.toString(sources));
+        }
+    }
+
+    private static Artifact artifact(String groupId, String artifactId, String version) {
+        return new DefaultArtifact(groupId, artifactId, version, Artifact.SCOPE_RUNTIME, "jar", null, new DefaultArtifactHandler("jar"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    static final class Invocation {
+        final String line;
+        // epoch microseconds of the invocation
+        final long micros;
+
+        private Invocation(String line, long micros) {
+            this.line = line;
+            this.micros = micros;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2011-2017 GatlingCorp (http://gatling.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gatling.mojo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrendStoreTest {
+
+    private static final File SIMULATION_LOG = new File("src/test/resources/golden-files/simulation-log/simulation.log");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendsAndReadsRunsOfSelectedSimulations() throws Exception {
+        File store = tempDir.resolve("trends.bin").toFile();
+        RunAggregates aggregates = RunAggregates.of(SIMULATION_LOG);
+        TrendStore.append(store, TrendStore.Run.of(aggregates, "abc123", "basicsimulation-1"));
+        TrendStore.append(store, new TrendStore.Run(1L, "other.Simulation", "abc123", "other-1", new String[0], new long[0],
+            new long[0], new double[0], new int[0], new int[TrendStore.PERCENTILES.length][0], new int[0]));
+        TrendStore.append(store, TrendStore.Run.of(aggregates, "def456", "basicsimulation-2"));
+
+        List<TrendStore.Run> runs = TrendStore.read(store, "computerdatabase.BasicSimulation"::equals);
+        assertEquals(2, runs.size());
+        assertEquals("def456", runs.get(1).revision);
+        TrendStore.Run run = runs.get(0);
+        assertEquals(1577836800000L, run.start);
+        assertEquals("basicsimulation-1", run.runId);
+        assertArrayEquals(new String[]{"checkout / pay", "home"}, run.requests);
+        assertArrayEquals(new long[]{100, 100}, run.counts);
+        assertEquals(5.0, run.errorRate(0), 0.001);
+        assertEquals(100 / 11.39, run.throughputs[1], 0.001);
+        assertEquals(149, run.maxes[1]);
+        assertEquals(144, run.percentiles[2][1]);
+    }
+
+    @Test
+    void appendsAfterABlockCutOffByACrashedWrite() throws Exception {
+        File store = tempDir.resolve("trends.bin").toFile();
+        RunAggregates aggregates = RunAggregates.of(SIMULATION_LOG);
+        TrendStore.append(store, TrendStore.Run.of(aggregates, "abc123", "basicsimulation-1"));
+        long complete = store.length();
+        TrendStore.append(store, TrendStore.Run.of(aggregates, "abc123", "basicsimulation-2"));
+        try (FileChannel channel = FileChannel.open(store.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 10);
+        }
+
+        TrendStore.append(store, TrendStore.Run.of(aggregates, "def456", "basicsimulation-3"));
+
+        List<TrendStore.Run> runs = TrendStore.read(store, simulation -> true);
+        assertEquals(2, runs.size());
+        assertEquals("basicsimulation-1", runs.get(0).runId);
+        assertEquals("basicsimulation-3", runs.get(1).runId);
+    }
+
+    @Test
+    void readsRevisionFromPackedRefs() throws Exception {
+        Path git = Files.createDirectories(tempDir.resolve("project/.git"));
+        Files.write(git.resolve("HEAD"), "ref: refs/heads/main\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(git.resolve("packed-refs"), ("# pack-refs with: peeled fully-peeled sorted\n"
+            + "0123456789abcdef0123456789abcdef01234567 refs/heads/main\n").getBytes(StandardCharsets.UTF_8));
+        File module = Files.createDirectories(tempDir.resolve("project/module")).toFile();
+        assertEquals("0123456789abcdef0123456789abcdef01234567", GitRevision.of(module));
+        assertEquals(GitRevision.UNKNOWN, GitRevision.of(tempDir.toFile()));
+    }
+}